@@ -0,0 +1,82 @@
+//
+//   Copyright 2026  SenX S.A.S.
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+//
+
+package io.warp10.ext.matrixprofile;
+
+import io.warp10.script.MemoryWarpScriptStack;
+import io.warp10.script.WarpScriptException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * MP.ABPROFILE between two synthetic series of the same length
+ * The custom macro evaluates every cell in WarpScript, run it with small lengths only: -p macro=true -p length=1000
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+public class AbProfileBenchmark {
+
+  @Param({ "1000", "10000", "200000" })
+  public int length;
+
+  @Param({ "16", "256" })
+  public int subLength;
+
+  @Param({ "false" })
+  public boolean macro;
+
+  private MemoryWarpScriptStack stack;
+  private Map<String,Object> params;
+  private ABPROFILE function;
+
+  @Setup
+  public void setup() throws Exception {
+    stack = BenchmarkSupport.stack();
+    function = new ABPROFILE("MP.ABPROFILE");
+
+    params = new HashMap<String,Object>();
+    params.put(ABPROFILE.GTS1, BenchmarkSupport.series("a", length, 1L));
+    params.put(ABPROFILE.GTS2, BenchmarkSupport.series("b", length, 2L));
+    params.put(ABPROFILE.SUBSEQUENCE_LENGTH, (long) subLength);
+    if (macro) {
+      params.put(ABPROFILE.SIMILARITY_MEASURE_MACRO, BenchmarkSupport.macro(stack));
+    }
+  }
+
+  @Benchmark
+  public Object abprofile(BenchmarkSupport.Cells cells) throws WarpScriptException {
+    stack.push(params);
+    function.apply(stack);
+    long p = length - subLength + 1;
+    cells.cells += p * p;
+    return stack.pop();
+  }
+}
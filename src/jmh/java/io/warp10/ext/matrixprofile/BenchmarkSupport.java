@@ -0,0 +1,113 @@
+//
+//   Copyright 2026  SenX S.A.S.
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+//
+
+package io.warp10.ext.matrixprofile;
+
+import io.warp10.WarpConfig;
+import io.warp10.continuum.gts.GTSHelper;
+import io.warp10.continuum.gts.GeoTimeSerie;
+import io.warp10.script.MemoryWarpScriptStack;
+import io.warp10.script.WarpScriptException;
+import io.warp10.script.WarpScriptStack;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Random;
+
+/**
+ * Synthetic inputs and stack setup shared by the benchmarks
+ */
+public class BenchmarkSupport {
+
+  public static final long BUCKETSPAN = 1000L;
+
+  //
+  // Limits raised so that the largest parameters of the benchmarks are accepted
+  //
+
+  private static final String CONFIGURATION = ""
+      + "mp.profile.maxsize=1000000\n"
+      + "mp.abprofile.maxsize=1000000\n"
+      + "mp.profile.parallelism=1\n";
+
+  //
+  // Euclidean distance of the values of two subsequences, as a user would write it
+  //
+
+  public static final String MACRO = "<% VALUES 'b' STORE VALUES 'a' STORE 0.0 0 $a SIZE 1 - <% 'i' STORE $a $i GET $b $i GET - DUP * + %> FOR SQRT %>";
+
+  /**
+   * Number of distance matrix cells evaluated, reported as a rate by JMH
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class Cells {
+    public long cells;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      cells = 0L;
+    }
+  }
+
+  public static synchronized void configure() throws IOException {
+    if (!WarpConfig.isPropertiesSet()) {
+      WarpConfig.safeSetProperties(new StringReader(CONFIGURATION));
+    }
+  }
+
+  public static MemoryWarpScriptStack stack() throws IOException {
+    configure();
+    MemoryWarpScriptStack stack = new MemoryWarpScriptStack(null, null);
+    stack.maxLimits();
+    return stack;
+  }
+
+  public static WarpScriptStack.Macro macro(MemoryWarpScriptStack stack) throws WarpScriptException {
+    stack.execMulti(MACRO);
+    return (WarpScriptStack.Macro) stack.pop();
+  }
+
+  /**
+   * Bucketized and filled DOUBLE GTS: a noisy sine wave with a few repeated patterns
+   */
+  public static GeoTimeSerie series(String name, int length, long seed) {
+    Random random = new Random(seed);
+    GeoTimeSerie gts = new GeoTimeSerie(BUCKETSPAN * length, length, BUCKETSPAN, length);
+    gts.setName(name);
+    for (int i = 0; i < length; i++) {
+      double value = Math.sin(i / 7.0D) * 10.0D + (i % 97) * 0.1D + random.nextGaussian();
+      GTSHelper.setValue(gts, BUCKETSPAN * (i + 1), value);
+    }
+    return gts;
+  }
+
+  /**
+   * Number of cells of the upper triangle of the distance matrix out of the exclusion zone
+   */
+  public static long selfJoinCells(int length, int k) {
+    long p = length - k + 1;
+    long excl = (long) Math.ceil(k * 0.25D);
+    long t = Math.max(0L, p - excl);
+    return t * (t + 1) / 2;
+  }
+}
@@ -0,0 +1,79 @@
+//
+//   Copyright 2026  SenX S.A.S.
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+//
+
+package io.warp10.ext.matrixprofile;
+
+import io.warp10.continuum.gts.GTSHelper;
+import io.warp10.continuum.gts.GeoTimeSerie;
+import io.warp10.script.MemoryWarpScriptStack;
+import io.warp10.script.WarpScriptException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+
+/**
+ * MP.FLUSS on a synthetic matrix profile, whose argmins are drawn at random so that large lengths stay cheap to set up
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+public class FlussBenchmark {
+
+  @Param({ "1000", "10000", "200000" })
+  public int length;
+
+  @Param({ "16", "256" })
+  public int subLength;
+
+  private MemoryWarpScriptStack stack;
+  private GeoTimeSerie profile;
+  private FLUSS function;
+
+  @Setup
+  public void setup() throws Exception {
+    stack = BenchmarkSupport.stack();
+    function = new FLUSS("MP.FLUSS");
+
+    Random random = new Random(42L);
+    profile = new GeoTimeSerie(BenchmarkSupport.BUCKETSPAN * length, length, BenchmarkSupport.BUCKETSPAN, length);
+    profile.setName("profile");
+    for (int i = 0; i < length; i++) {
+      long argmin = (i + 1 + random.nextInt(length - 1)) % length;
+      GTSHelper.setValue(profile, BenchmarkSupport.BUCKETSPAN * (i + 1), GeoTimeSerie.NO_LOCATION, argmin, random.nextDouble(), false);
+    }
+  }
+
+  @Benchmark
+  public Object fluss(BenchmarkSupport.Cells cells) throws WarpScriptException {
+    stack.push(profile);
+    stack.push((long) subLength);
+    function.apply(stack);
+    cells.cells += length;
+    return stack.pop();
+  }
+}
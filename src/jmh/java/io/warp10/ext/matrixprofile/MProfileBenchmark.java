@@ -0,0 +1,84 @@
+//
+//   Copyright 2026  SenX S.A.S.
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+//
+
+package io.warp10.ext.matrixprofile;
+
+import io.warp10.continuum.gts.GeoTimeSerie;
+import io.warp10.script.MemoryWarpScriptStack;
+import io.warp10.script.WarpScriptException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * MP.MPROFILE on synthetic aligned series, the cells being counted once per dimension
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+public class MProfileBenchmark {
+
+  @Param({ "1000", "10000" })
+  public int length;
+
+  @Param({ "64" })
+  public int subLength;
+
+  @Param({ "2", "8" })
+  public int dimensions;
+
+  private MemoryWarpScriptStack stack;
+  private Map<String,Object> params;
+  private MPROFILE function;
+
+  @Setup
+  public void setup() throws Exception {
+    stack = BenchmarkSupport.stack();
+    function = new MPROFILE("MP.MPROFILE");
+
+    List<GeoTimeSerie> series = new ArrayList<GeoTimeSerie>(dimensions);
+    for (int m = 0; m < dimensions; m++) {
+      series.add(BenchmarkSupport.series("mprofile" + m, length, 42L + m));
+    }
+
+    params = new HashMap<String,Object>();
+    params.put(MPROFILE.GTS, series);
+    params.put(MPROFILE.SUBSEQUENCE_LENGTH, (long) subLength);
+  }
+
+  @Benchmark
+  public Object mprofile(BenchmarkSupport.Cells cells) throws WarpScriptException {
+    stack.push(params);
+    function.apply(stack);
+    cells.cells += BenchmarkSupport.selfJoinCells(length, subLength) * dimensions;
+    return stack.pop();
+  }
+}
@@ -0,0 +1,77 @@
+//
+//   Copyright 2026  SenX S.A.S.
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+//
+
+package io.warp10.ext.matrixprofile;
+
+import io.warp10.script.MemoryWarpScriptStack;
+import io.warp10.script.WarpScriptException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * MP.PANPROFILE on a synthetic series, over sub.length from 16 to 16 * lengths by steps of 16
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+public class PanProfileBenchmark {
+
+  @Param({ "1000", "10000" })
+  public int length;
+
+  @Param({ "8" })
+  public int lengths;
+
+  private MemoryWarpScriptStack stack;
+  private Map<String,Object> params;
+  private PANPROFILE function;
+
+  @Setup
+  public void setup() throws Exception {
+    stack = BenchmarkSupport.stack();
+    function = new PANPROFILE("MP.PANPROFILE");
+
+    params = new HashMap<String,Object>();
+    params.put(PANPROFILE.GTS, BenchmarkSupport.series("panprofile", length, 42L));
+    params.put(PANPROFILE.MIN_SUBSEQUENCE_LENGTH, 16L);
+    params.put(PANPROFILE.MAX_SUBSEQUENCE_LENGTH, 16L * lengths);
+    params.put(PANPROFILE.SUBSEQUENCE_LENGTH_STEP, 16L);
+  }
+
+  @Benchmark
+  public Object panprofile(BenchmarkSupport.Cells cells) throws WarpScriptException {
+    stack.push(params);
+    function.apply(stack);
+    for (int l = 1; l <= lengths; l++) {
+      cells.cells += BenchmarkSupport.selfJoinCells(length, 16 * l);
+    }
+    return stack.pop();
+  }
+}
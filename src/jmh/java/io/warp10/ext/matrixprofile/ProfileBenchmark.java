@@ -0,0 +1,103 @@
+//
+//   Copyright 2026  SenX S.A.S.
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+//
+
+package io.warp10.ext.matrixprofile;
+
+import io.warp10.script.MemoryWarpScriptStack;
+import io.warp10.script.WarpScriptException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * MP.PROFILE on a synthetic series
+ * The custom macro evaluates every cell in WarpScript, run it with small lengths only: -p macro=true -p length=1000
+ * Other built-in distances can be compared with -p distance=ZEUCLIDEAN,EUCLIDEAN,PEARSON,CID,MANHATTAN
+ * The knn profiles can be measured with -p robust=false -p knn=1,4,16
+ * The single precision engine can be compared with -p precision=DOUBLE,FLOAT
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+public class ProfileBenchmark {
+
+  @Param({ "1000", "10000", "200000" })
+  public int length;
+
+  @Param({ "16", "256" })
+  public int subLength;
+
+  @Param({ "false", "true" })
+  public boolean robust;
+
+  @Param({ "false" })
+  public boolean macro;
+
+  @Param({ "ZEUCLIDEAN" })
+  public String distance;
+
+  // 0 for a single profile
+  @Param({ "0" })
+  public int knn;
+
+  @Param({ "DOUBLE" })
+  public String precision;
+
+  private MemoryWarpScriptStack stack;
+  private Map<String,Object> params;
+  private PROFILE function;
+
+  @Setup
+  public void setup() throws Exception {
+    stack = BenchmarkSupport.stack();
+    function = new PROFILE("MP.PROFILE");
+
+    params = new HashMap<String,Object>();
+    params.put(PROFILE.GTS, BenchmarkSupport.series("profile", length, 42L));
+    params.put(PROFILE.SUBSEQUENCE_LENGTH, (long) subLength);
+    params.put(PROFILE.ROBUSTNESS, robust);
+    if (macro) {
+      params.put(PROFILE.SIMILARITY_MEASURE_MACRO, BenchmarkSupport.macro(stack));
+    } else {
+      params.put(PROFILE.DISTANCE, distance);
+    }
+    params.put(PROFILE.PRECISION, precision);
+    if (knn > 0) {
+      params.put(PROFILE.KNN, (long) knn);
+    }
+  }
+
+  @Benchmark
+  public Object profile(BenchmarkSupport.Cells cells) throws WarpScriptException {
+    stack.push(params);
+    function.apply(stack);
+    cells.cells += BenchmarkSupport.selfJoinCells(length, subLength);
+    return stack.pop();
+  }
+}
@@ -0,0 +1,88 @@
+//
+//   Copyright 2026  SenX S.A.S.
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+//
+
+package io.warp10.ext.matrixprofile;
+
+import io.warp10.continuum.gts.GTSHelper;
+import io.warp10.continuum.gts.GeoTimeSerie;
+import io.warp10.script.MemoryWarpScriptStack;
+import io.warp10.script.WarpScriptException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * MP.PROFILE.UPDATE of the profile of a synthetic series with a few appended buckets
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+public class ProfileUpdateBenchmark {
+
+  @Param({ "1000", "10000", "100000" })
+  public int length;
+
+  @Param({ "16", "256" })
+  public int subLength;
+
+  @Param({ "1", "60" })
+  public int appended;
+
+  private MemoryWarpScriptStack stack;
+  private GeoTimeSerie profile;
+  private GeoTimeSerie gts;
+  private PROFILEUPDATE function;
+
+  @Setup
+  public void setup() throws Exception {
+    stack = BenchmarkSupport.stack();
+    function = new PROFILEUPDATE("MP.PROFILE.UPDATE");
+
+    gts = BenchmarkSupport.series("update", length, 42L);
+
+    // profile of all the buckets but the appended ones
+    GeoTimeSerie head = gts.cloneEmpty(length - appended);
+    GTSHelper.setBucketCount(head, length - appended);
+    GTSHelper.setLastBucket(head, BenchmarkSupport.BUCKETSPAN * (length - appended));
+    for (int i = 0; i < length - appended; i++) {
+      GTSHelper.setValue(head, GTSHelper.tickAtIndex(gts, i), GTSHelper.valueAtIndex(gts, i));
+    }
+
+    stack.push(head);
+    stack.push((long) subLength);
+    new PROFILE("MP.PROFILE").apply(stack);
+    profile = (GeoTimeSerie) stack.pop();
+  }
+
+  @Benchmark
+  public Object update(BenchmarkSupport.Cells cells) throws WarpScriptException {
+    stack.push(profile);
+    stack.push(gts);
+    function.apply(stack);
+    cells.cells += (long) appended * (length - subLength + 1);
+    return stack.pop();
+  }
+}
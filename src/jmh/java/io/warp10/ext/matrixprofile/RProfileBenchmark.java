@@ -0,0 +1,85 @@
+//
+//   Copyright 2026  SenX S.A.S.
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+//
+
+package io.warp10.ext.matrixprofile;
+
+import io.warp10.script.MemoryWarpScriptStack;
+import io.warp10.script.WarpScriptException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * MP.RPROFILE of the subsequence in the middle of a synthetic series, with the naive or MASS dot products
+ * The custom macro is evaluated for every subsequence in WarpScript, enable it with -p macro=true
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+public class RProfileBenchmark {
+
+  @Param({ "1000", "10000", "200000" })
+  public int length;
+
+  @Param({ "16", "256" })
+  public int subLength;
+
+  @Param({ "false", "true" })
+  public boolean mass;
+
+  @Param({ "false" })
+  public boolean macro;
+
+  private MemoryWarpScriptStack stack;
+  private Map<String,Object> params;
+  private RPROFILE function;
+
+  @Setup
+  public void setup() throws Exception {
+    stack = BenchmarkSupport.stack();
+    function = new RPROFILE("MP.RPROFILE");
+
+    params = new HashMap<String,Object>();
+    params.put(RPROFILE.GTS, BenchmarkSupport.series("rprofile", length, 42L));
+    params.put(RPROFILE.SUBSEQUENCE_LENGTH, (long) subLength);
+    params.put(RPROFILE.BUCKET_INDEX, (long) (length / 2));
+    params.put(RPROFILE.MASS_MODE, mass);
+    if (macro) {
+      params.put(RPROFILE.SIMILARITY_MEASURE_MACRO, BenchmarkSupport.macro(stack));
+    }
+  }
+
+  @Benchmark
+  public Object rprofile(BenchmarkSupport.Cells cells) throws WarpScriptException {
+    stack.push(params);
+    function.apply(stack);
+    cells.cells += length - subLength + 1;
+    return stack.pop();
+  }
+}
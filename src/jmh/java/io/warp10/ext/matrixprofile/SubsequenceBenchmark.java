@@ -0,0 +1,69 @@
+//
+//   Copyright 2026  SenX S.A.S.
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+//
+
+package io.warp10.ext.matrixprofile;
+
+import io.warp10.continuum.gts.GTSHelper;
+import io.warp10.continuum.gts.GeoTimeSerie;
+import io.warp10.script.WarpScriptException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * ATBUCKETINDEX.subsequence, which the custom macro paths call for every evaluated cell
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+public class SubsequenceBenchmark {
+
+  @Param({ "1000", "10000", "200000" })
+  public int length;
+
+  @Param({ "16", "256" })
+  public int subLength;
+
+  private GeoTimeSerie gts;
+  private int p;
+  private int index;
+
+  @Setup
+  public void setup() throws Exception {
+    BenchmarkSupport.configure();
+    gts = BenchmarkSupport.series("subsequence", length, 42L);
+    GTSHelper.sort(gts);
+    p = length - subLength + 1;
+  }
+
+  @Benchmark
+  public GeoTimeSerie subsequence(BenchmarkSupport.Cells cells) throws WarpScriptException {
+    // walk the start indices so that the whole series is read
+    index = (index + 7919) % p;
+    cells.cells++;
+    return ATBUCKETINDEX.subsequence(gts, subLength, index);
+  }
+}
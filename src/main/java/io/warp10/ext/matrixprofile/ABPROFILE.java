@@ -25,242 +25,537 @@ import io.warp10.script.WarpScriptException;
 import io.warp10.script.WarpScriptStack;
 import io.warp10.script.WarpScriptStack.Macro;
 import io.warp10.script.WarpScriptStackFunction;
-import io.warp10.warp.sdk.Capabilities;
 
-import java.math.BigDecimal;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Compute the AB join in the sense of the matrix profile wrt a certain distance macro to two input gts
+ * Without macro, the diagonals of the distance matrix are traversed as in STOMP
+ * The second gts can also be read chunk by chunk from a local file, see SeriesFile
  */
 public class ABPROFILE extends NamedWarpScriptFunction implements WarpScriptStackFunction {
 
-  // todo: optimize using STOMP as implemented for PROFILE
+  public static final String GTS1 = "gts1";
+  public static final String GTS2 = "gts2";
+  public static final String GTS2_FILE = "gts2.file";
+  public static final String SUBSEQUENCE_LENGTH = PROFILE.SUBSEQUENCE_LENGTH;
+  public static final String SIMILARITY_MEASURE_MACRO = PROFILE.SIMILARITY_MEASURE_MACRO;
+  public static final String MACRO_BATCH_SIZE = PROFILE.MACRO_BATCH_SIZE;
+  public static final String DISTANCE = PROFILE.DISTANCE;
+  public static final String B_PROFILE = "b.profile";
+  public static final String PARTIAL = PROFILE.PARTIAL;
+  public static final String COVERAGE = PROFILE.COVERAGE;
 
   public ABPROFILE(String name) {
     super(name);
   }
 
-  private double getValue(GeoTimeSerie gts, int index) {
-    return ((Number) GTSHelper.valueAtIndex(gts, index)).doubleValue();
+  /**
+   * Check a GTS, or each GTS of a LIST
+   */
+  private Object checkInput(Object o, String position) throws WarpScriptException {
+    if (!(o instanceof List)) {
+      return checkGts(o, position);
+    }
+
+    List<GeoTimeSerie> batch = new ArrayList<GeoTimeSerie>(((List) o).size());
+    for (Object item: (List) o) {
+      // sorted here as the same GTS may appear several times in the batch
+      GTSHelper.sort(checkGts(item, position));
+      batch.add((GeoTimeSerie) item);
+    }
+    return batch;
+  }
+
+  private GeoTimeSerie checkGts(Object o, String position) throws WarpScriptException {
+    if (!(o instanceof GeoTimeSerie)) {
+      throw new WarpScriptException(getName() + " expects a GTS or a LIST of GTS as " + position + " parameter.");
+    }
+
+    GeoTimeSerie gts = (GeoTimeSerie) o;
+
+    if (TYPE.DOUBLE != gts.getType()) {
+      throw new WarpScriptException(getName() + " can only be applied to GTS with values of type DOUBLE.");
+    }
+
+    // missing buckets are masked, see StagedSeries
+    if (!GTSHelper.isBucketized(gts)) {
+      throw new WarpScriptException(getName() + " can only be applied to a GTS that is bucketized.");
+    }
+
+    return gts;
+  }
+
+  /**
+   * Open the file of a B side, given relative to the root directory mp.abprofile.file.root
+   */
+  private SeriesFile openFile(WarpScriptStack stack, Object o) throws WarpScriptException {
+    if (!(o instanceof String)) {
+      throw new WarpScriptException(getName() + " expects parameter " + GTS2_FILE + " to be a STRING.");
+    }
+
+    String root = WarpConfig.getProperty(MatrixProfileWarpScriptExtension.CONFIG_MP_ABPROFILE_FILE_ROOT);
+    if (null == root) {
+      throw new WarpScriptException(getName() + " can only read parameter " + GTS2_FILE + " if " + MatrixProfileWarpScriptExtension.CONFIG_MP_ABPROFILE_FILE_ROOT + " is configured.");
+    }
+
+    SeriesFile series;
+
+    try {
+      // checked before resolving the links, so that nothing is read outside of the root, and after
+      Path dir = Paths.get(root).toRealPath();
+      Path path = dir.resolve((String) o).normalize();
+      if (!path.startsWith(dir) || !(path = path.toRealPath()).startsWith(dir)) {
+        throw new WarpScriptException(getName() + " expects parameter " + GTS2_FILE + " to be a file under " + MatrixProfileWarpScriptExtension.CONFIG_MP_ABPROFILE_FILE_ROOT + ".");
+      }
+      series = SeriesFile.open(path);
+    } catch (IOException ioe) {
+      throw new WarpScriptException(getName() + " could not read the series file " + o + " of parameter " + GTS2_FILE + ".", ioe);
+    }
+
+    long maxsize = MatrixProfileWarpScriptExtension.getLongSetting(stack, MatrixProfileWarpScriptExtension.DEFAULT_VALUE_MP_ABPROFILE_FILE_MAXSIZE,
+        MatrixProfileWarpScriptExtension.CONFIG_MP_ABPROFILE_FILE_MAXSIZE, MatrixProfileWarpScriptExtension.CAPNAME_MP_ABPROFILE_FILE_MAXSIZE);
+
+    if (series.getBucketCount() > maxsize) {
+      throw new WarpScriptException("Max size limit for " + getName() + " reached. Consider lower the bucketcount of the file. To raise this limit, use a capable token or contact an administrator.");
+    }
+
+    return series;
   }
 
   @Override
   public Object apply(WarpScriptStack stack) throws WarpScriptException {
 
-    Object o = stack.pop();
-
     //
-    // Optional param
+    // Parameters
     //
 
-    // custom macro
+    Object input1; // a GTS or a LIST of GTS
+    Object input2;
+    long k; // subsequence size
     Macro macro = null;
-    if (o instanceof Macro) {
-      macro = (Macro) o;
-      o = stack.pop();
-    }
+    boolean bProfile = false;
+    boolean partial = false;
+    long batchSize = 0L;
+    DistanceKernel.Type distanceType = DistanceKernel.Type.ZEUCLIDEAN;
 
     //
-    // Mandatory params
+    // Two type of signature:
+    //  - a MAP (with optional arguments)
+    //  - or three arguments, gts1, gts2 and subsequence length, plus an optional macro
+    // gts1 and gts2 can also be LISTs of GTS: a LIST for gts1 is joined with a single gts2, or pairwise with a LIST of
+    // the same size for gts2. A LIST of results is output.
     //
 
-    if (!(o instanceof Long)) {
-      throw new WarpScriptException(getName() + "expects a subsequence size (LONG) as third parameter.");
+    Object o = stack.pop();
+    if (o instanceof Map) {
+
+      Map params = (Map) o;
+
+      //
+      // Mandatory params
+      //
+
+      if (null == params.get(GTS1)) {
+        throw new WarpScriptException(getName() + " requires parameter " + GTS1);
+      }
+      input1 = checkInput(params.get(GTS1), "first");
+
+      if (null != params.get(GTS2_FILE)) {
+        if (null != params.get(GTS2)) {
+          throw new WarpScriptException(getName() + " expects either parameter " + GTS2 + " or parameter " + GTS2_FILE + ", not both.");
+        }
+        input2 = openFile(stack, params.get(GTS2_FILE));
+      } else if (null == params.get(GTS2)) {
+        throw new WarpScriptException(getName() + " requires parameter " + GTS2);
+      } else {
+        input2 = checkInput(params.get(GTS2), "second");
+      }
+
+      if (null == params.get(SUBSEQUENCE_LENGTH)) {
+        throw new WarpScriptException(getName() + " requires parameter " + SUBSEQUENCE_LENGTH);
+      }
+      k = ((Number) params.get(SUBSEQUENCE_LENGTH)).longValue();
+
+      //
+      // Optional parameters
+      //
+
+      // nullable
+      macro = (Macro) params.get(SIMILARITY_MEASURE_MACRO);
+
+      if (null != params.get(MACRO_BATCH_SIZE)) {
+        batchSize = ((Number) params.get(MACRO_BATCH_SIZE)).longValue();
+      }
+
+      if (null != params.get(DISTANCE)) {
+        distanceType = PROFILE.distanceType(getName(), params.get(DISTANCE));
+        if (null != macro) {
+          throw new WarpScriptException(getName() + " expects either parameter " + DISTANCE + " or parameter " + SIMILARITY_MEASURE_MACRO + ", not both.");
+        }
+      }
+
+      bProfile = Boolean.TRUE.equals(params.get(B_PROFILE));
+      partial = Boolean.TRUE.equals(params.get(PARTIAL));
+
+    } else {
+
+      //
+      // Optional param
+      //
+
+      // custom macro
+      if (o instanceof Macro) {
+        macro = (Macro) o;
+        o = stack.pop();
+      }
+
+      //
+      // Mandatory params
+      //
+
+      if (!(o instanceof Long)) {
+        throw new WarpScriptException(getName() + "expects a subsequence size (LONG) as third parameter.");
+      }
+      k = ((Number) o).longValue();
+
+      input2 = checkInput(stack.pop(), "second");
+      input1 = checkInput(stack.pop(), "first");
     }
-    long k = ((Number) o).longValue();
 
     if (k < 2) {
       throw new WarpScriptException(getName() + " 's subsequence size must be strictly greater than 1.");
     }
 
-    o = stack.pop();
+    if (batchSize < 0L || batchSize > Integer.MAX_VALUE) {
+      throw new WarpScriptException(getName() + " expects parameter " + MACRO_BATCH_SIZE + " to be a positive number of subsequences.");
+    }
 
-    if (!(o instanceof GeoTimeSerie)) {
-      throw new WarpScriptException(getName() + " expects a GTS as second parameter.");
+    if (input2 instanceof SeriesFile && (null != macro || bProfile)) {
+      // the profile of B would be as large as the file
+      throw new WarpScriptException(getName() + " can not apply a custom macro nor compute the " + B_PROFILE + " with parameter " + GTS2_FILE + ".");
     }
 
-    GeoTimeSerie gts2 = (GeoTimeSerie) o;
+    final Request request = new Request();
+    request.k = k;
+    request.macro = macro;
+    request.bProfile = bProfile;
+    request.batchSize = batchSize;
+    request.distanceType = distanceType;
+    request.partial = partial;
 
-    if (TYPE.DOUBLE != gts2.getType()) {
-      throw new WarpScriptException(getName() + " can only be applied to GTS with values of type DOUBLE.");
-    }
+    // time limit of the call, shared by the pairs of a batch
+    request.watchdog = new Watchdog(stack, MatrixProfileWarpScriptExtension.getLongSetting(stack, MatrixProfileWarpScriptExtension.DEFAULT_VALUE_MP_ABPROFILE_TIMEOUT,
+        MatrixProfileWarpScriptExtension.CONFIG_MP_ABPROFILE_TIMEOUT, MatrixProfileWarpScriptExtension.CAPNAME_MP_ABPROFILE_TIMEOUT));
 
-    if (!GTSHelper.isBucketized(gts2)) {
-      throw new WarpScriptException(getName() + " can only be applied to a GTS that is bucketized and filled.");
-    }
+    // maxsize check, done for each GTS
+    request.maxsize = MatrixProfileWarpScriptExtension.getLongSetting(stack, MatrixProfileWarpScriptExtension.DEFAULT_VALUE_MP_ABPROFILE_MAXSIZE,
+        MatrixProfileWarpScriptExtension.CONFIG_MP_ABPROFILE_MAXSIZE, MatrixProfileWarpScriptExtension.CAPNAME_MP_ABPROFILE_MAXSIZE);
 
-    if (gts2.size() != GTSHelper.getBucketCount(gts2)) {
-      throw new WarpScriptException(getName() + " can only be applied to a GTS that is bucketized and filled.");
-    }
+    //
+    // A single gts2 is sorted and staged once, with its statistics, the stages being read-only afterwards. The tasks of
+    // a batch share them instead of sorting the same GTS concurrently.
+    //
 
-    o = stack.pop();
+    StagedSeries staged2 = null;
+    SlidingStats stats2 = null;
 
-    if (!(o instanceof GeoTimeSerie)) {
-      throw new WarpScriptException(getName() + " expects a GTS as first parameter.");
-    }
+    if (input2 instanceof GeoTimeSerie) {
+      if (GTSHelper.getBucketCount((GeoTimeSerie) input2) > request.maxsize) {
+        throw new WarpScriptException("Max size limit for " + getName() + " reached. Consider lower the bucketcount. To raise this limit, use a capable token or contact an administrator.");
+      }
 
-    GeoTimeSerie gts1 = (GeoTimeSerie) o;
+      staged2 = StagedSeries.of((GeoTimeSerie) input2);
 
-    if (TYPE.DOUBLE != gts1.getType()) {
-      throw new WarpScriptException(getName() + " can only be applied to GTS with values of type DOUBLE.");
+      if (null == macro && k < staged2.size()) {
+        stats2 = staged2.stats((int) k);
+      }
     }
 
-    if (!GTSHelper.isBucketized(gts1)) {
-      throw new WarpScriptException(getName() + " can only be applied to a GTS that is bucketized and filled.");
+    if (!(input1 instanceof List) && !(input2 instanceof List)) {
+      stack.push(input2 instanceof SeriesFile ? joinFile(stack, (GeoTimeSerie) input1, (SeriesFile) input2, request)
+          : join(stack, (GeoTimeSerie) input1, (GeoTimeSerie) input2, staged2, stats2, request));
+      return stack;
     }
 
-    if (gts1.size() != GTSHelper.getBucketCount(gts1)) {
-      throw new WarpScriptException(getName() + " can only be applied to a GTS that is bucketized and filled.");
-    }
+    //
+    // Batch, processed concurrently on the shared executor of the extension unless a custom macro is used
+    //
 
-    // maxsize check
-    long maxsize = MatrixProfileWarpScriptExtension.DEFAULT_VALUE_MP_ABPROFILE_MAXSIZE;
-    if (null != WarpConfig.getProperty(MatrixProfileWarpScriptExtension.CONFIG_MP_ABPROFILE_MAXSIZE)) {
-      maxsize = Long.parseLong(WarpConfig.getProperty(MatrixProfileWarpScriptExtension.CONFIG_MP_ABPROFILE_MAXSIZE));
+    if (!(input1 instanceof List) || (input2 instanceof List && ((List) input1).size() != ((List) input2).size())) {
+      throw new WarpScriptException(getName() + " expects parameter " + GTS2 + " to be a GTS, or a LIST of the same size as the LIST of parameter " + GTS1 + ".");
     }
-    String capValue = Capabilities.get(stack, MatrixProfileWarpScriptExtension.CAPNAME_MP_ABPROFILE_MAXSIZE);
-    if (null != capValue) {
-      maxsize = Long.valueOf(capValue);
+
+    final List<GeoTimeSerie> batch1 = (List<GeoTimeSerie>) input1;
+    final Object batch2 = input2;
+    final StagedSeries shared2 = staged2;
+    final SlidingStats sharedStats2 = stats2;
+
+    long concurrency = MatrixProfileWarpScriptExtension.getLongSetting(stack, MatrixProfileWarpScriptExtension.DEFAULT_VALUE_MP_BATCH_CONCURRENCY,
+        MatrixProfileWarpScriptExtension.CONFIG_MP_BATCH_CONCURRENCY, MatrixProfileWarpScriptExtension.CAPNAME_MP_BATCH_CONCURRENCY);
+
+    if (null != macro) {
+      concurrency = 1L;
     }
 
-    if (gts1.size() > maxsize || gts2.size() > maxsize) {
+    final WarpScriptStack caller = stack;
+    List<Object> results = Batch.run(batch1.size(), (int) Math.min(Integer.MAX_VALUE, concurrency), new Batch.Task<Object>() {
+      @Override
+      public Object run(int index) throws WarpScriptException {
+        if (batch2 instanceof SeriesFile) {
+          return joinFile(caller, batch1.get(index), (SeriesFile) batch2, request);
+        }
+        if (batch2 instanceof List) {
+          return join(caller, batch1.get(index), ((List<GeoTimeSerie>) batch2).get(index), null, null, request);
+        }
+        return join(caller, batch1.get(index), (GeoTimeSerie) batch2, shared2, sharedStats2, request);
+      }
+    });
+
+    stack.push(new ArrayList<Object>(results));
+
+    return stack;
+  }
+
+  /**
+   * Parameters of a join, shared by the GTS of a batch
+   */
+  private static class Request {
+    long k;
+    Macro macro;
+    boolean bProfile;
+    long batchSize;
+    DistanceKernel.Type distanceType;
+    long maxsize;
+    boolean partial;
+    Watchdog watchdog;
+  }
+
+  /**
+   * Join of a pair of GTS: the profile of gts1, or a LIST of the profiles of gts1 and gts2 with b.profile
+   *
+   * @param stack the stack on which a custom macro is run
+   * @param staged2 gts2 staged beforehand, null to stage it here
+   * @param stats2 statistics of staged2, null to compute them here
+   */
+  private Object join(WarpScriptStack stack, GeoTimeSerie gts1, GeoTimeSerie gts2, StagedSeries staged2, SlidingStats stats2, Request r) throws WarpScriptException {
+
+    long k = r.k;
+    Macro macro = r.macro;
+    boolean bProfile = r.bProfile;
+    DistanceKernel.Type distanceType = r.distanceType;
+
+    FunctionStats.Call call = FunctionStats.current(stack);
+    long mark = System.nanoTime();
+
+    if (GTSHelper.getBucketCount(gts1) > r.maxsize || GTSHelper.getBucketCount(gts2) > r.maxsize) {
       throw new WarpScriptException("Max size limit for " + getName() + " reached. Consider lower the bucketcount. To raise this limit, use a capable token or contact an administrator.");
     }
 
-    // make sure it is sorted
-    GTSHelper.sort(gts1);
-    GTSHelper.sort(gts2);
+    // make sure it is sorted, and stage the values
+    StagedSeries staged1 = StagedSeries.of(gts1);
+    if (null == staged2) {
+      staged2 = StagedSeries.of(gts2);
+    }
+    double[] values1 = staged1.values();
+    double[] values2 = staged2.values();
+
+    // a custom macro receives the NaN values of filled GTS as they are, but can not be applied across missing buckets
+    if (null != macro && (!staged1.isFilled() || !staged2.isFilled())) {
+      throw new WarpScriptException(getName() + " can only apply a custom macro to GTS that are bucketized and filled.");
+    }
 
     // number of vectors
-    int p1 = gts1.size() - (int) k + 1;
-    int p2 = gts2.size() - (int) k + 1;
+    int p1 = staged1.size() - (int) k + 1;
+    int p2 = staged2.size() - (int) k + 1;
 
     if (p1 < 1 || p2 < 1) {
       throw new WarpScriptException(getName() + " requires the subsequence length to be lower than the number of buckets for both input gts.");
     }
 
+    call.series(values1.length);
+    call.series(values2.length);
+
     //
-    // Means and Std of each vectors
+    // Fill row minima (A side) and optionally column minima (B side)
     //
 
-    // compute means and std of each vectors
-    double[] means1 = null;
-    double[] stds1 = null;
-    double[] means2 = null;
-    double[] stds2 = null;
+    double[] rowMinValue = new double[p1];
+    long[] rowMinIndex = new long[p1];
+    double[] colMinValue = bProfile ? new double[p2] : null;
+    long[] colMinIndex = bProfile ? new long[p2] : null;
+    long done = 0L;
 
     if (null == macro) {
-      means1 = new double[p1];
-      stds1 = new double[p1];
 
-      for (int i = 0; i < p1; i++) {
+      SlidingStats stats1 = staged1.stats((int) k);
+      if (null == stats2) {
+        stats2 = staged2.stats((int) k);
+      }
+
+      DistanceKernel kernel = new DistanceKernel(distanceType, values1, stats1, values2, stats2);
+      AbJoinEngine engine = new AbJoinEngine(values1, values2, (int) k, kernel);
+      engine.setWatchdog(r.watchdog);
+      mark = call.phase(FunctionStats.Phase.STATS, mark);
+      done = engine.run(rowMinValue, rowMinIndex, colMinValue, colMinIndex);
 
-        // standard
-        BigDecimal sum = BigDecimal.ZERO;
-        BigDecimal sumsq = BigDecimal.ZERO;
+    } else {
+
+      AbJoinEngine.init(rowMinValue, rowMinIndex);
+      if (bProfile) {
+        AbJoinEngine.init(colMinValue, colMinIndex);
+      }
 
-        // todo: this part can be optimised using running stats computation formulas
+      MacroDistance macroDistance = new MacroDistance(stack, macro, gts1, staged1, gts2, staged2, (int) k, (int) r.batchSize);
+      double[] row = new double[p2];
+      mark = call.phase(FunctionStats.Phase.STATS, mark);
 
-        for (int j = i; j < i + k; j++) {
-          BigDecimal bd;
-          bd = BigDecimal.valueOf(((Number) GTSHelper.valueAtIndex(gts1, j)).doubleValue());
-          sum = sum.add(BigDecimal.valueOf(((Number) GTSHelper.valueAtIndex(gts1, j)).doubleValue()));
-          sumsq = sumsq.add(bd.multiply(bd));
+      for (int i = 0; i < p1; i++) {
+        if (r.watchdog.expired()) {
+          break;
         }
 
-        BigDecimal bdk = BigDecimal.valueOf(k);
-        means1[i] = sum.divide(bdk, BigDecimal.ROUND_HALF_UP).doubleValue();
-        double variance = sumsq.divide(bdk, BigDecimal.ROUND_HALF_UP).subtract(sum.multiply(sum).divide(bdk.multiply(bdk), BigDecimal.ROUND_HALF_UP)).doubleValue();
-        stds1[i] = Math.sqrt(variance);
+        macroDistance.distances(i, 0, p2, row, 0);
+        done += p2;
+
+        for (int j = 0; j < p2; j++) {
+          double d = row[j];
+
+          if (d < rowMinValue[i]) {
+            rowMinValue[i] = d;
+            rowMinIndex[i] = j;
+          }
+
+          if (bProfile && d < colMinValue[j]) {
+            colMinValue[j] = d;
+            colMinIndex[j] = i;
+          }
+        }
       }
+    }
 
-      means2 = new double[p2];
-      stds2 = new double[p2];
+    call.cells(done);
+    mark = call.phase(FunctionStats.Phase.TRAVERSAL, mark);
 
-      for (int i = 0; i < p2; i++) {
+    double coverage = (double) done / ((long) p1 * p2);
 
-        // standard
-        BigDecimal sum = BigDecimal.ZERO;
-        BigDecimal sumsq = BigDecimal.ZERO;
+    if (r.watchdog.isExpired() && !r.partial) {
+      throw new WarpScriptException(getName() + " reached its time limit of " + r.watchdog.getTimeout() + " ms, with " + coverage + " of the distance matrix evaluated. Set parameter " + PARTIAL + " to output the partial profile.");
+    }
 
-        // todo: this part can be optimised using running stats computation formulas
+    GeoTimeSerie res = result(gts1, gts2.getName(), staged1, k, macro, distanceType, rowMinValue, rowMinIndex);
 
-        for (int j = i; j < i + k; j++) {
-          BigDecimal bd;
-          bd = BigDecimal.valueOf(((Number) GTSHelper.valueAtIndex(gts2, j)).doubleValue());
-          sum = sum.add(BigDecimal.valueOf(((Number) GTSHelper.valueAtIndex(gts2, j)).doubleValue()));
-          sumsq = sumsq.add(bd.multiply(bd));
-        }
+    // in a partial join, the subsequences without any evaluated neighbor keep an argmin of -1
+    if (r.watchdog.isExpired()) {
+      res.getMetadata().getAttributes().put("." + COVERAGE, String.valueOf(coverage));
+    }
 
-        BigDecimal bdk = BigDecimal.valueOf(k);
-        means2[i] = sum.divide(bdk, BigDecimal.ROUND_HALF_UP).doubleValue();
-        double variance = sumsq.divide(bdk, BigDecimal.ROUND_HALF_UP).subtract(sum.multiply(sum).divide(bdk.multiply(bdk), BigDecimal.ROUND_HALF_UP)).doubleValue();
-        stds2[i] = Math.sqrt(variance);
-      }
+    if (!bProfile) {
+      call.phase(FunctionStats.Phase.OUTPUT, mark);
+      return res;
     }
 
-    // initialization
-    long bucketspan1 = GTSHelper.getBucketSpan(gts1);
-    long lastbucket1 = GTSHelper.getLastBucket(gts1) - bucketspan1 * (k - 1);
-    GeoTimeSerie res = new GeoTimeSerie(lastbucket1, p1, bucketspan1, p1);
+    List<Object> results = new ArrayList<Object>(2);
+    results.add(res);
+    GeoTimeSerie resB = result(gts2, gts1.getName(), staged2, k, macro, distanceType, colMinValue, colMinIndex);
+    if (r.watchdog.isExpired()) {
+      resB.getMetadata().getAttributes().put("." + COVERAGE, String.valueOf(coverage));
+    }
+    results.add(resB);
 
-    // meta
-    res.setMetadata(gts1.getMetadata());
-    GTSHelper.rename(res, gts1.getName() + "::abprofile::" + gts2.getName());
-    res.getMetadata().getAttributes().put(".profile.function", getName());
-    res.getMetadata().getAttributes().put("." + PROFILE.SUBSEQUENCE_LENGTH, String.valueOf(k));
+    call.phase(FunctionStats.Phase.OUTPUT, mark);
+    return results;
+  }
 
-    if (null != macro) {
-      res.getMetadata().getAttributes().put(".custom.macro", "true");
+  /**
+   * Join of a GTS with a B side read from a file, chunk by chunk: the profile of gts1
+   */
+  private Object joinFile(WarpScriptStack stack, GeoTimeSerie gts1, SeriesFile b, Request r) throws WarpScriptException {
+
+    long k = r.k;
+
+    FunctionStats.Call call = FunctionStats.current(stack);
+    long mark = System.nanoTime();
+
+    if (GTSHelper.getBucketCount(gts1) > r.maxsize) {
+      throw new WarpScriptException("Max size limit for " + getName() + " reached. Consider lower the bucketcount. To raise this limit, use a capable token or contact an administrator.");
     }
 
-    //
-    // Fill res
-    //
+    StagedSeries staged1 = StagedSeries.of(gts1);
+    double[] values1 = staged1.values();
 
-    for (int i = 0; i < p1; i++) {
+    // number of vectors
+    int p1 = staged1.size() - (int) k + 1;
+    long p2 = b.getBucketCount() - k + 1;
 
-      double dmin = Double.MAX_VALUE;
-      double d;
-      int argmin = -1;
+    if (p1 < 1 || p2 < 1) {
+      throw new WarpScriptException(getName() + " requires the subsequence length to be lower than the number of buckets for both input gts.");
+    }
 
-      for (int j = 0; j < p2; j++) {
+    call.series(values1.length);
+    call.series(b.getBucketCount());
 
-        if (null == macro) {
+    double[] rowMinValue = new double[p1];
+    long[] rowMinIndex = new long[p1];
 
-          //
-          // Dot product
-          //
+    SlidingStats stats1 = staged1.stats((int) k);
+    mark = call.phase(FunctionStats.Phase.STATS, mark);
 
-          double dot = 0.0D;
-          for (int r = 0; r < k; r++) {
-            dot += getValue(gts1, i + r) * getValue(gts2, j + r);
-          }
+    // the statistics of B are computed chunk by chunk, during the traversal
+    long done = AbJoinEngine.runFile(values1, stats1, b, (int) k, r.distanceType, AbJoinEngine.CHUNK_SIZE, r.watchdog, rowMinValue, rowMinIndex);
 
-          // distance
-          d = 1.0D - (dot - k * means1[i] * means2[j]) / (k * stds1[i] * stds2[j]);
-          d = 2.0D * k * d;
-          d = Math.sqrt(d);
+    call.cells(done);
+    mark = call.phase(FunctionStats.Phase.TRAVERSAL, mark);
 
-        } else {
+    double coverage = (double) done / ((double) p1 * p2);
 
-          stack.push(ATBUCKETINDEX.subsequence(gts1, (int) k ,i));
-          stack.push(ATBUCKETINDEX.subsequence(gts2, (int) k ,j));
-          stack.exec(macro);
-          d = ((Number) stack.pop()).doubleValue();
-        }
+    if (r.watchdog.isExpired() && !r.partial) {
+      throw new WarpScriptException(getName() + " reached its time limit of " + r.watchdog.getTimeout() + " ms, with " + coverage + " of the distance matrix evaluated. Set parameter " + PARTIAL + " to output the partial profile.");
+    }
 
-        if (d < dmin) {
-          dmin = d;
-          argmin = j;
-        }
-      }
+    GeoTimeSerie res = result(gts1, b.getName(), staged1, k, null, r.distanceType, rowMinValue, rowMinIndex);
 
-      GTSHelper.setValue(res, GTSHelper.tickAtIndex(gts1, argmin), GeoTimeSerie.NO_LOCATION, argmin, dmin, false);
+    if (r.watchdog.isExpired()) {
+      res.getMetadata().getAttributes().put("." + COVERAGE, String.valueOf(coverage));
     }
 
-    stack.push(res);
+    call.phase(FunctionStats.Phase.OUTPUT, mark);
+    return res;
+  }
 
-    return stack;
+  /**
+   * Build the profile of the subsequences of gts wrt their nearest neighbor in the series named other
+   */
+  private GeoTimeSerie result(GeoTimeSerie gts, String other, StagedSeries staged, long k, Macro macro, DistanceKernel.Type distanceType, double[] minValue, long[] minIndex) throws WarpScriptException {
+
+    int p = minValue.length;
+
+    // initialization
+    long bucketspan = staged.getBucketSpan();
+    long lastbucket = staged.getLastBucket() - bucketspan * (k - 1);
+    GeoTimeSerie res = new GeoTimeSerie(lastbucket, p, bucketspan, p);
+
+    // meta
+    res.setMetadata(gts.getMetadata());
+    GTSHelper.rename(res, gts.getName() + "::abprofile::" + other);
+    res.getMetadata().getAttributes().put(".profile.function", getName());
+    res.getMetadata().getAttributes().put("." + SUBSEQUENCE_LENGTH, String.valueOf(k));
+
+    if (null != macro) {
+      res.getMetadata().getAttributes().put(".custom.macro", "true");
+    }
+
+    if (DistanceKernel.Type.ZEUCLIDEAN != distanceType) {
+      res.getMetadata().getAttributes().put("." + DISTANCE, distanceType.name());
+    }
+
+    StagedSeries.reset(res, staged.ticks(p), minIndex, minValue, p);
+
+    return res;
   }
 }
@@ -0,0 +1,186 @@
+//
+//   Copyright 2026  SenX S.A.S.
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+//
+
+package io.warp10.ext.matrixprofile;
+
+import io.warp10.script.WarpScriptException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * STOMP-like AB join: traverse the diagonals of the p1 x p2 distance matrix between the subsequences of A (rows)
+ * and B (columns), updating the kernel state (the dot product for the z-normalized distance) incrementally along each
+ * diagonal.
+ *
+ * Ties are resolved towards the lowest index, so the result does not depend on the traversal order.
+ */
+public class AbJoinEngine {
+
+  // number of buckets of B read at once by runFile, 8 MB of values
+  public static final int CHUNK_SIZE = 1 << 20;
+
+  private final DistanceKernel kernel;
+  private final int p1;
+  private final int p2;
+
+  private Watchdog watchdog = new Watchdog(null, 0L);
+
+  /**
+   * @param kernel kernel between the values of A and the values of B
+   */
+  public AbJoinEngine(double[] valuesA, double[] valuesB, int k, DistanceKernel kernel) {
+    this.kernel = kernel;
+    this.p1 = valuesA.length - k + 1;
+    this.p2 = valuesB.length - k + 1;
+  }
+
+  /**
+   * Watchdog checked between two diagonals, the traversal stopping with the minima found so far once it expires
+   */
+  public void setWatchdog(Watchdog watchdog) {
+    this.watchdog = watchdog;
+  }
+
+  /**
+   * Initialize minima arrays, an argmin of -1 meaning no neighbor was found
+   */
+  public static void init(double[] minValue, long[] minIndex) {
+    for (int i = 0; i < minValue.length; i++) {
+      minValue[i] = Double.MAX_VALUE;
+      minIndex[i] = -1L;
+    }
+  }
+
+  /**
+   * Fill the row minima of A, and the column minima of B if colMinValue is not null
+   *
+   * @return the number of cells evaluated, lower than p1 * p2 if the watchdog expired
+   */
+  public long run(double[] rowMinValue, long[] rowMinIndex, double[] colMinValue, long[] colMinIndex) throws WarpScriptException {
+
+    init(rowMinValue, rowMinIndex);
+    if (null != colMinValue) {
+      init(colMinValue, colMinIndex);
+    }
+
+    long done = 0L;
+
+    // a diagonal t holds the cells (i, i + t)
+    for (int t = -(p1 - 1); t < p2; t++) {
+
+      if (watchdog.expired()) {
+        break;
+      }
+
+      int i0 = Math.max(0, -t);
+      int j0 = i0 + t;
+      int len = Math.min(p1 - i0, p2 - j0);
+
+      double state = 0.0D;
+
+      for (int l = 0; l < len; l++) {
+        int i = i0 + l;
+        int j = j0 + l;
+
+        if (0 == l) {
+          // first cell of the diagonal: full state
+          state = kernel.init(i, j);
+        } else {
+          // other cells: we use previous cell state
+          state = kernel.slide(state, i, j);
+        }
+
+        double d = kernel.distance(state, i, j);
+
+        if (d < rowMinValue[i] || (d == rowMinValue[i] && j < rowMinIndex[i])) {
+          rowMinValue[i] = d;
+          rowMinIndex[i] = j;
+        }
+
+        if (null != colMinValue && (d < colMinValue[j] || (d == colMinValue[j] && i < colMinIndex[j]))) {
+          colMinValue[j] = d;
+          colMinIndex[j] = i;
+        }
+      }
+
+      done += len;
+    }
+
+    return done;
+  }
+
+  /**
+   * Fill the row minima of A against a B side read from a file, chunk by chunk. Each chunk is joined as an in-memory
+   * B side, with the statistics of its own subsequences, and its row minima are merged into the running ones.
+   * Consecutive chunks overlap by k - 1 buckets, so that each subsequence of B belongs to a single chunk. As the chunks
+   * are joined in order and ties are resolved towards the lowest index, the minima are those of a single join.
+   *
+   * Only A, the row minima and one chunk are held in heap.
+   *
+   * @param chunkSize number of buckets of a chunk, raised to 2 * k if lower
+   * @return the number of cells evaluated, lower than p1 * p2 if the watchdog expired
+   */
+  public static long runFile(double[] valuesA, SlidingStats statsA, SeriesFile b, int k, DistanceKernel.Type type, int chunkSize, Watchdog watchdog,
+      double[] rowMinValue, long[] rowMinIndex) throws WarpScriptException {
+
+    init(rowMinValue, rowMinIndex);
+
+    int p1 = rowMinValue.length;
+    long n = b.getBucketCount();
+    int size = Math.max(chunkSize, 2 * k);
+
+    double[] chunkMinValue = new double[p1];
+    long[] chunkMinIndex = new long[p1];
+    double[] values = null;
+    ByteBuffer buffer = SeriesFile.buffer((int) Math.min(size, n));
+    long done = 0L;
+
+    try (FileChannel channel = FileChannel.open(b.getPath(), StandardOpenOption.READ)) {
+
+      // each chunk holds the subsequences of B starting in [from, from + length - k]
+      for (long from = 0L; from + k <= n; from += size - k + 1) {
+
+        if (watchdog.expired()) {
+          break;
+        }
+
+        int length = (int) Math.min(size, n - from);
+        StagedSeries chunk = b.chunk(channel, buffer, from, length, values);
+        values = chunk.values();
+
+        DistanceKernel kernel = new DistanceKernel(type, valuesA, statsA, values, chunk.stats(k));
+        AbJoinEngine engine = new AbJoinEngine(valuesA, values, k, kernel);
+        engine.setWatchdog(watchdog);
+        done += engine.run(chunkMinValue, chunkMinIndex, null, null);
+
+        for (int i = 0; i < p1; i++) {
+          if (chunkMinValue[i] < rowMinValue[i]) {
+            rowMinValue[i] = chunkMinValue[i];
+            rowMinIndex[i] = from + chunkMinIndex[i];
+          }
+        }
+      }
+
+    } catch (IOException ioe) {
+      throw new WarpScriptException("Error while reading " + b.getPath().getFileName() + ".", ioe);
+    }
+
+    return done;
+  }
+}
@@ -0,0 +1,92 @@
+//
+//   Copyright 2026  SenX S.A.S.
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+//
+
+package io.warp10.ext.matrixprofile;
+
+import io.warp10.script.WarpScriptException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Run a task on each item of a batch, on the shared executor of the extension
+ *
+ * At most concurrency items of a batch are processed at the same time, whatever the size of the executor, so that a
+ * single script can not take all its threads. The results are returned in the order of the items. The first failure
+ * stops the remaining items and is rethrown.
+ */
+public class Batch {
+
+  public interface Task<T> {
+    T run(int index) throws WarpScriptException;
+  }
+
+  private Batch() {}
+
+  public static <T> List<T> run(final int size, int concurrency, final Task<T> task) throws WarpScriptException {
+
+    final Object[] results = new Object[size];
+    int workers = Math.min(concurrency, size);
+
+    if (workers < 2) {
+      for (int i = 0; i < size; i++) {
+        results[i] = task.run(i);
+      }
+      return (List<T>) Arrays.asList(results);
+    }
+
+    final AtomicInteger next = new AtomicInteger();
+    final AtomicBoolean failed = new AtomicBoolean(false);
+
+    Callable<Void> worker = new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        int i;
+        while (!failed.get() && (i = next.getAndIncrement()) < size) {
+          try {
+            results[i] = task.run(i);
+          } catch (Exception e) {
+            failed.set(true);
+            throw e;
+          }
+        }
+        return null;
+      }
+    };
+
+    List<Future<Void>> futures = new ArrayList<Future<Void>>(workers);
+    for (int w = 0; w < workers; w++) {
+      futures.add(MatrixProfileWarpScriptExtension.getBatchExecutor().submit(worker));
+    }
+
+    try {
+      StompEngine.collect(futures);
+    } finally {
+      // do not leave queued workers behind on failure or interruption
+      failed.set(true);
+      for (Future<Void> future: futures) {
+        future.cancel(false);
+      }
+    }
+
+    return (List<T>) Arrays.asList(results);
+  }
+}
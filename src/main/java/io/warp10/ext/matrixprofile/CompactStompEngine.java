@@ -0,0 +1,373 @@
+//
+//   Copyright 2026  SenX S.A.S.
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+//
+
+package io.warp10.ext.matrixprofile;
+
+import io.warp10.script.WarpScriptException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single precision variant of the STOMP traversal for the z-normalized euclidean distance
+ *
+ * The values, the statistics of the subsequences and the row minima are stored in float[] and int[] arrays, which halves
+ * the working set of the double precision engine. The values are centered on their global mean before being rounded,
+ * as the z-normalized distance does not depend on an offset. The statistics are computed in double precision from the
+ * rounded values, and the dot products are accumulated in double along each diagonal, where the drift of a single
+ * precision sliding sum would build up. Only the stored results are rounded.
+ */
+public class CompactStompEngine {
+
+  private final float[] values;
+  private final int k;
+  private final int p;
+  private final int exclusionRadius;
+  private final float[] means;
+  // 1 / (sqrt(k) * std) of each subsequence
+  private final float[] norms;
+  private final PROFILE.Direction direction;
+  private final boolean robust;
+
+  private Watchdog watchdog = new Watchdog(null, 0L);
+  // fraction of the cells evaluated by the last run, below 1 once the watchdog expired
+  private double coverage = 1.0D;
+
+  /**
+   * Row minima (and robust second minima) with their argmin, in single precision
+   */
+  static class RowMins {
+    final float[] value;
+    final int[] index;
+    final float[] value2;
+    final int[] index2;
+
+    RowMins(int p, boolean robust) {
+      value = new float[p];
+      index = new int[p];
+      for (int i = 0; i < p; i++) {
+        value[i] = Float.MAX_VALUE;
+      }
+
+      if (robust) {
+        value2 = new float[p];
+        index2 = new int[p];
+        for (int i = 0; i < p; i++) {
+          value2[i] = Float.MAX_VALUE;
+        }
+      } else {
+        value2 = null;
+        index2 = null;
+      }
+    }
+
+    /**
+     * Offer candidate c at distance d to row r. The previous minimum is demoted to the second one when robust.
+     */
+    void update(int r, int c, float d, boolean robust) {
+      if (d < value[r]) {
+        if (robust) {
+          value2[r] = value[r];
+          index2[r] = index[r];
+        }
+        value[r] = d;
+        index[r] = c;
+      } else if (robust && d < value2[r]) {
+        value2[r] = d;
+        index2[r] = c;
+      }
+    }
+
+    /**
+     * Merge the minima of the next range of diagonals, as StompEngine.RowMins.merge
+     */
+    void merge(RowMins next) {
+      boolean robust = null != value2;
+      for (int i = 0; i < value.length; i++) {
+        update(i, next.index[i], next.value[i], robust);
+        if (robust) {
+          update(i, next.index2[i], next.value2[i], true);
+        }
+      }
+    }
+
+    /**
+     * Two-sided minima of the left and right minima of a split traversal. Unlike merge, ties are resolved as in
+     * StompEngine.RowMins, that is as in the diagonal order of a two-sided traversal: nearest subsequence first, then
+     * the older one.
+     */
+    static RowMins both(RowMins left, RowMins right) {
+      boolean robust = null != left.value2;
+      RowMins both = new RowMins(left.value.length, robust);
+      for (RowMins side: new RowMins[] { left, right }) {
+        for (int r = 0; r < both.value.length; r++) {
+          both.offer(r, side.index[r], side.value[r], robust);
+          if (robust) {
+            both.offer(r, side.index2[r], side.value2[r], true);
+          }
+        }
+      }
+      return both;
+    }
+
+    private void offer(int r, int c, float d, boolean robust) {
+      if (d < value[r] || (d == value[r] && StompEngine.before(r, c, index[r]))) {
+        if (robust) {
+          value2[r] = value[r];
+          index2[r] = index[r];
+        }
+        value[r] = d;
+        index[r] = c;
+      } else if (robust && (d < value2[r] || (d == value2[r] && StompEngine.before(r, c, index2[r])))) {
+        value2[r] = d;
+        index2[r] = c;
+      }
+    }
+
+    /**
+     * Profile values in double precision, Float.MAX_VALUE (no neighbor) becoming Double.MAX_VALUE as in StompEngine
+     */
+    static double[] widen(float[] values) {
+      double[] widened = new double[values.length];
+      for (int i = 0; i < values.length; i++) {
+        widened[i] = Float.MAX_VALUE == values[i] ? Double.MAX_VALUE : values[i];
+      }
+      return widened;
+    }
+
+    static long[] widen(int[] indices) {
+      long[] widened = new long[indices.length];
+      for (int i = 0; i < indices.length; i++) {
+        widened[i] = indices[i];
+      }
+      return widened;
+    }
+  }
+
+  /**
+   * @param values the staged values of the input GTS, left untouched
+   */
+  public CompactStompEngine(double[] values, int k, int exclusionRadius, PROFILE.Direction direction, boolean robust) {
+    int n = values.length;
+    this.k = k;
+    this.p = n - k + 1;
+    this.exclusionRadius = exclusionRadius;
+    this.direction = direction;
+    this.robust = robust;
+
+    double mean = 0.0D;
+    for (int i = 0; i < n; i++) {
+      mean += values[i];
+    }
+    mean /= n;
+
+    // rounded values, and their exact double counterpart for the statistics
+    this.values = new float[n];
+    double[] rounded = new double[n];
+    for (int i = 0; i < n; i++) {
+      this.values[i] = (float) (values[i] - mean);
+      rounded[i] = this.values[i];
+    }
+
+    SlidingStats stats = SlidingStats.compute(rounded, k);
+    double[] mu = stats.means();
+    double[] sigma = stats.stds();
+
+    this.means = new float[p];
+    this.norms = new float[p];
+    double sqrtk = Math.sqrt(k);
+    for (int i = 0; i < p; i++) {
+      means[i] = (float) mu[i];
+      norms[i] = (float) (1.0D / (sqrtk * sigma[i]));
+    }
+  }
+
+  /**
+   * Mask the subsequences of staged containing a missing bucket: their norm is NaN, so are their distances, which the
+   * traversal ignores. See StagedSeries.stats for the double precision engines.
+   */
+  public void mask(StagedSeries staged) {
+    for (int i = 0; i < p; i++) {
+      if (!staged.isValid(i, k)) {
+        norms[i] = Float.NaN;
+      }
+    }
+  }
+
+  /**
+   * Watchdog checked between two diagonals, as in StompEngine
+   */
+  public void setWatchdog(Watchdog watchdog) {
+    this.watchdog = watchdog;
+  }
+
+  /**
+   * Fraction of the cells evaluated by the last run
+   */
+  public double getCoverage() {
+    return coverage;
+  }
+
+  /**
+   * Compute the row minima, possibly split across several threads
+   */
+  public RowMins run(int parallelism) throws WarpScriptException {
+    return run(parallelism, false)[0];
+  }
+
+  /**
+   * Compute the left, right and two-sided row minima in a single traversal, see StompEngine.runDirections
+   *
+   * @return the left, right and two-sided minima, in that order
+   */
+  public RowMins[] runDirections(int parallelism) throws WarpScriptException {
+    RowMins[] mins = run(parallelism, true);
+    return new RowMins[] { mins[0], mins[1], RowMins.both(mins[0], mins[1]) };
+  }
+
+  /**
+   * @param split whether to keep the left and right minima apart
+   * @return the minima, or the left and right minima if split
+   */
+  private RowMins[] run(int parallelism, final boolean split) throws WarpScriptException {
+
+    int firstDiagNotInExclusionZone = exclusionRadius;
+    long cells = StompEngine.cells(firstDiagNotInExclusionZone, p);
+
+    int workers = StompEngine.workers(firstDiagNotInExclusionZone, p, parallelism);
+
+    if (workers < 2) {
+      RowMins[] mins = allocate(split);
+      long done = traverse(firstDiagNotInExclusionZone, p, newer(mins), older(mins));
+      coverage = 0L == cells ? 1.0D : (double) done / cells;
+      return mins;
+    }
+
+    final AtomicLong done = new AtomicLong();
+
+    int[] bounds = StompEngine.split(firstDiagNotInExclusionZone, p, workers);
+
+    ForkJoinPool pool = new ForkJoinPool(workers);
+
+    try {
+      List<Callable<RowMins[]>> tasks = new ArrayList<Callable<RowMins[]>>(workers);
+      for (int i = 0; i < workers; i++) {
+        final int start = bounds[i];
+        final int end = bounds[i + 1];
+        tasks.add(new Callable<RowMins[]>() {
+          @Override
+          public RowMins[] call() throws Exception {
+            RowMins[] local = allocate(split);
+            done.addAndGet(traverse(start, end, newer(local), older(local)));
+            return local;
+          }
+        });
+      }
+
+      RowMins[] mins = allocate(split);
+      for (RowMins[] partial: StompEngine.collect(pool.invokeAll(tasks))) {
+        for (int m = 0; m < mins.length; m++) {
+          mins[m].merge(partial[m]);
+        }
+      }
+
+      coverage = 0L == cells ? 1.0D : (double) done.get() / cells;
+      return mins;
+
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  private RowMins[] allocate(boolean split) {
+    return split ? new RowMins[] { new RowMins(p, robust), new RowMins(p, robust) } : new RowMins[] { new RowMins(p, robust) };
+  }
+
+  /**
+   * Minima updated with the more recent neighbors of the rows (right), null if the direction excludes them
+   */
+  private RowMins newer(RowMins[] mins) {
+    if (2 == mins.length) {
+      return mins[1];
+    }
+    return PROFILE.Direction.LEFT != direction ? mins[0] : null;
+  }
+
+  /**
+   * Minima updated with the older neighbors of the rows (left), null if the direction excludes them
+   */
+  private RowMins older(RowMins[] mins) {
+    if (2 == mins.length) {
+      return mins[0];
+    }
+    return PROFILE.Direction.RIGHT != direction ? mins[0] : null;
+  }
+
+  /**
+   * Traverse the diagonals in [tStart, tEnd), cell (i, j) updating row i of newerMins and row j of olderMins
+   *
+   * @return the number of cells evaluated
+   */
+  private long traverse(int tStart, int tEnd, RowMins newerMins, RowMins olderMins) throws WarpScriptException {
+
+    float[] v = values;
+    double kd = k;
+    boolean newer = null != newerMins;
+    boolean older = null != olderMins;
+    long done = 0L;
+
+    for (int t = tStart; t < tEnd; t++) {
+
+      if (watchdog.expired()) {
+        break;
+      }
+
+      // products of two floats are exact in double
+      double dot = 0.0D;
+
+      for (int j = t; j < p; j++) {
+        int i = j - t;
+
+        if (0 == i) {
+          for (int l = 0; l < k; l++) {
+            dot += (double) v[l] * v[j + l];
+          }
+        } else {
+          dot -= (double) v[i - 1] * v[j - 1];
+          dot += (double) v[i + k - 1] * v[j + k - 1];
+        }
+
+        double corr = (dot - kd * means[i] * means[j]) * norms[i] * norms[j];
+        float d = (float) Math.sqrt(2.0D * kd * (1.0D - corr));
+
+        if (newer) {
+          newerMins.update(i, j, d, robust);
+        }
+
+        if (older) {
+          olderMins.update(j, i, d, robust);
+        }
+      }
+
+      done += p - t;
+    }
+
+    return done;
+  }
+}
@@ -0,0 +1,118 @@
+//
+//   Copyright 2026  SenX S.A.S.
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+//
+
+package io.warp10.ext.matrixprofile;
+
+import io.warp10.continuum.gts.GeoTimeSerie;
+import io.warp10.script.NamedWarpScriptFunction;
+import io.warp10.script.WarpScriptException;
+import io.warp10.script.WarpScriptStack;
+import io.warp10.script.WarpScriptStackFunction;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Extract the top discords of a matrix profile GTS: the subsequences with the highest profile values,
+ * out of the exclusion zones of each other
+ */
+public class DISCORDS extends NamedWarpScriptFunction implements WarpScriptStackFunction {
+
+  public static final String PROFILE_GTS = MOTIFS.PROFILE_GTS;
+  public static final String COUNT = MOTIFS.COUNT;
+  public static final String EXCLUSION_RADIUS = MOTIFS.EXCLUSION_RADIUS;
+
+  public DISCORDS(String name) {
+    super(name);
+  }
+
+  @Override
+  public Object apply(WarpScriptStack stack) throws WarpScriptException {
+
+    //
+    // Parameters
+    //
+
+    Object profile;
+    long count;
+    Integer exclusionRadius = null;
+
+    //
+    // Two type of signature:
+    //  - a MAP (with optional arguments)
+    //  - or two arguments, the profile and the number of discords
+    //
+
+    Object o = stack.pop();
+    if (o instanceof Map) {
+
+      Map params = (Map) o;
+
+      profile = params.get(PROFILE_GTS);
+
+      if (null == params.get(COUNT)) {
+        throw new WarpScriptException(getName() + " requires parameter " + COUNT);
+      }
+      count = ((Number) params.get(COUNT)).longValue();
+
+      if (null != params.get(EXCLUSION_RADIUS)) {
+        exclusionRadius = ((Number) params.get(EXCLUSION_RADIUS)).intValue();
+      }
+
+    } else {
+
+      if (!(o instanceof Long)) {
+        throw new WarpScriptException(getName() + " expects a number of discords (LONG) as second parameter.");
+      }
+      count = (Long) o;
+      profile = stack.pop();
+    }
+
+    if (!(profile instanceof GeoTimeSerie)) {
+      throw new WarpScriptException(getName() + " expects a matrix profile GTS as first parameter.");
+    }
+
+    if (count < 1L || count > Integer.MAX_VALUE) {
+      throw new WarpScriptException(getName() + " expects parameter " + COUNT + " to be strictly positive.");
+    }
+
+    FunctionStats.Call call = FunctionStats.current(stack);
+    long mark = System.nanoTime();
+
+    ProfileSelection selection = new ProfileSelection(getName(), (GeoTimeSerie) profile, exclusionRadius);
+    int[] discords = selection.select((int) count, true, false);
+    call.series(selection.size());
+
+    List<Object> results = new ArrayList<Object>(discords.length);
+
+    for (int discord: discords) {
+      Map<String,Object> result = new LinkedHashMap<String,Object>();
+      result.put(MOTIFS.INDEX, (long) discord);
+      result.put(MOTIFS.TICK, selection.tick(discord));
+      result.put(MOTIFS.NEIGHBOR, selection.neighbor(discord));
+      result.put(MOTIFS.DISTANCE, selection.value(discord));
+      results.add(result);
+    }
+
+    call.phase(FunctionStats.Phase.TRAVERSAL, mark);
+
+    stack.push(results);
+
+    return stack;
+  }
+}
@@ -0,0 +1,212 @@
+//
+//   Copyright 2026  SenX S.A.S.
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+//
+
+package io.warp10.ext.matrixprofile;
+
+/**
+ * Built-in distances between the subsequences of length k of a series A (rows) and a series B (columns)
+ *
+ * Each distance is computed from a single accumulated state which slides along the diagonals of the distance matrix:
+ * the state of cell (i, j) is derived from the state of cell (i - 1, j - 1) in O(1).
+ * The state is the dot product for the z-normalized euclidean, Pearson and CID distances, and the sum of the squared
+ * (resp. absolute) differences for the euclidean (resp. Manhattan) distance.
+ *
+ * The class is final and dispatches on the type, so that the traversal loops keep a monomorphic call site.
+ */
+public final class DistanceKernel {
+
+  public enum Type {
+    // z-normalized euclidean distance
+    ZEUCLIDEAN,
+    // euclidean distance of the raw values
+    EUCLIDEAN,
+    // 1 - Pearson correlation coefficient
+    PEARSON,
+    // complexity-invariant distance: z-normalized euclidean distance times the complexity correction factor
+    CID,
+    // Manhattan distance of the raw values
+    MANHATTAN;
+
+    /**
+     * Parse a distance name, case insensitive
+     */
+    public static Type of(String name) {
+      return valueOf(name.toUpperCase());
+    }
+
+    /**
+     * Whether the state is the dot product of the subsequences
+     */
+    public boolean isDotProduct() {
+      return EUCLIDEAN != this && MANHATTAN != this;
+    }
+  }
+
+  private final Type type;
+  private final int k;
+  private final double[] a;
+  private final double[] b;
+  private final double[] meansA;
+  private final double[] stdsA;
+  private final double[] meansB;
+  private final double[] stdsB;
+  // whether some subsequences are masked, their distances being NaN
+  private final boolean masked;
+
+  // complexity estimates of the z-normalized subsequences, for CID only
+  private final double[] complexityA;
+  private final double[] complexityB;
+
+  /**
+   * @param statsA statistics of the subsequences of a
+   * @param statsB statistics of the subsequences of b, the same instance for a self join
+   */
+  public DistanceKernel(Type type, double[] a, SlidingStats statsA, double[] b, SlidingStats statsB) {
+    this.type = type;
+    this.k = statsA.getSubsequenceLength();
+    this.a = a;
+    this.b = b;
+    this.meansA = statsA.means();
+    this.stdsA = statsA.stds();
+    this.meansB = statsB.means();
+    this.stdsB = statsB.stds();
+    this.masked = statsA.isMasked() || statsB.isMasked();
+
+    if (Type.CID == type) {
+      this.complexityA = complexity(a, stdsA, k);
+      this.complexityB = a == b ? complexityA : complexity(b, stdsB, k);
+    } else {
+      this.complexityA = null;
+      this.complexityB = null;
+    }
+  }
+
+  public Type getType() {
+    return type;
+  }
+
+  /**
+   * State of cell (i, j), computed in O(k)
+   */
+  public double init(int i, int j) {
+    double state = 0.0D;
+
+    switch (type) {
+      case EUCLIDEAN:
+        for (int l = 0; l < k; l++) {
+          double diff = a[i + l] - b[j + l];
+          state += diff * diff;
+        }
+        break;
+
+      case MANHATTAN:
+        for (int l = 0; l < k; l++) {
+          state += Math.abs(a[i + l] - b[j + l]);
+        }
+        break;
+
+      default:
+        for (int l = 0; l < k; l++) {
+          state += a[i + l] * b[j + l];
+        }
+    }
+
+    return state;
+  }
+
+  /**
+   * State of cell (i, j) from the state of cell (i - 1, j - 1), in O(1)
+   */
+  public double slide(double state, int i, int j) {
+    switch (type) {
+      case EUCLIDEAN:
+        double out = a[i - 1] - b[j - 1];
+        double in = a[i + k - 1] - b[j + k - 1];
+        return state - out * out + in * in;
+
+      case MANHATTAN:
+        return state - Math.abs(a[i - 1] - b[j - 1]) + Math.abs(a[i + k - 1] - b[j + k - 1]);
+
+      default:
+        state -= a[i - 1] * b[j - 1];
+        state += a[i + k - 1] * b[j + k - 1];
+        return state;
+    }
+  }
+
+  /**
+   * Distance of cell (i, j) given its state
+   */
+  public double distance(double state, int i, int j) {
+    double d;
+
+    // the distances of the raw values do not use the statistics, which hold the mask
+    if (masked && !type.isDotProduct() && (Double.isNaN(meansA[i]) || Double.isNaN(meansB[j]))) {
+      return Double.NaN;
+    }
+
+    switch (type) {
+      case EUCLIDEAN:
+        // the sliding sum may drift slightly below 0 on identical subsequences
+        return Math.sqrt(Math.max(0.0D, state));
+
+      case MANHATTAN:
+        return Math.max(0.0D, state);
+
+      case PEARSON:
+        return 1.0D - (state - k * meansA[i] * meansB[j]) / (k * stdsA[i] * stdsB[j]);
+
+      case CID:
+        d = 1.0D - (state - k * meansA[i] * meansB[j]) / (k * stdsA[i] * stdsB[j]);
+        d = 2.0D * k * d;
+        d = Math.sqrt(d);
+        double ca = complexityA[i];
+        double cb = complexityB[j];
+        return d * Math.max(ca, cb) / Math.min(ca, cb);
+
+      default:
+        d = 1.0D - (state - k * meansA[i] * meansB[j]) / (k * stdsA[i] * stdsB[j]);
+        d = 2.0D * k * d;
+        return Math.sqrt(d);
+    }
+  }
+
+  /**
+   * Complexity estimate sqrt(sum((x[l + 1] - x[l])^2)) of each z-normalized subsequence, from a sliding sum of the
+   * squared differences divided by the standard deviation of the subsequence
+   */
+  private static double[] complexity(double[] values, double[] stds, int k) {
+    int p = values.length - k + 1;
+    double[] ce = new double[p];
+
+    double sum = 0.0D;
+    for (int l = 0; l < k - 1; l++) {
+      double diff = values[l + 1] - values[l];
+      sum += diff * diff;
+    }
+
+    for (int i = 0; i < p; i++) {
+      if (i > 0) {
+        double out = values[i] - values[i - 1];
+        double in = values[i + k - 1] - values[i + k - 2];
+        sum += in * in - out * out;
+      }
+      ce[i] = Math.sqrt(Math.max(0.0D, sum)) / stds[i];
+    }
+
+    return ce;
+  }
+}
@@ -0,0 +1,161 @@
+//
+//   Copyright 2026  SenX S.A.S.
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+//
+
+package io.warp10.ext.matrixprofile;
+
+/**
+ * Iterative radix-2 Cooley-Tukey FFT on split real and imaginary arrays
+ * An instance holds the twiddle factors for a given size, so it can be reused for several transforms.
+ */
+public class FFT {
+
+  private final int n;
+  private final double[] cos;
+  private final double[] sin;
+
+  /**
+   * @param n size of the transforms, a power of two
+   */
+  public FFT(int n) {
+    if (n < 1 || 0 != (n & (n - 1))) {
+      throw new IllegalArgumentException("FFT size must be a power of two.");
+    }
+
+    this.n = n;
+
+    // twiddle factors are computed directly rather than by recurrence, for accuracy
+    cos = new double[n / 2];
+    sin = new double[n / 2];
+    for (int i = 0; i < n / 2; i++) {
+      cos[i] = Math.cos(2.0D * Math.PI * i / n);
+      sin[i] = Math.sin(2.0D * Math.PI * i / n);
+    }
+  }
+
+  /**
+   * Smallest power of two greater than or equal to n
+   */
+  public static int size(int n) {
+    int size = 1;
+    while (size < n) {
+      size <<= 1;
+    }
+    return size;
+  }
+
+  public int getSize() {
+    return n;
+  }
+
+  /**
+   * In-place transform of arrays of the size of this instance.
+   * The inverse transform is scaled by 1/n.
+   */
+  public void transform(double[] re, double[] im, boolean inverse) {
+
+    // bit reversal permutation
+    for (int i = 1, j = 0; i < n; i++) {
+      int bit = n >> 1;
+      for (; 0 != (j & bit); bit >>= 1) {
+        j ^= bit;
+      }
+      j ^= bit;
+
+      if (i < j) {
+        double tmp = re[i];
+        re[i] = re[j];
+        re[j] = tmp;
+        tmp = im[i];
+        im[i] = im[j];
+        im[j] = tmp;
+      }
+    }
+
+    double sign = inverse ? 1.0D : -1.0D;
+
+    // butterflies
+    for (int len = 2; len <= n; len <<= 1) {
+      int half = len >> 1;
+      int step = n / len;
+      for (int i = 0; i < n; i += len) {
+        for (int j = 0; j < half; j++) {
+          double wr = cos[j * step];
+          double wi = sign * sin[j * step];
+          int a = i + j;
+          int b = a + half;
+          double xr = re[b] * wr - im[b] * wi;
+          double xi = re[b] * wi + im[b] * wr;
+          re[b] = re[a] - xr;
+          im[b] = im[a] - xi;
+          re[a] += xr;
+          im[a] += xi;
+        }
+      }
+    }
+
+    if (inverse) {
+      for (int i = 0; i < n; i++) {
+        re[i] /= n;
+        im[i] /= n;
+      }
+    }
+  }
+
+  /**
+   * Sliding dot products of query over series: result[i] = sum(query[l] * series[i + l]) for i in [0, n - m]
+   * Both real inputs are packed in a single complex transform.
+   */
+  public static double[] slidingDotProducts(double[] query, double[] series) {
+
+    int m = query.length;
+    int n = series.length;
+    FFT fft = new FFT(size(n + m - 1));
+    int size = fft.getSize();
+
+    // z = series + i * reversed query
+    double[] re = new double[size];
+    double[] im = new double[size];
+    System.arraycopy(series, 0, re, 0, n);
+    for (int l = 0; l < m; l++) {
+      im[l] = query[m - 1 - l];
+    }
+
+    fft.transform(re, im, false);
+
+    //
+    // Unpack the two spectra, S[f] = (Z[f] + conj(Z[-f])) / 2 and Q[f] = (Z[f] - conj(Z[-f])) / 2i, and multiply them
+    //
+
+    double[] pre = new double[size];
+    double[] pim = new double[size];
+    for (int f = 0; f < size; f++) {
+      int g = (size - f) & (size - 1);
+      double sr = (re[f] + re[g]) * 0.5D;
+      double si = (im[f] - im[g]) * 0.5D;
+      double qr = (im[f] + im[g]) * 0.5D;
+      double qi = (re[g] - re[f]) * 0.5D;
+      pre[f] = sr * qr - si * qi;
+      pim[f] = sr * qi + si * qr;
+    }
+
+    fft.transform(pre, pim, true);
+
+    double[] dots = new double[n - m + 1];
+    System.arraycopy(pre, m - 1, dots, 0, n - m + 1);
+
+    return dots;
+  }
+}
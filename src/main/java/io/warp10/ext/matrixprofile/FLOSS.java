@@ -0,0 +1,307 @@
+//
+//   Copyright 2026  SenX S.A.S.
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+//
+
+package io.warp10.ext.matrixprofile;
+
+import io.warp10.continuum.gts.GTSHelper;
+import io.warp10.continuum.gts.GeoTimeSerie;
+import io.warp10.continuum.gts.GeoTimeSerie.TYPE;
+import io.warp10.script.NamedWarpScriptFunction;
+import io.warp10.script.WarpScriptException;
+import io.warp10.script.WarpScriptStack;
+import io.warp10.script.WarpScriptStackFunction;
+
+import java.util.Map;
+
+/**
+ * Streaming semantic segmentation (FLOSS): the corrected arc curve of a sliding window, updated as buckets are appended
+ *
+ * Called with a MAP, create a state from the last buckets of a GTS. Called with a state and a GTS, append to the state
+ * the buckets of the GTS after its last tick. Both push the new state, then the corrected arc curve of its window.
+ * The state is a plain GTS, see state, so that it can be kept between executions like any GTS. The stream is resumed
+ * from it on each call, see FlossStream.resume.
+ */
+public class FLOSS extends NamedWarpScriptFunction implements WarpScriptStackFunction {
+
+  public static final String WINDOW = "window";
+  public static final String EXCLUSION_FACTOR = "excl.factor";
+  public static final String TAIL = "floss.tail";
+
+  private static final long DEFAULT_EXCLUSION_FACTOR = 5L;
+
+  public FLOSS(String name) {
+    super(name);
+  }
+
+  @Override
+  public Object apply(WarpScriptStack stack) throws WarpScriptException {
+
+    Object o = stack.pop();
+
+    FlossStream state;
+    Object input;
+
+    if (o instanceof Map) {
+
+      Map params = (Map) o;
+
+      input = params.get(PROFILE.GTS);
+      if (null == input) {
+        throw new WarpScriptException(getName() + " requires parameter " + PROFILE.GTS);
+      }
+
+      if (!(params.get(PROFILE.SUBSEQUENCE_LENGTH) instanceof Long)) {
+        throw new WarpScriptException(getName() + " requires parameter " + PROFILE.SUBSEQUENCE_LENGTH + " (LONG).");
+      }
+      long k = (long) params.get(PROFILE.SUBSEQUENCE_LENGTH);
+
+      if (!(params.get(WINDOW) instanceof Long)) {
+        throw new WarpScriptException(getName() + " requires parameter " + WINDOW + " (LONG).");
+      }
+      long window = (long) params.get(WINDOW);
+
+      long exclusionRadius = (long) Math.ceil(k * 0.25D);
+      if (null != params.get(PROFILE.EXCLUSION_RADIUS)) {
+        exclusionRadius = ((Number) params.get(PROFILE.EXCLUSION_RADIUS)).longValue();
+      }
+
+      long exclusionFactor = DEFAULT_EXCLUSION_FACTOR;
+      if (null != params.get(EXCLUSION_FACTOR)) {
+        exclusionFactor = ((Number) params.get(EXCLUSION_FACTOR)).longValue();
+      }
+
+      if (k < 2) {
+        throw new WarpScriptException(getName() + " 's subsequence size must be strictly greater than 1.");
+      }
+
+      if (window <= k) {
+        throw new WarpScriptException(getName() + " expects parameter " + WINDOW + " to be greater than the subsequence length.");
+      }
+
+      if (exclusionRadius < 1 || exclusionRadius >= window - k) {
+        throw new WarpScriptException(getName() + " expects parameter " + PROFILE.EXCLUSION_RADIUS + " to be positive and lower than the number of subsequences of the window.");
+      }
+
+      if (exclusionFactor < 0) {
+        throw new WarpScriptException(getName() + " expects parameter " + EXCLUSION_FACTOR + " to be positive.");
+      }
+
+      // the window is held in memory and traversed like a profile
+      long maxsize = MatrixProfileWarpScriptExtension.getLongSetting(stack, MatrixProfileWarpScriptExtension.DEFAULT_VALUE_MP_PROFILE_MAXSIZE,
+          MatrixProfileWarpScriptExtension.CONFIG_MP_PROFILE_MAXSIZE, MatrixProfileWarpScriptExtension.CAPNAME_MP_PROFILE_MAXSIZE);
+
+      if (window > maxsize) {
+        throw new WarpScriptException("Max size limit for " + getName() + " reached. Consider lower the window. To raise this limit, use a capable token or contact an administrator.");
+      }
+
+      if (!(input instanceof GeoTimeSerie)) {
+        throw new WarpScriptException(getName() + " expects parameter " + PROFILE.GTS + " to be a GTS.");
+      }
+
+      checkInput((GeoTimeSerie) input);
+
+      state = new FlossStream((int) k, (int) window, (int) exclusionRadius, (int) Math.min(window, exclusionFactor * k), GTSHelper.getBucketSpan((GeoTimeSerie) input));
+
+    } else {
+
+      input = o;
+
+      if (!(input instanceof GeoTimeSerie)) {
+        throw new WarpScriptException(getName() + " expects a GTS as second parameter.");
+      }
+
+      o = stack.pop();
+
+      if (!(o instanceof GeoTimeSerie)) {
+        throw new WarpScriptException(getName() + " expects a state produced by " + getName() + " as first parameter.");
+      }
+
+      checkInput((GeoTimeSerie) input);
+      state = resume(stack, (GeoTimeSerie) o);
+
+      if (GTSHelper.getBucketSpan((GeoTimeSerie) input) != state.getBucketSpan()) {
+        throw new WarpScriptException(getName() + " expects the GTS to have the bucketspan of the state.");
+      }
+    }
+
+    GeoTimeSerie gts = (GeoTimeSerie) input;
+
+    FunctionStats.Call call = FunctionStats.current(stack);
+    long mark = System.nanoTime();
+
+    StagedSeries staged = StagedSeries.of(gts);
+    double[] values = staged.values();
+
+    //
+    // Buckets after the last tick of the state, which must follow it without gap
+    //
+
+    int from = 0;
+
+    if (state.getCount() > 0L) {
+      long lastTick = state.getLastTick();
+      long bucketspan = state.getBucketSpan();
+
+      if (0L != (staged.getLastBucket() - lastTick) % bucketspan) {
+        throw new WarpScriptException(getName() + " expects the buckets of the GTS to be aligned with those of the state.");
+      }
+
+      if (staged.tickAtIndex(0) > lastTick + bucketspan) {
+        throw new WarpScriptException(getName() + " expects the GTS to start at most one bucket after the last tick of the state.");
+      }
+
+      from = (int) Math.max(0L, Math.min(values.length, (lastTick - staged.tickAtIndex(0)) / bucketspan + 1L));
+    }
+
+    call.series(values.length - from);
+    mark = call.phase(FunctionStats.Phase.STATS, mark);
+
+    if (from < values.length) {
+      call.cells(state.append(values, from, values.length, staged.getLastBucket()));
+    }
+
+    mark = call.phase(FunctionStats.Phase.TRAVERSAL, mark);
+
+    //
+    // Corrected arc curve of the window
+    //
+
+    long[] ticks;
+    double[] cac;
+    synchronized (state) {
+      ticks = state.ticks();
+      cac = state.curve();
+    }
+
+    int size = cac.length;
+    GeoTimeSerie res = new GeoTimeSerie(0 == size ? 0L : ticks[size - 1], size, state.getBucketSpan(), size);
+    res.setMetadata(gts.getMetadata());
+    GTSHelper.rename(res, gts.getName() + "::floss");
+    res.getMetadata().getAttributes().put("." + PROFILE.SUBSEQUENCE_LENGTH, String.valueOf(state.getSubsequenceLength()));
+    res.getMetadata().getAttributes().put("." + WINDOW, String.valueOf(state.getWindow()));
+
+    StagedSeries.reset(res, ticks, null, cac, size);
+    call.phase(FunctionStats.Phase.OUTPUT, mark);
+
+    stack.push(state(state, gts));
+    stack.push(res);
+
+    return stack;
+  }
+
+  /**
+   * State GTS of a stream: the values of its window, each with the index of the right nearest neighbor of its
+   * subsequence as elevation, -1 if none, and the parameters of the stream as attributes
+   */
+  static GeoTimeSerie state(FlossStream stream, GeoTimeSerie gts) throws WarpScriptException {
+    double[] values;
+    long[] neighbors;
+    long lastTick;
+    synchronized (stream) {
+      values = stream.window();
+      neighbors = stream.neighbors();
+      lastTick = stream.getLastTick();
+    }
+
+    int n = values.length;
+    long bucketspan = stream.getBucketSpan();
+    long[] ticks = new long[n];
+    for (int x = 0; x < n; x++) {
+      ticks[x] = lastTick - (n - 1 - x) * bucketspan;
+    }
+
+    GeoTimeSerie state = new GeoTimeSerie(lastTick, n, bucketspan, n);
+    state.setMetadata(gts.getMetadata());
+    GTSHelper.rename(state, gts.getName() + "::floss.state");
+    state.getMetadata().getAttributes().put("." + PROFILE.SUBSEQUENCE_LENGTH, String.valueOf(stream.getSubsequenceLength()));
+    state.getMetadata().getAttributes().put("." + WINDOW, String.valueOf(stream.getWindow()));
+    state.getMetadata().getAttributes().put("." + PROFILE.EXCLUSION_RADIUS, String.valueOf(stream.getExclusionRadius()));
+    state.getMetadata().getAttributes().put("." + TAIL, String.valueOf(stream.getTail()));
+
+    StagedSeries.reset(state, ticks, neighbors, values, n);
+
+    return state;
+  }
+
+  /**
+   * Stream of a state GTS
+   */
+  private FlossStream resume(WarpScriptStack stack, GeoTimeSerie state) throws WarpScriptException {
+    Map<String,String> attributes = state.getMetadata().getAttributes();
+
+    if (null == attributes.get("." + PROFILE.SUBSEQUENCE_LENGTH) || null == attributes.get("." + WINDOW)
+        || null == attributes.get("." + PROFILE.EXCLUSION_RADIUS) || null == attributes.get("." + TAIL)) {
+      throw new WarpScriptException(getName() + " expects a state produced by " + getName() + ", with its attributes.");
+    }
+
+    int k;
+    int window;
+    int exclusionRadius;
+    int tail;
+
+    try {
+      k = Integer.parseInt(attributes.get("." + PROFILE.SUBSEQUENCE_LENGTH));
+      window = Integer.parseInt(attributes.get("." + WINDOW));
+      exclusionRadius = Integer.parseInt(attributes.get("." + PROFILE.EXCLUSION_RADIUS));
+      tail = Integer.parseInt(attributes.get("." + TAIL));
+    } catch (NumberFormatException nfe) {
+      throw new WarpScriptException(getName() + " expects a state produced by " + getName() + ", with its attributes.");
+    }
+
+    if (k < 2 || window <= k || exclusionRadius < 1) {
+      throw new WarpScriptException(getName() + " expects a state produced by " + getName() + ", with its attributes.");
+    }
+
+    long maxsize = MatrixProfileWarpScriptExtension.getLongSetting(stack, MatrixProfileWarpScriptExtension.DEFAULT_VALUE_MP_PROFILE_MAXSIZE,
+        MatrixProfileWarpScriptExtension.CONFIG_MP_PROFILE_MAXSIZE, MatrixProfileWarpScriptExtension.CAPNAME_MP_PROFILE_MAXSIZE);
+
+    if (window > maxsize) {
+      throw new WarpScriptException("Max size limit for " + getName() + " reached. Consider lower the window. To raise this limit, use a capable token or contact an administrator.");
+    }
+
+    checkInput(state);
+
+    if (state.size() > window || !state.hasElevations()) {
+      throw new WarpScriptException(getName() + " expects a state produced by " + getName() + ", with its elevations.");
+    }
+
+    StagedSeries staged = StagedSeries.of(state);
+    long[] neighbors = new long[staged.size()];
+    for (int i = 0; i < neighbors.length; i++) {
+      neighbors[i] = GTSHelper.elevationAtIndex(state, i);
+    }
+
+    try {
+      return FlossStream.resume(k, window, exclusionRadius, tail, GTSHelper.getBucketSpan(state), staged.values(), neighbors, staged.getLastBucket());
+    } catch (IllegalArgumentException iae) {
+      throw new WarpScriptException(getName() + " expects a state produced by " + getName() + ". " + iae.getMessage());
+    }
+  }
+
+  private void checkInput(GeoTimeSerie gts) throws WarpScriptException {
+    if (TYPE.DOUBLE != gts.getType()) {
+      throw new WarpScriptException(getName() + " can only be applied to GTS with values of type DOUBLE.");
+    }
+
+    if (!GTSHelper.isBucketized(gts)) {
+      throw new WarpScriptException(getName() + " can only be applied to a GTS that is bucketized and filled.");
+    }
+
+    if (gts.size() != GTSHelper.getBucketCount(gts)) {
+      throw new WarpScriptException(getName() + " can only be applied to a GTS that is bucketized and filled.");
+    }
+  }
+}
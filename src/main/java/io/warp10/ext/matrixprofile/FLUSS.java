@@ -24,19 +24,33 @@ import io.warp10.script.WarpScriptStack;
 import io.warp10.script.WarpScriptStackFunction;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Used for semantic segmentation.
+ * With parameter regimes, output the change points instead of the corrected arc curve: its lowest values, out of the
+ * exclusion zones of each other.
  */
 public class FLUSS extends NamedWarpScriptFunction implements WarpScriptStackFunction {
 
   //todo: tests
 
+  public static final String PROFILE_GTS = MOTIFS.PROFILE_GTS;
+  public static final String REGIMES = "regimes";
+  public static final String EXCLUSION_RADIUS = PROFILE.EXCLUSION_RADIUS;
+  public static final String CAC = "cac";
+
+  // default exclusion radius of a change point, in subsequence lengths
+  private static final long DEFAULT_EXCLUSION_FACTOR = 5L;
+
   public FLUSS(String name) {
     super(name);
   }
 
-  private double canonArcCurveValue(int n, int i) {
+  private static double canonArcCurveValue(int n, int i) {
     double h = n / 2.0;
     double a = 1 / h;
     return h - (a * (i - h) * (i - h));
@@ -45,21 +59,85 @@ public class FLUSS extends NamedWarpScriptFunction implements WarpScriptStackFun
   @Override
   public Object apply(WarpScriptStack stack) throws WarpScriptException {
 
+    Object input; // a GTS or a LIST of GTS
+    long window_size;
+    Long regimes = null;
+    Long exclusionRadius = null;
+
+    //
+    // Two type of signature:
+    //  - a MAP (with optional arguments)
+    //  - or two arguments, the profile and the subsequence size
+    //
+
     Object o = stack.pop();
 
-    if (!(o instanceof Long)) {
-      throw new WarpScriptException(getName() + "expects a subsequence size (LONG) as second parameter.");
+    if (o instanceof Map) {
+
+      Map params = (Map) o;
+
+      input = params.get(PROFILE_GTS);
+      if (null == input) {
+        throw new WarpScriptException(getName() + " requires parameter " + PROFILE_GTS);
+      }
+
+      if (!(params.get(PROFILE.SUBSEQUENCE_LENGTH) instanceof Long)) {
+        throw new WarpScriptException(getName() + " requires parameter " + PROFILE.SUBSEQUENCE_LENGTH + " (LONG).");
+      }
+      window_size = (long) params.get(PROFILE.SUBSEQUENCE_LENGTH);
+
+      if (null != params.get(REGIMES)) {
+        regimes = ((Number) params.get(REGIMES)).longValue();
+      }
+
+      if (null != params.get(EXCLUSION_RADIUS)) {
+        exclusionRadius = ((Number) params.get(EXCLUSION_RADIUS)).longValue();
+      }
+
+    } else {
+
+      if (!(o instanceof Long)) {
+        throw new WarpScriptException(getName() + "expects a subsequence size (LONG) as second parameter.");
+      }
+      window_size = ((Number) o).longValue();
+
+      input = stack.pop();
     }
-    long window_size = ((Number) o).longValue();
 
     if (window_size < 2) {
       throw new WarpScriptException(getName() + " 's subsequence size must be strictly greater than 1.");
     }
 
-    o = stack.pop();
+    if (null != regimes && (regimes < 1L || regimes > Integer.MAX_VALUE)) {
+      throw new WarpScriptException(getName() + " expects parameter " + REGIMES + " to be strictly positive.");
+    }
+
+    if (null == exclusionRadius) {
+      exclusionRadius = Math.min(Integer.MAX_VALUE, DEFAULT_EXCLUSION_FACTOR * window_size);
+    } else if (exclusionRadius < 0L || exclusionRadius > Integer.MAX_VALUE) {
+      throw new WarpScriptException(getName() + " exclusion radius can not be negative.");
+    }
+
+    if (input instanceof List) {
+      List<Object> results = new ArrayList<Object>(((List) input).size());
+      for (Object item: (List) input) {
+        results.add(fluss(stack, item, window_size, regimes, exclusionRadius.intValue()));
+      }
+      stack.push(results);
+    } else {
+      stack.push(fluss(stack, input, window_size, regimes, exclusionRadius.intValue()));
+    }
+
+    return stack;
+  }
+
+  /**
+   * Corrected arc curve of a profile GTS, or its change points if regimes is set
+   */
+  private Object fluss(WarpScriptStack stack, Object o, long window_size, Long regimes, int exclusionRadius) throws WarpScriptException {
 
     if (!(o instanceof GeoTimeSerie)) {
-      throw new WarpScriptException(getName() + " expects a GTS as first parameter.");
+      throw new WarpScriptException(getName() + " expects a GTS or a LIST of GTS as first parameter.");
     }
 
     GeoTimeSerie gts = (GeoTimeSerie) o;
@@ -80,18 +158,76 @@ public class FLUSS extends NamedWarpScriptFunction implements WarpScriptStackFun
       throw new WarpScriptException(getName() + " can only be applied to a Matrix Profile GTS produced by PROFILE.");
     }
 
+    FunctionStats.Call call = FunctionStats.current(stack);
+    long mark = System.nanoTime();
+
+    int n = gts.size();
+    call.series(n);
+
+    double[] values = GTSHelper.getValuesAsDouble(gts);
+    long[] neighbors = new long[n];
+    for (int i = 0; i < n; i++) {
+      neighbors[i] = GTSHelper.elevationAtIndex(gts, i);
+    }
+
+    double[] res = curve(values, neighbors, window_size);
+
+    mark = call.phase(FunctionStats.Phase.TRAVERSAL, mark);
+
+    if (null != regimes) {
+      int[] changes = regimes(res, regimes.intValue(), exclusionRadius);
+
+      List<Object> results = new ArrayList<Object>(changes.length);
+      for (int change: changes) {
+        Map<String,Object> result = new LinkedHashMap<String,Object>();
+        result.put(MOTIFS.INDEX, (long) change);
+        result.put(MOTIFS.TICK, GTSHelper.tickAtIndex(gts, change));
+        result.put(CAC, res[change]);
+        results.add(result);
+      }
+
+      call.phase(FunctionStats.Phase.OUTPUT, mark);
+
+      return results;
+    }
+
+    GeoTimeSerie ret = gts.cloneEmpty(gts.size());
+    GTSHelper.rename(ret, gts.getName() + "::fluss");
+    try {
+      ret.reset(GTSHelper.getTicks(gts), null, null, res, n);
+    } catch (IOException e) {
+      throw new WarpScriptException(e);
+    }
+
+    call.phase(FunctionStats.Phase.OUTPUT, mark);
+
+    return ret;
+  }
+
+  /**
+   * Corrected arc curve from the indices of the nearest neighbors of a profile. The subsequences without neighbor, such
+   * as those containing a missing bucket, draw no arc.
+   *
+   * @param values values of the profile, Double.MAX_VALUE or NaN for a subsequence without neighbor
+   */
+  static double[] curve(double[] values, long[] neighbors, long window_size) {
+
     //
     // Adapted from https://github.com/matrix-profile-foundation/matrixprofile/blob/master/matrixprofile/algorithms/regimes.py
     //
 
-    int n = gts.size();
+    int n = neighbors.length;
+
     double[] res = new double[n];
     for (int i = 0; i < n; i++) {
       res[i] = 0;
     }
 
     for (int i = 0; i < n; i++) {
-      long mpi = GTSHelper.elevationAtIndex(gts, i);
+      long mpi = neighbors[i];
+      if (!hasNeighbor(values[i], mpi, n)) {
+        continue;
+      }
       int small = (int) Math.min(i, mpi);
       int large = (int) Math.max(i, mpi);
       res[small + 1] = res[small + 1] + 1;
@@ -112,16 +248,68 @@ public class FLUSS extends NamedWarpScriptFunction implements WarpScriptStackFun
       res[n - i - 1] = 1;
     }
 
-    GeoTimeSerie ret = gts.cloneEmpty(gts.size());
-    GTSHelper.rename(ret, gts.getName() + "::fluss");
-    try {
-      ret.reset(GTSHelper.getTicks(gts), null, null, res, n);
-    } catch (IOException e) {
-      throw new WarpScriptException(e);
-    }
+    return res;
+  }
 
-    stack.push(ret);
+  private static boolean hasNeighbor(double value, long neighbor, int n) {
+    return !Double.isNaN(value) && !Double.isInfinite(value) && Double.MAX_VALUE != value && neighbor >= 0L && neighbor < n;
+  }
 
-    return stack;
+  /**
+   * Up to count change points of a corrected arc curve, lowest value first, as if the lowest value was repeatedly
+   * picked and its exclusion zone masked. Only values lower than 1 are change points.
+   *
+   * The candidates are picked by a bounded heap, as in ProfileSelection, with twice as many candidates if too many of
+   * them are masked.
+   *
+   * @param exclusionRadius radius of the exclusion zone of a change point, counting the center
+   */
+  static int[] regimes(double[] cac, int count, int exclusionRadius) {
+
+    int n = cac.length;
+    int capacity = Math.max(1, Math.min(count, n));
+
+    while (true) {
+
+      TopK heap = new TopK(capacity, false);
+      for (int i = 0; i < n; i++) {
+        if (cac[i] < 1.0D) {
+          heap.offer(cac[i], i);
+        }
+      }
+
+      double[] candidateValues = new double[heap.size()];
+      long[] candidates = new long[heap.size()];
+      int size = heap.drain(candidateValues, candidates);
+
+      boolean[] excluded = new boolean[n];
+      int[] selected = new int[Math.min(count, n)];
+      int found = 0;
+
+      for (int c = 0; c < size && found < count; c++) {
+        int i = (int) candidates[c];
+
+        if (excluded[i]) {
+          continue;
+        }
+
+        selected[found++] = i;
+        int from = Math.max(0, i - exclusionRadius + 1);
+        int to = Math.min(n - 1, i + exclusionRadius - 1);
+        for (int j = from; j <= to; j++) {
+          excluded[j] = true;
+        }
+        excluded[i] = true;
+      }
+
+      // done when enough change points are found or when all the candidates were considered
+      if (found == count || size < capacity || capacity == n) {
+        int[] result = new int[found];
+        System.arraycopy(selected, 0, result, 0, found);
+        return result;
+      }
+
+      capacity = (int) Math.min(n, 2L * capacity);
+    }
   }
 }
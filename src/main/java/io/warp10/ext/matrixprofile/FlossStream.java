@@ -0,0 +1,452 @@
+//
+//   Copyright 2026  SenX S.A.S.
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+//
+
+package io.warp10.ext.matrixprofile;
+
+import java.util.Arrays;
+
+/**
+ * State of a streaming semantic segmentation (FLOSS) over a sliding window of the last values of a bucketized series
+ *
+ * Each subsequence of the window keeps its right nearest neighbor, as MP.PROFILE does with direction RIGHT. Since the
+ * neighbors are on the right, they only depend on the subsequences of the window, and an appended subsequence can
+ * only become the new neighbor of older ones. So each appended value costs a single distance profile: the kernel
+ * states of the new subsequence are slid from those of the previous one in O(window), as in StampiEngine.
+ *
+ * The arcs from the subsequences to their neighbors are kept as a difference array of their crossings (+1 after the
+ * source, -1 at the neighbor), updated in O(1) when a neighbor changes or when the source leaves the window. The arc
+ * curve is its cumulative sum, corrected by the expected crossings of arcs to uniformly drawn right neighbors.
+ *
+ * The distance is the z-normalized euclidean distance, the subsequences of null standard deviation have no neighbor.
+ * The buffers are indexed by the absolute index of the values since the start of the stream minus the index of the
+ * first one they hold, and compacted once full, which also recomputes the kernel states to stop their drift.
+ */
+public class FlossStream {
+
+  private final int k;
+  private final int window;
+  private final int exclusionRadius;
+  private final int tail;
+  private final long bucketspan;
+
+  // tick of the last value appended
+  private long lastTick;
+  // number of values appended since the start of the stream, also the absolute index of the next one
+  private long count = 0L;
+  // absolute index of the first value of the current run of contiguous values, see skip
+  private long start = 0L;
+  // absolute index of the first value held by the buffers
+  private long base = 0L;
+
+  private final double[] values;
+  private final double[] means;
+  private final double[] stds;
+  // kernel states of the last subsequence with the subsequences of the window, valid if row is true
+  private final double[] qt;
+  private boolean row = false;
+  // absolute index of the right nearest neighbor of each subsequence, -1 if none yet
+  private final long[] nnIndex;
+  private final double[] nnDistance;
+  // difference array of the arc crossings
+  private final int[] arcs;
+
+  // harmonic numbers, for the idealized arc curve
+  private final double[] harmonic;
+
+  /**
+   * @param window number of values kept, strictly greater than k
+   * @param exclusionRadius the neighbor of subsequence j is at least j + exclusionRadius
+   * @param tail number of positions of the arc curve set to 1 at both ends of the window
+   */
+  public FlossStream(int k, int window, int exclusionRadius, int tail, long bucketspan) {
+    this.k = k;
+    this.window = window;
+    this.exclusionRadius = Math.max(1, exclusionRadius);
+    this.tail = Math.max(1, tail);
+    this.bucketspan = bucketspan;
+
+    int capacity = 2 * window;
+    this.values = new double[capacity];
+    this.means = new double[capacity];
+    this.stds = new double[capacity];
+    this.qt = new double[capacity];
+    this.nnIndex = new long[capacity];
+    this.nnDistance = new double[capacity];
+    this.arcs = new int[capacity];
+
+    int p = window - k + 1;
+    this.harmonic = new double[p];
+    for (int l = 1; l < p; l++) {
+      harmonic[l] = harmonic[l - 1] + 1.0D / l;
+    }
+  }
+
+  public int getSubsequenceLength() {
+    return k;
+  }
+
+  public int getWindow() {
+    return window;
+  }
+
+  public int getExclusionRadius() {
+    return exclusionRadius;
+  }
+
+  public long getBucketSpan() {
+    return bucketspan;
+  }
+
+  public int getTail() {
+    return tail;
+  }
+
+  /**
+   * Tick of the last value appended, undefined if none was
+   */
+  public synchronized long getLastTick() {
+    return lastTick;
+  }
+
+  public synchronized long getCount() {
+    return count;
+  }
+
+  /**
+   * Append values to the stream, the last one being at the given tick
+   *
+   * @return the number of distances computed
+   */
+  public synchronized long append(double[] v, int from, int to, long tick) {
+
+    // the values older than the window would leave it right away
+    if (to - from > window) {
+      skip(to - from - window);
+      from = to - window;
+    }
+
+    long cells = 0L;
+    for (int l = from; l < to; l++) {
+      cells += append(v[l]);
+    }
+    lastTick = tick;
+
+    return cells;
+  }
+
+  /**
+   * Account for values which are not appended, the window restarting after them
+   */
+  private void skip(long skipped) {
+    count += skipped;
+    start = count;
+    base = count;
+    row = false;
+    Arrays.fill(arcs, 0);
+  }
+
+  private long append(double v) {
+
+    if (count - base == values.length) {
+      compact();
+    }
+
+    values[(int) (count - base)] = v;
+    count++;
+
+    if (count - start < k) {
+      return 0L;
+    }
+
+    // new subsequence and first subsequence of the window, relative to base
+    int i = (int) (count - k - base);
+    long first = Math.max(start, count - window);
+    int f = (int) (first - base);
+
+    // the arc of the subsequence leaving the window
+    if (first > start) {
+      int e = f - 1;
+      if (nnIndex[e] >= 0L) {
+        arcs[e + 1]--;
+        arcs[(int) (nnIndex[e] - base)]++;
+      }
+    }
+
+    stats(i);
+    nnIndex[i] = -1L;
+    nnDistance[i] = Double.MAX_VALUE;
+
+    //
+    // Kernel states of the new subsequence, from those of the previous one
+    //
+
+    if (row && i > f) {
+      double out = values[i - 1];
+      double in = values[i + k - 1];
+      for (int j = i; j > f; j--) {
+        qt[j] = qt[j - 1] - out * values[j - 1] + in * values[j + k - 1];
+      }
+      double state = 0.0D;
+      for (int l = 0; l < k; l++) {
+        state += values[i + l] * values[f + l];
+      }
+      qt[f] = state;
+    } else {
+      row(i, f);
+      row = true;
+    }
+
+    if (0.0D == stds[i]) {
+      return 0L;
+    }
+
+    //
+    // The new subsequence is the new right neighbor of the older ones it is closer to
+    //
+
+    long cells = 0L;
+    long index = count - k;
+
+    for (int j = i - exclusionRadius; j >= f; j--) {
+      cells++;
+
+      if (0.0D == stds[j]) {
+        continue;
+      }
+
+      double d = distance(qt[j], i, j);
+
+      if (d < nnDistance[j]) {
+        // the arc still starts after j, it now ends at i
+        if (nnIndex[j] < 0L) {
+          arcs[j + 1]++;
+        } else {
+          arcs[(int) (nnIndex[j] - base)]++;
+        }
+        arcs[i]--;
+        nnIndex[j] = index;
+        nnDistance[j] = d;
+      }
+    }
+
+    return cells;
+  }
+
+  /**
+   * Mean and standard deviation of subsequence i
+   */
+  private void stats(int i) {
+    double mean = 0.0D;
+    for (int l = 0; l < k; l++) {
+      mean += values[i + l];
+    }
+    mean /= k;
+
+    double var = 0.0D;
+    for (int l = 0; l < k; l++) {
+      double diff = values[i + l] - mean;
+      var += diff * diff;
+    }
+
+    means[i] = mean;
+    stds[i] = Math.sqrt(var / k);
+  }
+
+  /**
+   * Z-normalized euclidean distance of subsequences i and j from their kernel state
+   */
+  private double distance(double state, int i, int j) {
+    double d = 1.0D - (state - k * means[i] * means[j]) / (k * stds[i] * stds[j]);
+    return Math.sqrt(Math.max(0.0D, 2.0D * k * d));
+  }
+
+  /**
+   * Kernel states of subsequence i with the subsequences [f, i], from the FFT of the centered values, see StampiEngine
+   */
+  private void row(int i, int f) {
+    int length = i + k - f;
+
+    double c = 0.0D;
+    for (int l = f; l < i + k; l++) {
+      c += values[l];
+    }
+    c /= length;
+
+    double[] centered = new double[length];
+    for (int l = 0; l < length; l++) {
+      centered[l] = values[f + l] - c;
+    }
+
+    double[] query = new double[k];
+    System.arraycopy(centered, i - f, query, 0, k);
+
+    double[] dots = FFT.slidingDotProducts(query, centered);
+
+    for (int j = f; j <= i; j++) {
+      qt[j] = dots[j - f] + c * k * (means[i] + means[j]) - k * c * c;
+    }
+  }
+
+  /**
+   * Move the last window values and their subsequences to the start of the buffers
+   */
+  private void compact() {
+    int shift = (int) (count - window - base);
+    int kept = values.length - shift;
+
+    System.arraycopy(values, shift, values, 0, kept);
+    System.arraycopy(means, shift, means, 0, kept);
+    System.arraycopy(stds, shift, stds, 0, kept);
+    System.arraycopy(nnIndex, shift, nnIndex, 0, kept);
+    System.arraycopy(nnDistance, shift, nnDistance, 0, kept);
+    System.arraycopy(arcs, shift, arcs, 0, kept);
+    Arrays.fill(arcs, kept, arcs.length, 0);
+
+    base += shift;
+    row = false;
+  }
+
+  /**
+   * Stream resumed from the values of its window and the right nearest neighbors of their subsequences, as given by
+   * window and neighbors. The distances to the neighbors are recomputed, a dot product each, so that resuming costs
+   * O(window * k) and the kernel states are recomputed on the next append, as after a compaction.
+   *
+   * @param values values of the window, at most window of them, the last one being at lastTick
+   * @param neighbors index in values of the right nearest neighbor of each subsequence, -1 if none
+   * @throws IllegalArgumentException if a neighbor is not a subsequence on the right, out of the exclusion zone
+   */
+  public static FlossStream resume(int k, int window, int exclusionRadius, int tail, long bucketspan, double[] values, long[] neighbors, long lastTick) {
+    FlossStream stream = new FlossStream(k, window, exclusionRadius, tail, bucketspan);
+
+    if (values.length > window) {
+      throw new IllegalArgumentException("More values than the window.");
+    }
+
+    int n = values.length;
+    System.arraycopy(values, 0, stream.values, 0, n);
+    stream.count = n;
+    stream.lastTick = lastTick;
+
+    for (int i = 0; i + k <= n; i++) {
+      stream.stats(i);
+    }
+
+    for (int i = 0; i + k <= n; i++) {
+      long nn = neighbors[i];
+      stream.nnIndex[i] = -1L;
+      stream.nnDistance[i] = Double.MAX_VALUE;
+
+      if (nn < 0L) {
+        continue;
+      }
+
+      if (nn < i + stream.exclusionRadius || nn + k > n || 0.0D == stream.stds[i] || 0.0D == stream.stds[(int) nn]) {
+        throw new IllegalArgumentException("Invalid neighbor " + nn + " of subsequence " + i + ".");
+      }
+
+      int j = (int) nn;
+      double state = 0.0D;
+      for (int l = 0; l < k; l++) {
+        state += stream.values[i + l] * stream.values[j + l];
+      }
+
+      stream.nnIndex[i] = nn;
+      stream.nnDistance[i] = stream.distance(state, j, i);
+      stream.arcs[i + 1]++;
+      stream.arcs[j]--;
+    }
+
+    return stream;
+  }
+
+  /**
+   * Values of the window, the last one being at the last tick
+   */
+  public synchronized double[] window() {
+    int f = (int) (Math.max(start, count - window) - base);
+    return Arrays.copyOfRange(values, f, (int) (count - base));
+  }
+
+  /**
+   * Right nearest neighbor of each value of the window starting a subsequence, as an index in window, -1 if none
+   */
+  public synchronized long[] neighbors() {
+    long first = Math.max(start, count - window);
+    int f = (int) (first - base);
+    long[] neighbors = new long[(int) (count - first)];
+    Arrays.fill(neighbors, -1L);
+
+    for (int x = 0; x < size(); x++) {
+      if (nnIndex[f + x] >= 0L) {
+        neighbors[x] = nnIndex[f + x] - first;
+      }
+    }
+
+    return neighbors;
+  }
+
+  /**
+   * Number of subsequences in the window
+   */
+  public synchronized int size() {
+    return (int) Math.max(0L, count - Math.max(start, count - window) - k + 1);
+  }
+
+  /**
+   * Ticks of the subsequences of the window
+   */
+  public synchronized long[] ticks() {
+    int size = size();
+    long[] ticks = new long[size];
+    for (int x = 0; x < size; x++) {
+      ticks[x] = lastTick - (size - 1 + k - 1 - x) * bucketspan;
+    }
+    return ticks;
+  }
+
+  /**
+   * Corrected arc curve of the subsequences of the window: the crossings at each position divided by the crossings
+   * expected at that position if the right neighbors were drawn uniformly, capped at 1. A regime change shows as a low
+   * value. The first and last tail positions are set to 1, as the arcs there are too few to be significant.
+   */
+  public synchronized double[] curve() {
+    int size = size();
+    double[] cac = new double[size];
+
+    int f = (int) (Math.max(start, count - window) - base);
+    int crossings = 0;
+
+    for (int x = 0; x < size; x++) {
+      crossings += arcs[f + x];
+
+      // sum over the sources s < x of P(neighbor > x) = (size - 1 - x) / (size - 1 - s)
+      double ideal = (size - 1 - x) * (harmonic[size - 1] - harmonic[size - 1 - x]);
+
+      if (x < tail || x >= size - tail || ideal <= 0.0D) {
+        cac[x] = 1.0D;
+      } else {
+        cac[x] = Math.min(1.0D, crossings / ideal);
+      }
+    }
+
+    return cac;
+  }
+
+  @Override
+  public String toString() {
+    return "FLOSS{" + PROFILE.SUBSEQUENCE_LENGTH + "=" + k + ", window=" + window + ", " + PROFILE.EXCLUSION_RADIUS + "=" + exclusionRadius + ", count=" + getCount() + "}";
+  }
+}
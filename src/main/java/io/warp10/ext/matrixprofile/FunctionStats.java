@@ -0,0 +1,292 @@
+//
+//   Copyright 2026  SenX S.A.S.
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+//
+
+package io.warp10.ext.matrixprofile;
+
+import io.warp10.continuum.gts.GeoTimeSerie;
+import io.warp10.script.WarpScriptStack;
+import io.warp10.sensision.Sensision;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide counters of the calls to a function of the extension, published to Sensision and read with MP.STATS
+ *
+ * The counters of a call are gathered in a Call, held by a stack attribute while the function runs so that the engines
+ * and the workers of a batch can add to it. The time of the phases is summed over the series of the call, so it can
+ * exceed the wall time of a concurrent batch.
+ */
+public class FunctionStats {
+
+  //
+  // Sensision classes, labelled with the function name
+  //
+
+  public static final String SENSISION_CLASS_CALLS = "warp.ext.matrixprofile.calls";
+  public static final String SENSISION_CLASS_ERRORS = "warp.ext.matrixprofile.errors";
+  public static final String SENSISION_CLASS_TIME = "warp.ext.matrixprofile.time.nanos";
+  public static final String SENSISION_CLASS_PHASE_TIME = "warp.ext.matrixprofile.%s.time.nanos";
+  public static final String SENSISION_CLASS_LENGTH = "warp.ext.matrixprofile.length";
+  public static final String SENSISION_CLASS_CELLS = "warp.ext.matrixprofile.cells";
+  public static final String SENSISION_CLASS_MACRO_CALLS = "warp.ext.matrixprofile.macro.calls";
+  public static final String SENSISION_CLASS_RESULT_BYTES = "warp.ext.matrixprofile.result.bytes";
+  public static final String SENSISION_LABEL_FUNCTION = "function";
+
+  // stack attribute holding the Call of the running function
+  public static final String ATTRIBUTE_CALL = "mp.stats.call";
+
+  //
+  // Keys of the MP.STATS maps, also used as suffix of the attributes set on the results
+  //
+
+  public static final String CALLS = "calls";
+  public static final String ERRORS = "errors";
+  public static final String TIME = "time.nanos";
+  public static final String LENGTH = "length";
+  public static final String CELLS = "cells";
+  public static final String MACRO_CALLS = "macro.calls";
+  public static final String RESULT_BYTES = "result.bytes";
+
+  /**
+   * Phases of a computation. Everything before the traversal, parameter checks and staging included, is STATS.
+   */
+  public enum Phase {
+    STATS, TRAVERSAL, OUTPUT;
+
+    public String key() {
+      return name().toLowerCase() + "." + TIME;
+    }
+  }
+
+  private static final Map<String,FunctionStats> registry = new ConcurrentSkipListMap<String,FunctionStats>();
+
+  private final String function;
+  private final Map<String,String> labels;
+
+  private final AtomicLong calls = new AtomicLong();
+  private final AtomicLong errors = new AtomicLong();
+  private final Call totals = new Call();
+
+  /**
+   * Counters of a single call
+   */
+  public static class Call {
+    private final AtomicLong nanos = new AtomicLong();
+    private final AtomicLong length = new AtomicLong();
+    private final AtomicLong cells = new AtomicLong();
+    private final AtomicLong macroCalls = new AtomicLong();
+    private final AtomicLong resultBytes = new AtomicLong();
+    private final AtomicLong[] phases = new AtomicLong[Phase.values().length];
+
+    Call() {
+      for (int i = 0; i < phases.length; i++) {
+        phases[i] = new AtomicLong();
+      }
+    }
+
+    /**
+     * Count an input series of the given number of values
+     */
+    public void series(long size) {
+      length.addAndGet(size);
+    }
+
+    public void cells(long count) {
+      cells.addAndGet(count);
+    }
+
+    public void macroCalls(long count) {
+      macroCalls.addAndGet(count);
+    }
+
+    /**
+     * Add the time elapsed since a previous mark to a phase
+     *
+     * @return the new mark
+     */
+    public long phase(Phase phase, long since) {
+      long now = System.nanoTime();
+      phases[phase.ordinal()].addAndGet(now - since);
+      return now;
+    }
+
+    private void add(Call call) {
+      nanos.addAndGet(call.nanos.get());
+      length.addAndGet(call.length.get());
+      cells.addAndGet(call.cells.get());
+      macroCalls.addAndGet(call.macroCalls.get());
+      resultBytes.addAndGet(call.resultBytes.get());
+      for (int i = 0; i < phases.length; i++) {
+        phases[i].addAndGet(call.phases[i].get());
+      }
+    }
+
+    private void put(Map<String,Object> map) {
+      map.put(TIME, nanos.get());
+      for (Phase phase: Phase.values()) {
+        map.put(phase.key(), phases[phase.ordinal()].get());
+      }
+      map.put(LENGTH, length.get());
+      map.put(CELLS, cells.get());
+      map.put(MACRO_CALLS, macroCalls.get());
+      map.put(RESULT_BYTES, resultBytes.get());
+    }
+  }
+
+  private FunctionStats(String function) {
+    this.function = function;
+    this.labels = Collections.singletonMap(SENSISION_LABEL_FUNCTION, function);
+  }
+
+  /**
+   * Counters of a function, created on first use
+   */
+  public static FunctionStats of(String function) {
+    FunctionStats stats = registry.get(function);
+    if (null == stats) {
+      synchronized (registry) {
+        stats = registry.get(function);
+        if (null == stats) {
+          stats = new FunctionStats(function);
+          registry.put(function, stats);
+        }
+      }
+    }
+    return stats;
+  }
+
+  /**
+   * Call of the function running on the stack, or a detached one when the function is not run through the extension
+   */
+  public static Call current(WarpScriptStack stack) {
+    Object call = stack.getAttribute(ATTRIBUTE_CALL);
+    return call instanceof Call ? (Call) call : new Call();
+  }
+
+  /**
+   * Account for a finished call
+   *
+   * @param result the object pushed by the function, null if it failed
+   */
+  public void record(Call call, long nanos, boolean failed, Object result) {
+    call.nanos.addAndGet(nanos);
+    call.resultBytes.addAndGet(bytes(result));
+
+    calls.incrementAndGet();
+    if (failed) {
+      errors.incrementAndGet();
+    }
+    totals.add(call);
+
+    Sensision.update(SENSISION_CLASS_CALLS, labels, 1);
+    if (failed) {
+      Sensision.update(SENSISION_CLASS_ERRORS, labels, 1);
+    }
+    Sensision.update(SENSISION_CLASS_TIME, labels, call.nanos.get());
+    for (Phase phase: Phase.values()) {
+      if (0L != call.phases[phase.ordinal()].get()) {
+        Sensision.update(String.format(SENSISION_CLASS_PHASE_TIME, phase.name().toLowerCase()), labels, call.phases[phase.ordinal()].get());
+      }
+    }
+    if (0L != call.length.get()) {
+      Sensision.update(SENSISION_CLASS_LENGTH, labels, call.length.get());
+    }
+    if (0L != call.cells.get()) {
+      Sensision.update(SENSISION_CLASS_CELLS, labels, call.cells.get());
+    }
+    if (0L != call.macroCalls.get()) {
+      Sensision.update(SENSISION_CLASS_MACRO_CALLS, labels, call.macroCalls.get());
+    }
+    if (0L != call.resultBytes.get()) {
+      Sensision.update(SENSISION_CLASS_RESULT_BYTES, labels, call.resultBytes.get());
+    }
+  }
+
+  /**
+   * Set the counters of a call as attributes of the GTS of the result produced by the function, that is the ones
+   * whose .profile.function attribute is the function name
+   */
+  public void annotate(Call call, Object result) {
+    if (result instanceof List) {
+      for (Object o: (List) result) {
+        annotate(call, o);
+      }
+      return;
+    }
+
+    if (!(result instanceof GeoTimeSerie)) {
+      return;
+    }
+
+    Map<String,String> attributes = ((GeoTimeSerie) result).getMetadata().getAttributes();
+    if (!function.equals(attributes.get(".profile.function"))) {
+      return;
+    }
+
+    Map<String,Object> counters = new LinkedHashMap<String,Object>();
+    call.put(counters);
+    for (Map.Entry<String,Object> counter: counters.entrySet()) {
+      attributes.put(".call." + counter.getKey(), String.valueOf(counter.getValue()));
+    }
+  }
+
+  /**
+   * Estimated size in bytes of the ticks, values, locations and elevations of the GTS of a result
+   */
+  static long bytes(Object result) {
+    if (result instanceof List) {
+      long bytes = 0L;
+      for (Object o: (List) result) {
+        bytes += bytes(o);
+      }
+      return bytes;
+    }
+
+    if (!(result instanceof GeoTimeSerie)) {
+      return 0L;
+    }
+
+    GeoTimeSerie gts = (GeoTimeSerie) result;
+    long perValue = 16L;
+    if (gts.hasLocations()) {
+      perValue += 8L;
+    }
+    if (gts.hasElevations()) {
+      perValue += 8L;
+    }
+    return perValue * gts.size();
+  }
+
+  /**
+   * Totals of every function called so far, by function name
+   */
+  public static Map<String,Object> snapshot() {
+    Map<String,Object> snapshot = new LinkedHashMap<String,Object>();
+    for (FunctionStats stats: registry.values()) {
+      Map<String,Object> counters = new LinkedHashMap<String,Object>();
+      counters.put(CALLS, stats.calls.get());
+      counters.put(ERRORS, stats.errors.get());
+      stats.totals.put(counters);
+      snapshot.put(stats.function, counters);
+    }
+    return snapshot;
+  }
+}
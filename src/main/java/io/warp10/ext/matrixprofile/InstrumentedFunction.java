@@ -0,0 +1,65 @@
+//
+//   Copyright 2026  SenX S.A.S.
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+//
+
+package io.warp10.ext.matrixprofile;
+
+import io.warp10.WarpConfig;
+import io.warp10.script.NamedWarpScriptFunction;
+import io.warp10.script.WarpScriptException;
+import io.warp10.script.WarpScriptStack;
+import io.warp10.script.WarpScriptStackFunction;
+
+/**
+ * Function of the extension, registered through this wrapper which accounts for its calls in FunctionStats
+ */
+public class InstrumentedFunction extends NamedWarpScriptFunction implements WarpScriptStackFunction {
+
+  private final WarpScriptStackFunction function;
+  private final FunctionStats stats;
+
+  public InstrumentedFunction(NamedWarpScriptFunction function) {
+    super(function.getName());
+    this.function = (WarpScriptStackFunction) function;
+    this.stats = FunctionStats.of(function.getName());
+  }
+
+  @Override
+  public Object apply(WarpScriptStack stack) throws WarpScriptException {
+
+    // a function called from a custom macro gets its own call, the caller's one is restored afterwards
+    FunctionStats.Call call = new FunctionStats.Call();
+    Object caller = stack.setAttribute(FunctionStats.ATTRIBUTE_CALL, call);
+
+    long start = System.nanoTime();
+    boolean failed = true;
+
+    try {
+      function.apply(stack);
+      failed = false;
+    } finally {
+      stack.setAttribute(FunctionStats.ATTRIBUTE_CALL, caller);
+
+      Object result = !failed && stack.depth() > 0 ? stack.peek() : null;
+      stats.record(call, System.nanoTime() - start, failed, result);
+
+      if (!failed && "true".equals(WarpConfig.getProperty(MatrixProfileWarpScriptExtension.CONFIG_MP_STATS_ATTRIBUTES))) {
+        stats.annotate(call, result);
+      }
+    }
+
+    return stack;
+  }
+}
@@ -0,0 +1,276 @@
+//
+//   Copyright 2026  SenX S.A.S.
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+//
+
+package io.warp10.ext.matrixprofile;
+
+import io.warp10.continuum.gts.GeoTimeSerie.TYPE;
+import io.warp10.continuum.gts.GeoTimeSerie;
+import io.warp10.continuum.gts.GTSHelper;
+import io.warp10.script.NamedWarpScriptFunction;
+import io.warp10.script.WarpScriptException;
+import io.warp10.script.WarpScriptStack;
+import io.warp10.script.WarpScriptStackFunction;
+
+import java.util.Arrays;
+
+/**
+ * Compute the distance profile of a query GTS against a target GTS using MASS (Mueen's Algorithm for Similarity Search)
+ * The sliding dot products are computed by FFT convolution in O(n log n)
+ */
+public class MASS extends NamedWarpScriptFunction implements WarpScriptStackFunction {
+
+  public MASS(String name) {
+    super(name);
+  }
+
+  @Override
+  public Object apply(WarpScriptStack stack) throws WarpScriptException {
+
+    Object o = stack.pop();
+
+    if (!(o instanceof GeoTimeSerie)) {
+      throw new WarpScriptException(getName() + " expects a query GTS as second parameter.");
+    }
+
+    GeoTimeSerie query = (GeoTimeSerie) o;
+
+    if (TYPE.DOUBLE != query.getType()) {
+      throw new WarpScriptException(getName() + " can only be applied to GTS with values of type DOUBLE.");
+    }
+
+    if (query.size() < 2) {
+      throw new WarpScriptException(getName() + " 's query must have strictly more than 1 value.");
+    }
+
+    o = stack.pop();
+
+    if (!(o instanceof GeoTimeSerie)) {
+      throw new WarpScriptException(getName() + " expects a GTS as first parameter.");
+    }
+
+    GeoTimeSerie gts = (GeoTimeSerie) o;
+
+    if (TYPE.DOUBLE != gts.getType()) {
+      throw new WarpScriptException(getName() + " can only be applied to GTS with values of type DOUBLE.");
+    }
+
+    if (!GTSHelper.isBucketized(gts)) {
+      throw new WarpScriptException(getName() + " can only be applied to a GTS that is bucketized and filled.");
+    }
+
+    if (gts.size() != GTSHelper.getBucketCount(gts)) {
+      throw new WarpScriptException(getName() + " can only be applied to a GTS that is bucketized and filled.");
+    }
+
+    int k = query.size();
+
+    if (k > gts.size()) {
+      throw new WarpScriptException(getName() + " requires the query to be shorter than the bucketcount.");
+    }
+
+    FunctionStats.Call call = FunctionStats.current(stack);
+    long mark = System.nanoTime();
+
+    // sorting and staging of the values
+    GTSHelper.sort(query);
+    double[] queryValues = GTSHelper.getValuesAsDouble(query);
+    StagedSeries staged = StagedSeries.of(gts);
+    double[] values = staged.values();
+
+    call.series(values.length);
+
+    int p = values.length - k + 1;
+    SlidingStats stats = staged.stats(k);
+    mark = call.phase(FunctionStats.Phase.STATS, mark);
+
+    double[] distances = distanceProfile(queryValues, values, stats);
+    call.cells(p);
+    mark = call.phase(FunctionStats.Phase.TRAVERSAL, mark);
+
+    long[] indices = new long[p];
+    for (int i = 0; i < p; i++) {
+      indices[i] = i;
+    }
+
+    // initialization
+    long bucketspan = staged.getBucketSpan();
+    long lastbucket = staged.getLastBucket() - bucketspan * (k - 1);
+    GeoTimeSerie res = new GeoTimeSerie(lastbucket, p, bucketspan, p);
+
+    // meta
+    res.setMetadata(gts.getMetadata());
+    GTSHelper.rename(res, gts.getName() + "::mass::" + query.getName());
+    res.getMetadata().getAttributes().put(".profile.function", getName());
+    res.getMetadata().getAttributes().put("." + PROFILE.SUBSEQUENCE_LENGTH, String.valueOf(k));
+
+    StagedSeries.reset(res, staged.ticks(p), indices, distances, p);
+    call.phase(FunctionStats.Phase.OUTPUT, mark);
+
+    stack.push(res);
+
+    return stack;
+  }
+
+  /**
+   * Distance profiles of several queries of the same length against the same series.
+   * The spectrum of the series is computed once, and two queries are packed in each transform since both
+   * convolutions are real: IFFT(S * FFT(q1 + i * q2)) = conv(s, q1) + i * conv(s, q2).
+   * Instances are not thread-safe.
+   */
+  public static class Searcher {
+
+    private final int k;
+    private final int n;
+    private final FFT fft;
+    private final double[] seriesRe;
+    private final double[] seriesIm;
+    private final double[] stds;
+    private final double[] re;
+    private final double[] im;
+
+    /**
+     * @param stats statistics of the subsequences of series, whose length is the length of the queries
+     */
+    public Searcher(double[] series, SlidingStats stats) {
+      this.k = stats.getSubsequenceLength();
+      this.n = series.length;
+      this.fft = new FFT(FFT.size(n + k - 1));
+      this.stds = stats.stds();
+
+      int size = fft.getSize();
+      seriesRe = new double[size];
+      seriesIm = new double[size];
+      double offset = mean(series);
+      for (int i = 0; i < n; i++) {
+        seriesRe[i] = series[i] - offset;
+      }
+      fft.transform(seriesRe, seriesIm, false);
+
+      re = new double[size];
+      im = new double[size];
+    }
+
+    /**
+     * Distance profiles of query1 and query2 (nullable), of length k
+     */
+    public double[][] distanceProfiles(double[] query1, double[] query2) {
+
+      Arrays.fill(re, 0.0D);
+      Arrays.fill(im, 0.0D);
+
+      double std1 = center(query1, re);
+      double std2 = null == query2 ? 0.0D : center(query2, im);
+
+      fft.transform(re, im, false);
+
+      for (int f = 0; f < re.length; f++) {
+        double r = seriesRe[f] * re[f] - seriesIm[f] * im[f];
+        double i = seriesRe[f] * im[f] + seriesIm[f] * re[f];
+        re[f] = r;
+        im[f] = i;
+      }
+
+      fft.transform(re, im, true);
+
+      double[][] profiles = new double[null == query2 ? 1 : 2][];
+      profiles[0] = distances(re, std1);
+      if (null != query2) {
+        profiles[1] = distances(im, std2);
+      }
+
+      return profiles;
+    }
+
+    /**
+     * Store the reversed centered query in out, return its standard deviation
+     */
+    private double center(double[] query, double[] out) {
+      SlidingStats queryStats = SlidingStats.compute(query, k);
+      double queryMean = queryStats.mean(0);
+      for (int l = 0; l < k; l++) {
+        out[k - 1 - l] = query[l] - queryMean;
+      }
+      return queryStats.std(0);
+    }
+
+    private double[] distances(double[] convolution, double queryStd) {
+      double[] distances = new double[n - k + 1];
+      for (int i = 0; i < distances.length; i++) {
+        distances[i] = distance(convolution[i + k - 1], k, queryStd, stds[i]);
+      }
+      return distances;
+    }
+  }
+
+  /**
+   * Z-normalized euclidean distances between query and each subsequence of series
+   *
+   * @param stats statistics of the subsequences of series, with the length of query
+   */
+  public static double[] distanceProfile(double[] query, double[] series, SlidingStats stats) {
+
+    int k = query.length;
+
+    SlidingStats queryStats = SlidingStats.compute(query, k);
+    double queryMean = queryStats.mean(0);
+    double queryStd = queryStats.std(0);
+
+    //
+    // The z-normalized distance does not depend on offsets: once the query is centered,
+    // sum((q - mq) * (t - mt)) = sum((q - mq) * (t - c)) for any c. Centering both inputs keeps the FFT accurate.
+    //
+
+    double[] centeredQuery = new double[k];
+    for (int l = 0; l < k; l++) {
+      centeredQuery[l] = query[l] - queryMean;
+    }
+
+    double offset = mean(series);
+
+    double[] centeredSeries = new double[series.length];
+    for (int i = 0; i < series.length; i++) {
+      centeredSeries[i] = series[i] - offset;
+    }
+
+    double[] distances = FFT.slidingDotProducts(centeredQuery, centeredSeries);
+    double[] stds = stats.stds();
+
+    for (int i = 0; i < distances.length; i++) {
+      distances[i] = distance(distances[i], k, queryStd, stds[i]);
+    }
+
+    return distances;
+  }
+
+  /**
+   * Z-normalized euclidean distance from the dot product of the centered query with a subsequence
+   */
+  private static double distance(double centeredDot, int k, double queryStd, double std) {
+    double d = 1.0D - centeredDot / (k * queryStd * std);
+    d = 2.0D * k * d;
+
+    // the FFT rounding noise may bring exact matches slightly below 0
+    return Math.sqrt(Math.max(0.0D, d));
+  }
+
+  private static double mean(double[] values) {
+    double sum = 0.0D;
+    for (int i = 0; i < values.length; i++) {
+      sum += values[i];
+    }
+    return sum / values.length;
+  }
+}
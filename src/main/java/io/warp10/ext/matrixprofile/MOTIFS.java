@@ -0,0 +1,250 @@
+//
+//   Copyright 2026  SenX S.A.S.
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+//
+
+package io.warp10.ext.matrixprofile;
+
+import io.warp10.continuum.gts.GeoTimeSerie.TYPE;
+import io.warp10.continuum.gts.GeoTimeSerie;
+import io.warp10.continuum.gts.GTSHelper;
+import io.warp10.script.NamedWarpScriptFunction;
+import io.warp10.script.WarpScriptException;
+import io.warp10.script.WarpScriptStack;
+import io.warp10.script.WarpScriptStackFunction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Extract the top motifs of a matrix profile GTS: the pairs of subsequences with the lowest profile values,
+ * out of the exclusion zones of each other
+ * Optionally gather the neighbors of each motif within a radius, from the distance profiles of the input GTS (MASS)
+ */
+public class MOTIFS extends NamedWarpScriptFunction implements WarpScriptStackFunction {
+
+  public static final String PROFILE_GTS = "profile";
+  public static final String COUNT = "count";
+  public static final String EXCLUSION_RADIUS = PROFILE.EXCLUSION_RADIUS;
+  public static final String GTS = PROFILE.GTS;
+  public static final String RADIUS = "radius";
+  public static final String MAX_NEIGHBORS = "max.neighbors";
+
+  // keys of the output maps
+  public static final String INDEX = "index";
+  public static final String TICK = "tick";
+  public static final String NEIGHBOR = "neighbor";
+  public static final String NEIGHBOR_TICK = "neighbor.tick";
+  public static final String DISTANCE = "distance";
+  public static final String NEIGHBORS = "neighbors";
+
+  private static final long DEFAULT_MAX_NEIGHBORS = 10L;
+
+  public MOTIFS(String name) {
+    super(name);
+  }
+
+  @Override
+  public Object apply(WarpScriptStack stack) throws WarpScriptException {
+
+    //
+    // Parameters
+    //
+
+    Object profile;
+    long count;
+    Integer exclusionRadius = null;
+    Object gts = null;
+    Double radius = null;
+    long maxNeighbors = DEFAULT_MAX_NEIGHBORS;
+
+    //
+    // Two type of signature:
+    //  - a MAP (with optional arguments)
+    //  - or two arguments, the profile and the number of motifs
+    //
+
+    Object o = stack.pop();
+    if (o instanceof Map) {
+
+      Map params = (Map) o;
+
+      profile = params.get(PROFILE_GTS);
+
+      if (null == params.get(COUNT)) {
+        throw new WarpScriptException(getName() + " requires parameter " + COUNT);
+      }
+      count = ((Number) params.get(COUNT)).longValue();
+
+      if (null != params.get(EXCLUSION_RADIUS)) {
+        exclusionRadius = ((Number) params.get(EXCLUSION_RADIUS)).intValue();
+      }
+
+      gts = params.get(GTS);
+
+      if (null != params.get(RADIUS)) {
+        radius = ((Number) params.get(RADIUS)).doubleValue();
+      }
+
+      if (null != params.get(MAX_NEIGHBORS)) {
+        maxNeighbors = ((Number) params.get(MAX_NEIGHBORS)).longValue();
+      }
+
+    } else {
+
+      if (!(o instanceof Long)) {
+        throw new WarpScriptException(getName() + " expects a number of motifs (LONG) as second parameter.");
+      }
+      count = (Long) o;
+      profile = stack.pop();
+    }
+
+    if (!(profile instanceof GeoTimeSerie)) {
+      throw new WarpScriptException(getName() + " expects a matrix profile GTS as first parameter.");
+    }
+
+    if (count < 1L || count > Integer.MAX_VALUE) {
+      throw new WarpScriptException(getName() + " expects parameter " + COUNT + " to be strictly positive.");
+    }
+
+    if (null != radius && (null == gts || radius <= 0.0D)) {
+      throw new WarpScriptException(getName() + " expects parameter " + RADIUS + " to be strictly positive and parameter " + GTS + " to be set.");
+    }
+
+    if (maxNeighbors < 1L || maxNeighbors > Integer.MAX_VALUE) {
+      throw new WarpScriptException(getName() + " expects parameter " + MAX_NEIGHBORS + " to be strictly positive.");
+    }
+
+    FunctionStats.Call call = FunctionStats.current(stack);
+    long mark = System.nanoTime();
+
+    ProfileSelection selection = new ProfileSelection(getName(), (GeoTimeSerie) profile, exclusionRadius);
+    int[] motifs = selection.select((int) count, false, true);
+    call.series(selection.size());
+
+    List<Object> results = new ArrayList<Object>(motifs.length);
+
+    for (int motif: motifs) {
+      int neighbor = (int) selection.neighbor(motif);
+
+      Map<String,Object> result = new LinkedHashMap<String,Object>();
+      result.put(INDEX, (long) motif);
+      result.put(TICK, selection.tick(motif));
+      result.put(NEIGHBOR, (long) neighbor);
+      if (selection.isSelfJoin()) {
+        result.put(NEIGHBOR_TICK, selection.tick(neighbor));
+      }
+      result.put(DISTANCE, selection.value(motif));
+      results.add(result);
+    }
+
+    if (null != radius) {
+      neighbors(selection, (GeoTimeSerie) profile, gts, motifs, radius, (int) maxNeighbors, results);
+      // one distance profile per motif
+      call.cells((long) motifs.length * selection.size());
+    }
+
+    call.phase(FunctionStats.Phase.TRAVERSAL, mark);
+
+    stack.push(results);
+
+    return stack;
+  }
+
+  /**
+   * Add to each motif the subsequences within radius times its distance, closest first and out of the exclusion zones
+   * of the motif pair and of each other. The distance profiles are computed by MASS, two motifs per transform.
+   */
+  private void neighbors(ProfileSelection selection, GeoTimeSerie profile, Object o, int[] motifs, double radius, int maxNeighbors, List<Object> results) throws WarpScriptException {
+
+    if (!(o instanceof GeoTimeSerie)) {
+      throw new WarpScriptException(getName() + " expects parameter " + GTS + " to be the GTS of the profile.");
+    }
+
+    GeoTimeSerie gts = (GeoTimeSerie) o;
+    Map<String,String> attributes = profile.getMetadata().getAttributes();
+
+    if (!selection.isSelfJoin() || null != attributes.get(".custom.macro") || null != attributes.get("." + PROFILE.DISTANCE) || null != attributes.get("." + PANPROFILE.NORMALIZED)) {
+      throw new WarpScriptException(getName() + " can only gather the neighbors of a self join profile of z-normalized euclidean distances.");
+    }
+
+    if (TYPE.DOUBLE != gts.getType() || !GTSHelper.isBucketized(gts) || gts.size() != GTSHelper.getBucketCount(gts)) {
+      throw new WarpScriptException(getName() + " can only be applied to a GTS that is bucketized and filled.");
+    }
+
+    int k = selection.getSubsequenceLength();
+
+    if (gts.size() - k + 1 != selection.size()) {
+      throw new WarpScriptException(getName() + " expects parameter " + GTS + " to be the GTS of the profile.");
+    }
+
+    StagedSeries staged = StagedSeries.of(gts);
+    double[] values = staged.values();
+    MASS.Searcher searcher = new MASS.Searcher(values, staged.stats(k));
+
+    // enough candidates for maxNeighbors of them to be out of the exclusion zones of the motif pair and of each other
+    long zone = Math.max(1L, 2L * selection.getExclusionRadius() - 1L);
+    int capacity = (int) Math.min(selection.size(), (maxNeighbors + 2L) * zone + maxNeighbors);
+
+    TopK heap = new TopK(capacity, false);
+    double[] nearestValues = new double[capacity];
+    long[] nearest = new long[capacity];
+    boolean[] excluded = new boolean[selection.size()];
+
+    for (int m = 0; m < motifs.length; m += 2) {
+      double[] query1 = subsequence(values, motifs[m], k);
+      double[] query2 = m + 1 < motifs.length ? subsequence(values, motifs[m + 1], k) : null;
+      double[][] profiles = searcher.distanceProfiles(query1, query2);
+
+      for (int q = 0; q < profiles.length; q++) {
+        int motif = motifs[m + q];
+        double threshold = radius * selection.value(motif);
+        double[] distances = profiles[q];
+
+        heap.clear();
+        for (int i = 0; i < distances.length; i++) {
+          if (distances[i] <= threshold) {
+            heap.offer(distances[i], i);
+          }
+        }
+
+        // neighbors of a motif must be new occurrences
+        Arrays.fill(excluded, false);
+        selection.exclude(excluded, motif);
+        selection.exclude(excluded, (int) selection.neighbor(motif));
+
+        List<Object> neighbors = new ArrayList<Object>();
+        int n = heap.drain(nearestValues, nearest);
+        for (int i = 0; i < n && neighbors.size() < maxNeighbors; i++) {
+          int index = (int) nearest[i];
+          if (!excluded[index]) {
+            neighbors.add((long) index);
+            selection.exclude(excluded, index);
+          }
+        }
+
+        ((Map<String,Object>) results.get(m + q)).put(NEIGHBORS, neighbors);
+      }
+    }
+  }
+
+  private static double[] subsequence(double[] values, int index, int k) {
+    double[] subsequence = new double[k];
+    System.arraycopy(values, index, subsequence, 0, k);
+    return subsequence;
+  }
+}
@@ -0,0 +1,246 @@
+//
+//   Copyright 2026  SenX S.A.S.
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+//
+
+package io.warp10.ext.matrixprofile;
+
+import io.warp10.continuum.gts.GeoTimeSerie.TYPE;
+import io.warp10.continuum.gts.GeoTimeSerie;
+import io.warp10.continuum.gts.GTSHelper;
+import io.warp10.script.NamedWarpScriptFunction;
+import io.warp10.script.WarpScriptException;
+import io.warp10.script.WarpScriptStack;
+import io.warp10.script.WarpScriptStackFunction;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compute the multi-dimensional Matrix Profile of a LIST of aligned GTS using the mSTOMP algorithm
+ * Output one profile GTS per number of dimensions m in [1, d]: its value is the minimum over the candidates of the mean
+ * of the m smallest distances across dimensions, and its elevation the argmin.
+ */
+public class MPROFILE extends NamedWarpScriptFunction implements WarpScriptStackFunction {
+
+  public static final String GTS = PROFILE.GTS;
+  public static final String SUBSEQUENCE_LENGTH = PROFILE.SUBSEQUENCE_LENGTH;
+  public static final String EXCLUSION_RADIUS = PROFILE.EXCLUSION_RADIUS;
+  public static final String DIRECTION = PROFILE.DIRECTION;
+  public static final String DISTANCE = PROFILE.DISTANCE;
+  public static final String DIMENSIONS = "dimensions";
+
+  public MPROFILE(String name) {
+    super(name);
+  }
+
+  @Override
+  public Object apply(WarpScriptStack stack) throws WarpScriptException {
+
+    //
+    // Parameters
+    //
+
+    List gtsList;
+    long k; // subsequence size
+    int exclusionRadius;
+    PROFILE.Direction direction = PROFILE.Direction.BOTH;
+    DistanceKernel.Type distanceType = DistanceKernel.Type.ZEUCLIDEAN;
+
+    //
+    // Two type of signature:
+    //  - a MAP (with optional arguments)
+    //  - or two arguments, a LIST of GTS and subsequence length, plus an optional exclusion radius
+    //
+
+    Object o = stack.pop();
+    if (o instanceof Map) {
+
+      Map params = (Map) o;
+
+      //
+      // Mandatory params
+      //
+
+      if (!(params.get(GTS) instanceof List)) {
+        throw new WarpScriptException(getName() + " requires parameter " + GTS + " to be a LIST of GTS.");
+      }
+      gtsList = (List) params.get(GTS);
+
+      if (null == params.get(SUBSEQUENCE_LENGTH)) {
+        throw new WarpScriptException(getName() + " requires parameter " + SUBSEQUENCE_LENGTH);
+      }
+      k = ((Number) params.get(SUBSEQUENCE_LENGTH)).longValue();
+
+      //
+      // Optional parameters
+      //
+
+      if (null == params.get(EXCLUSION_RADIUS)) {
+        exclusionRadius = ((Double) Math.ceil(k * 0.25)).intValue();
+      } else {
+        exclusionRadius = ((Number) params.get(EXCLUSION_RADIUS)).intValue();
+      }
+
+      if (null != params.get(DIRECTION)) {
+        direction = PROFILE.Direction.valueOf((String) params.get(DIRECTION));
+      }
+
+      if (null != params.get(DISTANCE)) {
+        distanceType = PROFILE.distanceType(getName(), params.get(DISTANCE));
+      }
+
+    } else {
+
+      Object second = stack.pop();
+      if (o instanceof Long && second instanceof Long) {
+        exclusionRadius = ((Number) o).intValue();
+        k = ((Number) second).longValue();
+        second = stack.pop();
+
+      } else {
+        if (!(o instanceof Long)) {
+          throw new WarpScriptException(getName() + " expects a subsequence size (LONG) as second parameter.");
+        }
+        k = ((Number) o).longValue();
+        exclusionRadius = ((Double) Math.ceil(k * 0.25)).intValue();
+      }
+
+      if (!(second instanceof List)) {
+        throw new WarpScriptException(getName() + " expects a LIST of GTS as first parameter.");
+      }
+      gtsList = (List) second;
+    }
+
+    //
+    // Sanity checks
+    //
+
+    if (k < 2) {
+      throw new WarpScriptException(getName() + " 's subsequence size must be strictly greater than 1.");
+    }
+
+    if (exclusionRadius < 0) {
+      throw new WarpScriptException(getName() + " exclusion radius can not be negative.");
+    }
+
+    if (gtsList.isEmpty()) {
+      throw new WarpScriptException(getName() + " expects a non empty LIST of GTS.");
+    }
+
+    long maxsize = MatrixProfileWarpScriptExtension.getLongSetting(stack, MatrixProfileWarpScriptExtension.DEFAULT_VALUE_MP_PROFILE_MAXSIZE,
+        MatrixProfileWarpScriptExtension.CONFIG_MP_PROFILE_MAXSIZE, MatrixProfileWarpScriptExtension.CAPNAME_MP_PROFILE_MAXSIZE);
+
+    int d = gtsList.size();
+    GeoTimeSerie[] gts = new GeoTimeSerie[d];
+
+    for (int m = 0; m < d; m++) {
+      if (!(gtsList.get(m) instanceof GeoTimeSerie)) {
+        throw new WarpScriptException(getName() + " expects a LIST of GTS.");
+      }
+      gts[m] = (GeoTimeSerie) gtsList.get(m);
+
+      if (TYPE.DOUBLE != gts[m].getType()) {
+        throw new WarpScriptException(getName() + " can only be applied to GTS with values of type DOUBLE.");
+      }
+
+      if (!GTSHelper.isBucketized(gts[m]) || gts[m].size() != GTSHelper.getBucketCount(gts[m])) {
+        throw new WarpScriptException(getName() + " can only be applied to GTS that are bucketized and filled.");
+      }
+
+      if (GTSHelper.getBucketSpan(gts[m]) != GTSHelper.getBucketSpan(gts[0]) || GTSHelper.getLastBucket(gts[m]) != GTSHelper.getLastBucket(gts[0])
+          || gts[m].size() != gts[0].size()) {
+        throw new WarpScriptException(getName() + " expects aligned GTS, with the same bucketspan, lastbucket and bucketcount.");
+      }
+    }
+
+    if (k >= gts[0].size()) {
+      throw new WarpScriptException(getName() + " requires the subsequence length to be lower than the bucketcount.");
+    }
+
+    if (gts[0].size() > maxsize) {
+      throw new WarpScriptException("Max size limit for " + getName() + " reached. Consider lower the bucketcount. To raise this limit, use a capable token or contact an administrator.");
+    }
+
+    // number of threads used for the traversal
+    int parallelism = MatrixProfileWarpScriptExtension.getParallelism(stack);
+
+    //
+    // Staging and kernels of each dimension
+    //
+
+    FunctionStats.Call call = FunctionStats.current(stack);
+    long mark = System.nanoTime();
+
+    StagedSeries[] staged = new StagedSeries[d];
+    DistanceKernel[] kernels = new DistanceKernel[d];
+
+    for (int m = 0; m < d; m++) {
+      staged[m] = StagedSeries.of(gts[m]);
+      double[] values = staged[m].values();
+      SlidingStats stats = staged[m].stats((int) k);
+      kernels[m] = new DistanceKernel(distanceType, values, stats, values, stats);
+      call.series(values.length);
+    }
+
+    int p = gts[0].size() - (int) k + 1;
+
+    MStompEngine engine = new MStompEngine(kernels, p, exclusionRadius, direction);
+    mark = call.phase(FunctionStats.Phase.STATS, mark);
+
+    StompEngine.RowMins[] mins = engine.run(parallelism);
+
+    // the cells of the distance matrix of each dimension
+    call.cells(d * StompEngine.cells(exclusionRadius, p));
+    mark = call.phase(FunctionStats.Phase.TRAVERSAL, mark);
+
+    //
+    // One profile per number of dimensions
+    //
+
+    long bucketspan = staged[0].getBucketSpan();
+    long lastbucket = staged[0].getLastBucket() - bucketspan * (k - 1);
+    List<Object> results = new ArrayList<Object>(d);
+
+    for (int m = 0; m < d; m++) {
+      GeoTimeSerie res = new GeoTimeSerie(lastbucket, p, bucketspan, p);
+
+      // meta
+      res.setMetadata(gts[0].getMetadata());
+      GTSHelper.rename(res, gts[0].getName() + "::mprofile");
+      res.getMetadata().getAttributes().put(".profile.function", getName());
+      res.getMetadata().getAttributes().put("." + SUBSEQUENCE_LENGTH, String.valueOf(k));
+      res.getMetadata().getAttributes().put("." + EXCLUSION_RADIUS, String.valueOf(exclusionRadius));
+      res.getMetadata().getAttributes().put("." + DIMENSIONS, String.valueOf(m + 1));
+
+      if (DistanceKernel.Type.ZEUCLIDEAN != distanceType) {
+        res.getMetadata().getAttributes().put("." + DISTANCE, distanceType.name());
+      }
+
+      if (PROFILE.Direction.BOTH != direction) {
+        res.getMetadata().getAttributes().put("." + DIRECTION, direction.name());
+      }
+
+      StagedSeries.reset(res, staged[0].ticks(p), mins[m].index, mins[m].value, p);
+      results.add(res);
+    }
+
+    call.phase(FunctionStats.Phase.OUTPUT, mark);
+
+    stack.push(results);
+
+    return stack;
+  }
+}
@@ -0,0 +1,160 @@
+//
+//   Copyright 2026  SenX S.A.S.
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+//
+
+package io.warp10.ext.matrixprofile;
+
+import io.warp10.script.WarpScriptException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * mSTOMP traversal of the upper triangle of the distance matrices of d aligned series, diagonal by diagonal
+ *
+ * The d kernel states of a cell are updated together. The d distances of the cell are then sorted, and the mean of
+ * the m smallest ones is the distance of the cell in the m-dimensional profile, for m in [1, d].
+ * As in StompEngine, the diagonals can be split in contiguous ranges processed by a fork-join pool, whose minima are
+ * merged in diagonal order so the result does not depend on the parallelism.
+ */
+public class MStompEngine {
+
+  private final DistanceKernel[] kernels;
+  private final int p;
+  private final int exclusionRadius;
+  private final PROFILE.Direction direction;
+
+  /**
+   * @param kernels self join kernel of each dimension, on series of the same length
+   */
+  public MStompEngine(DistanceKernel[] kernels, int p, int exclusionRadius, PROFILE.Direction direction) {
+    this.kernels = kernels;
+    this.p = p;
+    this.exclusionRadius = exclusionRadius;
+    this.direction = direction;
+  }
+
+  /**
+   * Compute the row minima of the m-dimensional profiles, in cell m - 1 of the result
+   */
+  public StompEngine.RowMins[] run(int parallelism) throws WarpScriptException {
+
+    int firstDiagNotInExclusionZone = exclusionRadius;
+
+    int workers = StompEngine.workers(firstDiagNotInExclusionZone, p, parallelism);
+
+    if (workers < 2) {
+      StompEngine.RowMins[] mins = newMins();
+      traverse(firstDiagNotInExclusionZone, p, mins);
+      return mins;
+    }
+
+    int[] bounds = StompEngine.split(firstDiagNotInExclusionZone, p, workers);
+
+    ForkJoinPool pool = new ForkJoinPool(workers);
+
+    try {
+
+      List<Callable<StompEngine.RowMins[]>> tasks = new ArrayList<Callable<StompEngine.RowMins[]>>(workers);
+      for (int i = 0; i < workers; i++) {
+        final int start = bounds[i];
+        final int end = bounds[i + 1];
+        tasks.add(new Callable<StompEngine.RowMins[]>() {
+          @Override
+          public StompEngine.RowMins[] call() throws Exception {
+            StompEngine.RowMins[] local = newMins();
+            traverse(start, end, local);
+            return local;
+          }
+        });
+      }
+
+      StompEngine.RowMins[] mins = newMins();
+      for (StompEngine.RowMins[] partial: StompEngine.collect(pool.invokeAll(tasks))) {
+        for (int m = 0; m < mins.length; m++) {
+          mins[m].merge(partial[m]);
+        }
+      }
+
+      return mins;
+
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  private StompEngine.RowMins[] newMins() {
+    StompEngine.RowMins[] mins = new StompEngine.RowMins[kernels.length];
+    for (int m = 0; m < mins.length; m++) {
+      mins[m] = new StompEngine.RowMins(p, false);
+    }
+    return mins;
+  }
+
+  /**
+   * Traverse the diagonals in [tStart, tEnd)
+   */
+  private void traverse(int tStart, int tEnd, StompEngine.RowMins[] mins) {
+
+    int d = kernels.length;
+
+    // states and distances of the current cell, one per dimension
+    double[] state = new double[d];
+    double[] dist = new double[d];
+
+    for (int t = tStart; t < tEnd; t++) {
+
+      for (int j = t; j < p; j++) {
+
+        // working on row i and col j, both are incremented each iteration
+        int i = j - t;
+
+        for (int m = 0; m < d; m++) {
+          DistanceKernel kernel = kernels[m];
+          state[m] = 0 == i ? kernel.init(i, j) : kernel.slide(state[m], i, j);
+          dist[m] = kernel.distance(state[m], i, j);
+        }
+
+        // NaN distances (constant subsequences) are sorted last
+        Arrays.sort(dist);
+
+        double sum = 0.0D;
+
+        for (int m = 0; m < d; m++) {
+          sum += dist[m];
+          double v = sum / (m + 1);
+
+          double[] rowMinValue = mins[m].value;
+          long[] rowMinIndex = mins[m].index;
+
+          // in case of tie: closest index since we see lower diagonal first
+          if (PROFILE.Direction.LEFT != direction && v < rowMinValue[i]) {
+            rowMinValue[i] = v;
+            rowMinIndex[i] = j;
+          }
+
+          // symmetrical
+          if (PROFILE.Direction.RIGHT != direction && v < rowMinValue[j]) {
+            rowMinValue[j] = v;
+            rowMinIndex[j] = i;
+          }
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,126 @@
+//
+//   Copyright 2026  SenX S.A.S.
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+//
+
+package io.warp10.ext.matrixprofile;
+
+import io.warp10.continuum.gts.GeoTimeSerie;
+import io.warp10.script.WarpScriptException;
+import io.warp10.script.WarpScriptStack;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Evaluation of a custom distance macro between the subsequences of a query GTS and of a candidate GTS
+ *
+ * In single mode, the macro expects two subsequence GTS and outputs a distance.
+ * In batch mode, it expects a query subsequence GTS and a LIST of candidate subsequence GTS, and outputs a LIST of
+ * distances, which amortizes the macro call over up to batchSize candidates.
+ * Subsequences are served from a pool of reusable views, see SubsequenceViews.
+ */
+public class MacroDistance {
+
+  private final WarpScriptStack stack;
+  private final WarpScriptStack.Macro macro;
+  private final int batchSize;
+  private final SubsequenceViews queries;
+  private final SubsequenceViews candidates;
+  private final double[] single = new double[1];
+  private final FunctionStats.Call call;
+
+  /**
+   * @param batchSize maximum number of candidates per macro call, 0 for single mode
+   */
+  public MacroDistance(WarpScriptStack stack, WarpScriptStack.Macro macro, GeoTimeSerie query, StagedSeries stagedQuery,
+      GeoTimeSerie candidate, StagedSeries stagedCandidate, int k, int batchSize) {
+    this.stack = stack;
+    this.macro = macro;
+    this.batchSize = batchSize;
+
+    // distinct pools, so that a self join still gets two distinct GTS
+    this.queries = new SubsequenceViews(query, stagedQuery, k, 1);
+    this.candidates = new SubsequenceViews(candidate, stagedCandidate, k, Math.max(1, batchSize));
+    this.call = FunctionStats.current(stack);
+  }
+
+  public boolean isBatch() {
+    return batchSize > 0;
+  }
+
+  /**
+   * Distance between query subsequence i and candidate subsequence j, as a batch of one candidate in batch mode
+   */
+  public double distance(int i, int j) throws WarpScriptException {
+    if (isBatch()) {
+      distances(i, j, j + 1, single, 0);
+      return single[0];
+    }
+
+    stack.push(queries.view(0, i));
+    stack.push(candidates.view(0, j));
+    stack.exec(macro);
+    call.macroCalls(1L);
+
+    return toDouble(stack.pop());
+  }
+
+  /**
+   * Distances between query subsequence i and the candidate subsequences [from, to), stored in out from offset.
+   * In single mode, the macro is called once per candidate.
+   */
+  public void distances(int i, int from, int to, double[] out, int offset) throws WarpScriptException {
+
+    if (!isBatch()) {
+      for (int j = from; j < to; j++) {
+        out[offset + j - from] = distance(i, j);
+      }
+      return;
+    }
+
+    for (int start = from; start < to; start += batchSize) {
+      int end = Math.min(to, start + batchSize);
+
+      // a new LIST for each call, as the macro may keep or modify it
+      List<Object> batch = new ArrayList<Object>(end - start);
+      for (int j = start; j < end; j++) {
+        batch.add(candidates.view(j - start, j));
+      }
+
+      stack.push(queries.view(0, i));
+      stack.push(batch);
+      stack.exec(macro);
+      call.macroCalls(1L);
+
+      Object o = stack.pop();
+
+      if (!(o instanceof List) || ((List) o).size() != end - start) {
+        throw new WarpScriptException("The distance macro is expected to output a LIST of " + (end - start) + " distances in batch mode.");
+      }
+
+      List distances = (List) o;
+      for (int j = start; j < end; j++) {
+        out[offset + j - from] = toDouble(distances.get(j - start));
+      }
+    }
+  }
+
+  private static double toDouble(Object o) throws WarpScriptException {
+    if (!(o instanceof Number)) {
+      throw new WarpScriptException("The distance macro is expected to output a numerical value.");
+    }
+    return ((Number) o).doubleValue();
+  }
+}
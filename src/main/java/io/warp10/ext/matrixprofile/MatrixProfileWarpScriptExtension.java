@@ -18,7 +18,14 @@ package io.warp10.ext.matrixprofile;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import io.warp10.WarpConfig;
+import io.warp10.script.WarpScriptStack;
+import io.warp10.warp.sdk.Capabilities;
 import io.warp10.warp.sdk.WarpScriptExtension;
 
 public class MatrixProfileWarpScriptExtension extends WarpScriptExtension {
@@ -29,16 +36,86 @@ public class MatrixProfileWarpScriptExtension extends WarpScriptExtension {
   // default value < config value < capability value
   //
 
-  public final static long DEFAULT_VALUE_MP_PROFILE_MAXSIZE = 50000L;
+  public final static long DEFAULT_VALUE_MP_PROFILE_MAXSIZE = 1000000L;
   public final static String CONFIG_MP_PROFILE_MAXSIZE = "mp.profile.maxsize";
   public final static String CAPNAME_MP_PROFILE_MAXSIZE = "mp.profile.maxsize.capname";
 
-  public final static long DEFAULT_VALUE_MP_ABPROFILE_MAXSIZE = 5000L;
+  public final static long DEFAULT_VALUE_MP_ABPROFILE_MAXSIZE = 50000L;
   public final static String CONFIG_MP_ABPROFILE_MAXSIZE = "mp.abprofile.maxsize";
   public final static String CAPNAME_MP_ABPROFILE_MAXSIZE = "mp.abprofile.maxsize.capname";
 
+  // number of neighbors held at once by MP.PROFILE with knn, i.e. the number of vectors times knn times the number of
+  // threads traversing the diagonals, each one keeping its own heaps
+  public final static long DEFAULT_VALUE_MP_PROFILE_KNN_MAXSIZE = 10000000L;
+  public final static String CONFIG_MP_PROFILE_KNN_MAXSIZE = "mp.profile.knn.maxsize";
+  public final static String CAPNAME_MP_PROFILE_KNN_MAXSIZE = "mp.profile.knn.maxsize.capname";
+
+  // number of values output by MP.PANPROFILE, i.e. the sum over its subsequence lengths of the number of subsequences
+  public final static long DEFAULT_VALUE_MP_PANPROFILE_MAXSIZE = 10000000L;
+  public final static String CONFIG_MP_PANPROFILE_MAXSIZE = "mp.panprofile.maxsize";
+  public final static String CAPNAME_MP_PANPROFILE_MAXSIZE = "mp.panprofile.maxsize.capname";
+
+  public final static long DEFAULT_VALUE_MP_PROFILE_PARALLELISM = 1L;
+  public final static String CONFIG_MP_PROFILE_PARALLELISM = "mp.profile.parallelism";
+  public final static String CAPNAME_MP_PROFILE_PARALLELISM = "mp.profile.parallelism.capname";
+
+  //
+  // MP.ABPROFILE can read its B side from a file, relative to the root directory mp.abprofile.file.root, files being
+  // out of reach unless it is set. Their bucketcount is limited by mp.abprofile.file.maxsize instead of
+  // mp.abprofile.maxsize, as they are read chunk by chunk.
+  //
+
+  public final static String CONFIG_MP_ABPROFILE_FILE_ROOT = "mp.abprofile.file.root";
+
+  public final static long DEFAULT_VALUE_MP_ABPROFILE_FILE_MAXSIZE = 1000000000L;
+  public final static String CONFIG_MP_ABPROFILE_FILE_MAXSIZE = "mp.abprofile.file.maxsize";
+  public final static String CAPNAME_MP_ABPROFILE_FILE_MAXSIZE = "mp.abprofile.file.maxsize.capname";
+
+  //
+  // Time limits in milliseconds of a call, 0 for none. The traversal stops once reached, and the call either fails or
+  // outputs the partial profile if parameter partial is set.
+  //
+
+  public final static long DEFAULT_VALUE_MP_PROFILE_TIMEOUT = 0L;
+  public final static String CONFIG_MP_PROFILE_TIMEOUT = "mp.profile.timeout";
+  public final static String CAPNAME_MP_PROFILE_TIMEOUT = "mp.profile.timeout.capname";
+
+  public final static long DEFAULT_VALUE_MP_ABPROFILE_TIMEOUT = 0L;
+  public final static String CONFIG_MP_ABPROFILE_TIMEOUT = "mp.abprofile.timeout";
+  public final static String CAPNAME_MP_ABPROFILE_TIMEOUT = "mp.abprofile.timeout.capname";
+
+  //
+  // Batches of GTS are processed on a shared executor of mp.batch.threads threads (default to the number of processors),
+  // each script using at most mp.batch.concurrency of them at a time
+  //
+
+  public final static long DEFAULT_VALUE_MP_BATCH_CONCURRENCY = 1L;
+  public final static String CONFIG_MP_BATCH_CONCURRENCY = "mp.batch.concurrency";
+  public final static String CAPNAME_MP_BATCH_CONCURRENCY = "mp.batch.concurrency.capname";
+  public final static String CONFIG_MP_BATCH_THREADS = "mp.batch.threads";
+
+  private static volatile ExecutorService batchExecutor;
+
   //
-  // Functions
+  // Process-wide cache of the profiles computed by MP.PROFILE, disabled unless a size in bytes is configured
+  //
+
+  public final static long DEFAULT_VALUE_MP_PROFILE_CACHE_MAXSIZE = 0L;
+  public final static String CONFIG_MP_PROFILE_CACHE_MAXSIZE = "mp.profile.cache.maxsize";
+  public final static String CONFIG_MP_PROFILE_CACHE_ENTRY_MAXSIZE = "mp.profile.cache.entry.maxsize";
+
+  private static volatile ProfileCache profileCache;
+  private static volatile boolean profileCacheConfigured = false;
+
+  //
+  // Counters of the calls to the functions are published to Sensision and read with MP.STATS. If mp.stats.attributes
+  // is true, the counters of a call are also set as attributes of the GTS it produces.
+  //
+
+  public final static String CONFIG_MP_STATS_ATTRIBUTES = "mp.stats.attributes";
+
+  //
+  // Functions, each one registered through an InstrumentedFunction
   //
 
   private static final Map<String,Object> functions;
@@ -46,15 +123,100 @@ public class MatrixProfileWarpScriptExtension extends WarpScriptExtension {
   static {
     functions = new HashMap<String,Object>();
 
-    functions.put("MP.ATBUCKETINDEX", new ATBUCKETINDEX("MP.ATBUCKETINDEX"));
-    functions.put("MP.PROFILE", new PROFILE("MP.PROFILE"));
-    functions.put("MP.RPROFILE", new RPROFILE("MP.RPROFILE"));
-    functions.put("MP.ABPROFILE", new ABPROFILE("MP.ABPROFILE"));
-    functions.put("MP.FLUSS", new FLUSS("MP.FLUSS"));
+    functions.put("MP.ATBUCKETINDEX", new InstrumentedFunction(new ATBUCKETINDEX("MP.ATBUCKETINDEX")));
+    functions.put("MP.PROFILE", new InstrumentedFunction(new PROFILE("MP.PROFILE")));
+    functions.put("MP.RPROFILE", new InstrumentedFunction(new RPROFILE("MP.RPROFILE")));
+    functions.put("MP.ABPROFILE", new InstrumentedFunction(new ABPROFILE("MP.ABPROFILE")));
+    functions.put("MP.FLUSS", new InstrumentedFunction(new FLUSS("MP.FLUSS")));
+    functions.put("MP.FLOSS", new InstrumentedFunction(new FLOSS("MP.FLOSS")));
+    functions.put("MP.MASS", new InstrumentedFunction(new MASS("MP.MASS")));
+    functions.put("MP.PROFILE.UPDATE", new InstrumentedFunction(new PROFILEUPDATE("MP.PROFILE.UPDATE")));
+    functions.put("MP.MPROFILE", new InstrumentedFunction(new MPROFILE("MP.MPROFILE")));
+    functions.put("MP.PANPROFILE", new InstrumentedFunction(new PANPROFILE("MP.PANPROFILE")));
+    functions.put("MP.MOTIFS", new InstrumentedFunction(new MOTIFS("MP.MOTIFS")));
+    functions.put("MP.DISCORDS", new InstrumentedFunction(new DISCORDS("MP.DISCORDS")));
+    functions.put("MP.PROFILE.CACHE", new InstrumentedFunction(new PROFILECACHE("MP.PROFILE.CACHE")));
+    functions.put("MP.STATS", new InstrumentedFunction(new STATS("MP.STATS")));
   }
 
   @Override
   public Map<String, Object> getFunctions() {
     return functions;
   }
+
+  /**
+   * Resolve a numerical setting following the override chain default value < config value < capability value
+   */
+  public static long getLongSetting(WarpScriptStack stack, long defaultValue, String configKey, String capName) {
+    long value = defaultValue;
+    if (null != WarpConfig.getProperty(configKey)) {
+      value = Long.parseLong(WarpConfig.getProperty(configKey));
+    }
+    String capValue = Capabilities.get(stack, capName);
+    if (null != capValue) {
+      value = Long.valueOf(capValue);
+    }
+    return value;
+  }
+
+  /**
+   * Number of threads traversing the diagonals, clamped to [1, number of processors] whatever the configuration or
+   * capability, as more threads would only contend
+   */
+  public static int getParallelism(WarpScriptStack stack) {
+    long parallelism = getLongSetting(stack, DEFAULT_VALUE_MP_PROFILE_PARALLELISM, CONFIG_MP_PROFILE_PARALLELISM, CAPNAME_MP_PROFILE_PARALLELISM);
+    return (int) Math.max(1L, Math.min(parallelism, Runtime.getRuntime().availableProcessors()));
+  }
+
+  /**
+   * Profile cache configured in WarpConfig, null if disabled
+   */
+  public static ProfileCache getProfileCache() {
+    if (!profileCacheConfigured) {
+      synchronized (MatrixProfileWarpScriptExtension.class) {
+        if (!profileCacheConfigured) {
+          long maxsize = DEFAULT_VALUE_MP_PROFILE_CACHE_MAXSIZE;
+          if (null != WarpConfig.getProperty(CONFIG_MP_PROFILE_CACHE_MAXSIZE)) {
+            maxsize = Long.parseLong(WarpConfig.getProperty(CONFIG_MP_PROFILE_CACHE_MAXSIZE));
+          }
+          long entryMaxsize = maxsize;
+          if (null != WarpConfig.getProperty(CONFIG_MP_PROFILE_CACHE_ENTRY_MAXSIZE)) {
+            entryMaxsize = Long.parseLong(WarpConfig.getProperty(CONFIG_MP_PROFILE_CACHE_ENTRY_MAXSIZE));
+          }
+          if (maxsize > 0L) {
+            profileCache = new ProfileCache(maxsize, entryMaxsize);
+          }
+          profileCacheConfigured = true;
+        }
+      }
+    }
+    return profileCache;
+  }
+
+  /**
+   * Shared executor of the batches, created on first use with daemon threads
+   */
+  public static ExecutorService getBatchExecutor() {
+    if (null == batchExecutor) {
+      synchronized (MatrixProfileWarpScriptExtension.class) {
+        if (null == batchExecutor) {
+          int threads = Runtime.getRuntime().availableProcessors();
+          if (null != WarpConfig.getProperty(CONFIG_MP_BATCH_THREADS)) {
+            threads = Integer.parseInt(WarpConfig.getProperty(CONFIG_MP_BATCH_THREADS));
+          }
+
+          final AtomicInteger count = new AtomicInteger();
+          batchExecutor = Executors.newFixedThreadPool(Math.max(1, threads), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+              Thread thread = new Thread(r, "[MatrixProfile batch #" + count.incrementAndGet() + "]");
+              thread.setDaemon(true);
+              return thread;
+            }
+          });
+        }
+      }
+    }
+    return batchExecutor;
+  }
 }
@@ -0,0 +1,244 @@
+//
+//   Copyright 2026  SenX S.A.S.
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+//
+
+package io.warp10.ext.matrixprofile;
+
+import io.warp10.continuum.gts.GeoTimeSerie.TYPE;
+import io.warp10.continuum.gts.GeoTimeSerie;
+import io.warp10.continuum.gts.GTSHelper;
+import io.warp10.script.NamedWarpScriptFunction;
+import io.warp10.script.WarpScriptException;
+import io.warp10.script.WarpScriptStack;
+import io.warp10.script.WarpScriptStackFunction;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compute the pan matrix profile of a GTS (SKIMP): its matrix profiles for a range of subsequence lengths,
+ * normalized by 2 * sqrt(sub.length) so that they can be compared across lengths
+ * Output a LIST of profile GTS in ascending length order, holding the lengths computed within the time budget
+ */
+public class PANPROFILE extends NamedWarpScriptFunction implements WarpScriptStackFunction {
+
+  public static final String GTS = PROFILE.GTS;
+  public static final String MIN_SUBSEQUENCE_LENGTH = "sub.length.min";
+  public static final String MAX_SUBSEQUENCE_LENGTH = "sub.length.max";
+  public static final String SUBSEQUENCE_LENGTH_STEP = "sub.length.step";
+  public static final String TIME_BUDGET = PROFILE.TIME_BUDGET;
+  public static final String COVERAGE = PROFILE.COVERAGE;
+  public static final String NORMALIZED = "normalized";
+
+  public PANPROFILE(String name) {
+    super(name);
+  }
+
+  @Override
+  public Object apply(WarpScriptStack stack) throws WarpScriptException {
+
+    //
+    // Parameters
+    //
+
+    GeoTimeSerie gts;
+    long kmin;
+    long kmax;
+    long step = 1L;
+    Long timeBudget = null;
+
+    //
+    // Two type of signature:
+    //  - a MAP (with optional arguments)
+    //  - or four arguments, gts, min and max subsequence lengths and step
+    //
+
+    Object o = stack.pop();
+    if (o instanceof Map) {
+
+      Map params = (Map) o;
+
+      //
+      // Mandatory params
+      //
+
+      if (!(params.get(GTS) instanceof GeoTimeSerie)) {
+        throw new WarpScriptException(getName() + " requires parameter " + GTS);
+      }
+      gts = (GeoTimeSerie) params.get(GTS);
+
+      if (null == params.get(MIN_SUBSEQUENCE_LENGTH) || null == params.get(MAX_SUBSEQUENCE_LENGTH)) {
+        throw new WarpScriptException(getName() + " requires parameters " + MIN_SUBSEQUENCE_LENGTH + " and " + MAX_SUBSEQUENCE_LENGTH);
+      }
+      kmin = ((Number) params.get(MIN_SUBSEQUENCE_LENGTH)).longValue();
+      kmax = ((Number) params.get(MAX_SUBSEQUENCE_LENGTH)).longValue();
+
+      //
+      // Optional parameters
+      //
+
+      if (null != params.get(SUBSEQUENCE_LENGTH_STEP)) {
+        step = ((Number) params.get(SUBSEQUENCE_LENGTH_STEP)).longValue();
+      }
+
+      if (null != params.get(TIME_BUDGET)) {
+        timeBudget = ((Number) params.get(TIME_BUDGET)).longValue();
+      }
+
+    } else {
+
+      if (!(o instanceof Long)) {
+        throw new WarpScriptException(getName() + " expects a subsequence length step (LONG) as fourth parameter.");
+      }
+      step = (Long) o;
+
+      o = stack.pop();
+      if (!(o instanceof Long)) {
+        throw new WarpScriptException(getName() + " expects a maximum subsequence length (LONG) as third parameter.");
+      }
+      kmax = (Long) o;
+
+      o = stack.pop();
+      if (!(o instanceof Long)) {
+        throw new WarpScriptException(getName() + " expects a minimum subsequence length (LONG) as second parameter.");
+      }
+      kmin = (Long) o;
+
+      o = stack.pop();
+      if (!(o instanceof GeoTimeSerie)) {
+        throw new WarpScriptException(getName() + " expects a GTS as first parameter.");
+      }
+      gts = (GeoTimeSerie) o;
+    }
+
+    //
+    // Sanity checks
+    //
+
+    if (kmin < 2) {
+      throw new WarpScriptException(getName() + " 's subsequence size must be strictly greater than 1.");
+    }
+
+    if (kmax < kmin) {
+      throw new WarpScriptException(getName() + " expects the maximum subsequence length to be greater than or equal to the minimum one.");
+    }
+
+    if (step < 1L) {
+      throw new WarpScriptException(getName() + " expects parameter " + SUBSEQUENCE_LENGTH_STEP + " to be strictly positive.");
+    }
+
+    if (null != timeBudget && timeBudget <= 0L) {
+      throw new WarpScriptException(getName() + " expects parameter " + TIME_BUDGET + " to be strictly positive.");
+    }
+
+    if (TYPE.DOUBLE != gts.getType()) {
+      throw new WarpScriptException(getName() + " can only be applied to GTS with values of type DOUBLE.");
+    }
+
+    if (!GTSHelper.isBucketized(gts)) {
+      throw new WarpScriptException(getName() + " can only be applied to a GTS that is bucketized and filled.");
+    }
+
+    if (gts.size() != GTSHelper.getBucketCount(gts)) {
+      throw new WarpScriptException(getName() + " can only be applied to a GTS that is bucketized and filled.");
+    }
+
+    if (kmax >= gts.size()) {
+      throw new WarpScriptException(getName() + " requires the subsequence lengths to be lower than the bucketcount.");
+    }
+
+    // maxsize check
+    long maxsize = MatrixProfileWarpScriptExtension.getLongSetting(stack, MatrixProfileWarpScriptExtension.DEFAULT_VALUE_MP_PROFILE_MAXSIZE,
+        MatrixProfileWarpScriptExtension.CONFIG_MP_PROFILE_MAXSIZE, MatrixProfileWarpScriptExtension.CAPNAME_MP_PROFILE_MAXSIZE);
+
+    if (gts.size() > maxsize) {
+      throw new WarpScriptException("Max size limit for " + getName() + " reached. Consider lower the bucketcount. To raise this limit, use a capable token or contact an administrator.");
+    }
+
+    // number of threads, each one computing a length at a time
+    int parallelism = MatrixProfileWarpScriptExtension.getParallelism(stack);
+
+    int[] lengths = new int[(int) ((kmax - kmin) / step + 1)];
+    long outputSize = 0L;
+    for (int i = 0; i < lengths.length; i++) {
+      lengths[i] = (int) (kmin + i * step);
+      outputSize += gts.size() - lengths[i] + 1;
+    }
+
+    // the profiles of all the lengths are held at once
+    long panMaxsize = MatrixProfileWarpScriptExtension.getLongSetting(stack, MatrixProfileWarpScriptExtension.DEFAULT_VALUE_MP_PANPROFILE_MAXSIZE,
+        MatrixProfileWarpScriptExtension.CONFIG_MP_PANPROFILE_MAXSIZE, MatrixProfileWarpScriptExtension.CAPNAME_MP_PANPROFILE_MAXSIZE);
+
+    if (outputSize > panMaxsize) {
+      throw new WarpScriptException("Max size limit for " + getName() + " reached. Consider lower the number of subsequence lengths or the bucketcount. To raise this limit, use a capable token or contact an administrator.");
+    }
+
+    FunctionStats.Call call = FunctionStats.current(stack);
+    long mark = System.nanoTime();
+
+    // sorting and staging of the values
+    StagedSeries staged = StagedSeries.of(gts);
+    call.series(staged.size());
+    mark = call.phase(FunctionStats.Phase.STATS, mark);
+
+    long deadline = null == timeBudget ? 0L : System.nanoTime() + timeBudget * 1000000L;
+    StompEngine.RowMins[] profiles = new PanEngine(staged.values(), lengths).run(stack, deadline, parallelism);
+
+    //
+    // One profile GTS per computed length
+    //
+
+    int computed = 0;
+    for (int l = 0; l < lengths.length; l++) {
+      if (null != profiles[l]) {
+        computed++;
+        call.cells(StompEngine.cells(PanEngine.exclusionRadius(lengths[l]), staged.size() - lengths[l] + 1));
+      }
+    }
+    mark = call.phase(FunctionStats.Phase.TRAVERSAL, mark);
+
+    List<Object> results = new ArrayList<Object>(computed);
+    long bucketspan = staged.getBucketSpan();
+
+    for (int l = 0; l < lengths.length; l++) {
+      if (null == profiles[l]) {
+        continue;
+      }
+
+      int k = lengths[l];
+      int p = staged.size() - k + 1;
+      GeoTimeSerie res = new GeoTimeSerie(staged.getLastBucket() - bucketspan * (k - 1), p, bucketspan, p);
+
+      // meta
+      res.setMetadata(gts.getMetadata());
+      GTSHelper.rename(res, gts.getName() + "::panprofile");
+      res.getMetadata().getAttributes().put(".profile.function", getName());
+      res.getMetadata().getAttributes().put("." + PROFILE.SUBSEQUENCE_LENGTH, String.valueOf(k));
+      res.getMetadata().getAttributes().put("." + PROFILE.EXCLUSION_RADIUS, String.valueOf(PanEngine.exclusionRadius(k)));
+      res.getMetadata().getAttributes().put("." + NORMALIZED, "true");
+      res.getMetadata().getAttributes().put("." + COVERAGE, String.valueOf((double) computed / lengths.length));
+
+      StagedSeries.reset(res, staged.ticks(p), profiles[l].index, profiles[l].value, p);
+      results.add(res);
+    }
+
+    call.phase(FunctionStats.Phase.OUTPUT, mark);
+
+    stack.push(results);
+
+    return stack;
+  }
+}
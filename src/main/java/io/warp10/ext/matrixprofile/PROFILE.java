@@ -16,7 +16,6 @@
 
 package io.warp10.ext.matrixprofile;
 
-import io.warp10.WarpConfig;
 import io.warp10.continuum.gts.GeoTimeSerie.TYPE;
 import io.warp10.continuum.gts.GeoTimeSerie;
 import io.warp10.continuum.gts.GTSHelper;
@@ -24,15 +23,17 @@ import io.warp10.script.NamedWarpScriptFunction;
 import io.warp10.script.WarpScriptException;
 import io.warp10.script.WarpScriptStack;
 import io.warp10.script.WarpScriptStackFunction;
-import io.warp10.warp.sdk.Capabilities;
 
-import java.io.IOException;
-import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
 
 /**
  * Compute the Matrix Profile GTS using the STOMP algorithm
  * Store the row argmin in the elevation (value is the row min)
+ * With knn, output a LIST of such GTS, one per rank of neighbor
  */
 public class PROFILE extends NamedWarpScriptFunction implements WarpScriptStackFunction {
 
@@ -40,26 +41,51 @@ public class PROFILE extends NamedWarpScriptFunction implements WarpScriptStackF
   public static final String SUBSEQUENCE_LENGTH = "sub.length";
   public static final String EXCLUSION_RADIUS = "excl.radius";
   public static final String SIMILARITY_MEASURE_MACRO = "macro";
+  public static final String MACRO_BATCH_SIZE = "macro.batch";
+  public static final String DISTANCE = "distance";
   public static final String ROBUSTNESS = "robust";
+  public static final String KNN = "knn";
+  public static final String KNN_RANK = "knn.rank";
   public static final String DIRECTION = "direction";
+  public static final String FRACTION = "fraction";
+  public static final String TIME_BUDGET = "time.budget";
+  public static final String SEED = "seed";
+  public static final String COVERAGE = "coverage";
+  public static final String PRECISION = "precision";
+  public static final String PARTIAL = "partial";
+  // value of parameter direction for the left, right and two-sided profiles of a single traversal
+  public static final String ALL_DIRECTIONS = "ALL";
   public enum Direction {
     LEFT,
     RIGHT,
     BOTH
   }
 
-  public PROFILE(String name) {
-    super(name);
+  public enum Precision {
+    DOUBLE,
+    // single precision storage of the values, statistics and row minima, see CompactStompEngine
+    FLOAT
   }
 
-  private double getValue(GeoTimeSerie gts, int index) {
-    return ((Number) GTSHelper.valueAtIndex(gts, index)).doubleValue();
+  public PROFILE(String name) {
+    super(name);
   }
 
   private int defaultExclusionRadius(long k) {
     return ((Double) Math.ceil(k * 0.25)).intValue();
   }
 
+  /**
+   * Parse the name of a built-in distance, for the given function
+   */
+  static DistanceKernel.Type distanceType(String function, Object name) throws WarpScriptException {
+    try {
+      return DistanceKernel.Type.of(name.toString());
+    } catch (IllegalArgumentException iae) {
+      throw new WarpScriptException(function + " expects parameter " + DISTANCE + " to be one of " + Arrays.toString(DistanceKernel.Type.values()) + ".");
+    }
+  }
+
   @Override
   public Object apply(WarpScriptStack stack) throws WarpScriptException {
 
@@ -67,17 +93,30 @@ public class PROFILE extends NamedWarpScriptFunction implements WarpScriptStackF
     // Parameters
     //
 
-    GeoTimeSerie gts;
+    Object input; // a GTS or a LIST of GTS
     long k; // subsequence size
     int exclusionRadius;
     WarpScriptStack.Macro distance;
     boolean robust;
     Direction direction = Direction.BOTH;
+    boolean allDirections = false;
+    long batchSize = 0L;
+    Long knn = null;
+    Precision precision = Precision.DOUBLE;
+    DistanceKernel.Type distanceType = DistanceKernel.Type.ZEUCLIDEAN;
+    // output the partial profile when the time limit is reached, instead of failing
+    boolean partial = false;
+
+    // anytime mode
+    Double fraction = null;
+    Long timeBudget = null;
+    Long seed = null;
 
     //
     // Two type of signature:
     //  - a MAP (with optional arguments)
     //  - or two arguments, gts and subsequence length
+    // The gts can also be a LIST of GTS, in which case a LIST of results is output
     //
 
     Object o = stack.pop();
@@ -89,8 +128,8 @@ public class PROFILE extends NamedWarpScriptFunction implements WarpScriptStackF
       // Mandatory params
       //
 
-      gts = (GeoTimeSerie) params.get(GTS);
-      if (null == gts) {
+      input = params.get(GTS);
+      if (null == input) {
         throw new WarpScriptException(getName() + " requires parameter " + GTS);
       }
 
@@ -113,16 +152,55 @@ public class PROFILE extends NamedWarpScriptFunction implements WarpScriptStackF
       // nullable
       distance = (WarpScriptStack.Macro) params.get(SIMILARITY_MEASURE_MACRO);
 
+      if (null != params.get(MACRO_BATCH_SIZE)) {
+        batchSize = ((Number) params.get(MACRO_BATCH_SIZE)).longValue();
+      }
+
+      if (null != params.get(DISTANCE)) {
+        distanceType = distanceType(getName(), params.get(DISTANCE));
+        if (null != distance) {
+          throw new WarpScriptException(getName() + " expects either parameter " + DISTANCE + " or parameter " + SIMILARITY_MEASURE_MACRO + ", not both.");
+        }
+      }
+
       if (null == params.get(ROBUSTNESS)) {
         robust = false;
       } else {
         robust = Boolean.TRUE.equals(params.get(ROBUSTNESS));
       }
 
-      if (null != params.get(DIRECTION)) {
+      if (null != params.get(KNN)) {
+        knn = ((Number) params.get(KNN)).longValue();
+      }
+
+      if (null != params.get(PRECISION)) {
+        try {
+          precision = Precision.valueOf(params.get(PRECISION).toString().toUpperCase());
+        } catch (IllegalArgumentException iae) {
+          throw new WarpScriptException(getName() + " expects parameter " + PRECISION + " to be one of " + Arrays.toString(Precision.values()) + ".");
+        }
+      }
+
+      if (ALL_DIRECTIONS.equals(params.get(DIRECTION))) {
+        allDirections = true;
+      } else if (null != params.get(DIRECTION)) {
         direction = Direction.valueOf((String) params.get(DIRECTION));
       }
 
+      if (null != params.get(FRACTION)) {
+        fraction = ((Number) params.get(FRACTION)).doubleValue();
+      }
+
+      if (null != params.get(TIME_BUDGET)) {
+        timeBudget = ((Number) params.get(TIME_BUDGET)).longValue();
+      }
+
+      if (null != params.get(SEED)) {
+        seed = ((Number) params.get(SEED)).longValue();
+      }
+
+      partial = Boolean.TRUE.equals(params.get(PARTIAL));
+
     } else {
 
       //
@@ -141,10 +219,10 @@ public class PROFILE extends NamedWarpScriptFunction implements WarpScriptStackF
 
         Object third = stack.pop();
 
-        if (!(third instanceof GeoTimeSerie)) {
-          throw new WarpScriptException(getName() + " expects a GTS as first parameter.");
+        if (!(third instanceof GeoTimeSerie) && !(third instanceof List)) {
+          throw new WarpScriptException(getName() + " expects a GTS or a LIST of GTS as first parameter.");
         }
-        gts = (GeoTimeSerie) third;
+        input = third;
 
       } else {
 
@@ -154,10 +232,10 @@ public class PROFILE extends NamedWarpScriptFunction implements WarpScriptStackF
         k = ((Number) o).longValue();
         exclusionRadius = defaultExclusionRadius(k);
 
-        if (!(second instanceof GeoTimeSerie)) {
-          throw new WarpScriptException(getName() + " expects a GTS as first parameter.");
+        if (!(second instanceof GeoTimeSerie) && !(second instanceof List)) {
+          throw new WarpScriptException(getName() + " expects a GTS or a LIST of GTS as first parameter.");
         }
-        gts = (GeoTimeSerie) second;
+        input = second;
       }
 
     }
@@ -170,79 +248,242 @@ public class PROFILE extends NamedWarpScriptFunction implements WarpScriptStackF
       throw new WarpScriptException(getName() + " 's subsequence size must be strictly greater than 1.");
     }
 
-    if (TYPE.DOUBLE != gts.getType()) {
-      throw new WarpScriptException(getName() + " can only be applied to GTS with values of type DOUBLE.");
+    if (exclusionRadius < 0) {
+      throw new WarpScriptException(getName() + " exclusion radios can not be negative.");
     }
 
-    if (!GTSHelper.isBucketized(gts)) {
-      throw new WarpScriptException(getName() + " can only be applied to a GTS that is bucketized and filled.");
+    if (batchSize < 0L || batchSize > Integer.MAX_VALUE) {
+      throw new WarpScriptException(getName() + " expects parameter " + MACRO_BATCH_SIZE + " to be a positive number of subsequences.");
     }
 
-    if (gts.size() != GTSHelper.getBucketCount(gts)) {
-      throw new WarpScriptException(getName() + " can only be applied to a GTS that is bucketized and filled.");
+    if (null != knn) {
+      if (knn < 1L || knn > Integer.MAX_VALUE) {
+        throw new WarpScriptException(getName() + " expects parameter " + KNN + " to be strictly positive.");
+      }
+      if (robust) {
+        throw new WarpScriptException(getName() + " expects either parameter " + KNN + " or parameter " + ROBUSTNESS + ", not both.");
+      }
+      if (null != fraction || null != timeBudget) {
+        throw new WarpScriptException(getName() + " does not support parameter " + KNN + " in anytime mode.");
+      }
     }
 
-    if (k >= GTSHelper.getBucketCount(gts)) {
-      throw new WarpScriptException(getName() + " requires the subsequence length to be lower than the bucketcount.");
+    // PreSCRIMP and SCRIMP may offer the same cell twice, which would demote the nearest neighbor to the second one
+    if (robust && (null != fraction || null != timeBudget)) {
+      throw new WarpScriptException(getName() + " does not support parameter " + ROBUSTNESS + " in anytime mode.");
     }
 
-    if (exclusionRadius < 0) {
-      throw new WarpScriptException(getName() + " exclusion radios can not be negative.");
+    if (allDirections && (null != knn || null != fraction || null != timeBudget)) {
+      throw new WarpScriptException(getName() + " does not support parameter " + DIRECTION + " " + ALL_DIRECTIONS + " with " + KNN + " or in anytime mode.");
     }
 
-    // maxsize check
-    long maxsize = MatrixProfileWarpScriptExtension.DEFAULT_VALUE_MP_PROFILE_MAXSIZE;
-    if (null != WarpConfig.getProperty(MatrixProfileWarpScriptExtension.CONFIG_MP_PROFILE_MAXSIZE)) {
-      maxsize = Long.parseLong(WarpConfig.getProperty(MatrixProfileWarpScriptExtension.CONFIG_MP_PROFILE_MAXSIZE));
+    if (Precision.FLOAT == precision && (null != distance || DistanceKernel.Type.ZEUCLIDEAN != distanceType || null != knn || null != fraction || null != timeBudget)) {
+      throw new WarpScriptException(getName() + " only supports parameter " + PRECISION + " " + Precision.FLOAT.name() + " for the z-normalized euclidean distance, without " + KNN + " and out of anytime mode.");
     }
-    String capValue = Capabilities.get(stack, MatrixProfileWarpScriptExtension.CAPNAME_MP_PROFILE_MAXSIZE);
-    if (null != capValue) {
-      maxsize = Long.valueOf(capValue);
+
+    if (null != fraction && (fraction <= 0.0D || fraction > 1.0D)) {
+      throw new WarpScriptException(getName() + " expects parameter " + FRACTION + " to be in ]0, 1].");
     }
 
-    if (gts.size() > maxsize) {
-      throw new WarpScriptException("Max size limit for " + getName() + " reached. Consider lower the bucketcount. To raise this limit, use a capable token or contact an administrator.");
+    if (null != timeBudget && timeBudget <= 0L) {
+      throw new WarpScriptException(getName() + " expects parameter " + TIME_BUDGET + " to be strictly positive.");
     }
 
-    // sorting
-    GTSHelper.sort(gts);
+    final Request request = new Request();
+    request.k = k;
+    request.exclusionRadius = exclusionRadius;
+    request.distance = distance;
+    request.robust = robust;
+    request.direction = direction;
+    request.allDirections = allDirections;
+    request.batchSize = batchSize;
+    request.knn = knn;
+    request.precision = precision;
+    request.distanceType = distanceType;
+    request.fraction = fraction;
+    request.timeBudget = timeBudget;
+    request.seed = seed;
+    request.partial = partial;
+
+    // time limit of the call, shared by the GTS of a batch
+    request.watchdog = new Watchdog(stack, MatrixProfileWarpScriptExtension.getLongSetting(stack, MatrixProfileWarpScriptExtension.DEFAULT_VALUE_MP_PROFILE_TIMEOUT,
+        MatrixProfileWarpScriptExtension.CONFIG_MP_PROFILE_TIMEOUT, MatrixProfileWarpScriptExtension.CAPNAME_MP_PROFILE_TIMEOUT));
+
+    // maxsize check, done for each GTS
+    request.maxsize = MatrixProfileWarpScriptExtension.getLongSetting(stack, MatrixProfileWarpScriptExtension.DEFAULT_VALUE_MP_PROFILE_MAXSIZE,
+        MatrixProfileWarpScriptExtension.CONFIG_MP_PROFILE_MAXSIZE, MatrixProfileWarpScriptExtension.CAPNAME_MP_PROFILE_MAXSIZE);
+
+    // number of threads used for the traversal
+    request.parallelism = MatrixProfileWarpScriptExtension.getParallelism(stack);
+
+    // neighbors held with knn, checked for each GTS
+    request.knnMaxsize = MatrixProfileWarpScriptExtension.getLongSetting(stack, MatrixProfileWarpScriptExtension.DEFAULT_VALUE_MP_PROFILE_KNN_MAXSIZE,
+        MatrixProfileWarpScriptExtension.CONFIG_MP_PROFILE_KNN_MAXSIZE, MatrixProfileWarpScriptExtension.CAPNAME_MP_PROFILE_KNN_MAXSIZE);
+
+    if (input instanceof GeoTimeSerie) {
+      stack.push(profile(stack, (GeoTimeSerie) input, request));
+      return stack;
+    }
 
-    // number of vectors
-    int p = gts.size() - (int) k + 1;
+    if (!(input instanceof List)) {
+      throw new WarpScriptException(getName() + " expects parameter " + GTS + " to be a GTS or a LIST of GTS.");
+    }
 
     //
-    // Precompute Means and Std of each vectors
+    // Batch: the GTS are processed concurrently on the shared executor of the extension, one thread each.
+    // A custom macro runs on the stack, so it keeps the batch sequential on the calling thread.
     //
 
-    double[] means = null;
-    double[] stds = null;
+    final List<GeoTimeSerie> batch = new ArrayList<GeoTimeSerie>(((List) input).size());
+    for (Object item: (List) input) {
+      if (!(item instanceof GeoTimeSerie)) {
+        throw new WarpScriptException(getName() + " expects parameter " + GTS + " to be a GTS or a LIST of GTS.");
+      }
+      // sorted here as the same GTS may appear several times in the batch
+      GTSHelper.sort((GeoTimeSerie) item);
+      batch.add((GeoTimeSerie) item);
+    }
 
-    if (null == distance) {
-      means = new double[p];
-      stds = new double[p];
+    long concurrency = MatrixProfileWarpScriptExtension.getLongSetting(stack, MatrixProfileWarpScriptExtension.DEFAULT_VALUE_MP_BATCH_CONCURRENCY,
+        MatrixProfileWarpScriptExtension.CONFIG_MP_BATCH_CONCURRENCY, MatrixProfileWarpScriptExtension.CAPNAME_MP_BATCH_CONCURRENCY);
 
-      for (int i = 0; i < p; i++) {
+    if (null != distance || batch.size() < 2) {
+      concurrency = 1L;
+    } else if (concurrency > 1L) {
+      request.parallelism = 1;
+    }
 
-        // standard
-        BigDecimal sum = BigDecimal.ZERO;
-        BigDecimal sumsq = BigDecimal.ZERO;
+    final WarpScriptStack caller = stack;
+    List<Object> results = Batch.run(batch.size(), (int) Math.min(Integer.MAX_VALUE, concurrency), new Batch.Task<Object>() {
+      @Override
+      public Object run(int index) throws WarpScriptException {
+        return profile(caller, batch.get(index), request);
+      }
+    });
 
-        // todo: this part can be optimised using running stats computation formulas
+    stack.push(new ArrayList<Object>(results));
 
-        for (int j = i; j < i + k; j++) {
-          BigDecimal bd;
-          bd = BigDecimal.valueOf(((Number) GTSHelper.valueAtIndex(gts, j)).doubleValue());
-          sum = sum.add(BigDecimal.valueOf(((Number) GTSHelper.valueAtIndex(gts, j)).doubleValue()));
-          sumsq = sumsq.add(bd.multiply(bd));
-        }
+    return stack;
+  }
+
+  /**
+   * Parameters of a profile computation, shared by the GTS of a batch
+   */
+  private static class Request {
+    long k;
+    int exclusionRadius;
+    WarpScriptStack.Macro distance;
+    boolean robust;
+    Direction direction;
+    boolean allDirections;
+    long batchSize;
+    Long knn;
+    Precision precision;
+    DistanceKernel.Type distanceType;
+    Double fraction;
+    Long timeBudget;
+    Long seed;
+    long maxsize;
+    long knnMaxsize;
+    int parallelism;
+    boolean partial;
+    Watchdog watchdog;
+  }
+
+  /**
+   * Profile of a single GTS: a GTS, or a LIST of GTS with knn or all directions
+   *
+   * @param stack the stack on which a custom macro is run
+   */
+  private Object profile(WarpScriptStack stack, GeoTimeSerie gts, Request r) throws WarpScriptException {
+
+    long k = r.k;
+    int exclusionRadius = r.exclusionRadius;
+    WarpScriptStack.Macro distance = r.distance;
+    boolean robust = r.robust;
+    Direction direction = r.direction;
+    Long knn = r.knn;
+    Precision precision = r.precision;
+    DistanceKernel.Type distanceType = r.distanceType;
+    Double fraction = r.fraction;
+    Long timeBudget = r.timeBudget;
+    int parallelism = r.parallelism;
+
+    FunctionStats.Call call = FunctionStats.current(stack);
+    long mark = System.nanoTime();
+
+    if (TYPE.DOUBLE != gts.getType()) {
+      throw new WarpScriptException(getName() + " can only be applied to GTS with values of type DOUBLE.");
+    }
+
+    // missing buckets are masked, see StagedSeries
+    if (!GTSHelper.isBucketized(gts)) {
+      throw new WarpScriptException(getName() + " can only be applied to a GTS that is bucketized.");
+    }
+
+    int bucketcount = GTSHelper.getBucketCount(gts);
+
+    if (k >= bucketcount) {
+      throw new WarpScriptException(getName() + " requires the subsequence length to be lower than the bucketcount.");
+    }
+
+    if (null != knn && (long) (bucketcount - k + 1) * knn > Integer.MAX_VALUE) {
+      throw new WarpScriptException(getName() + " expects parameter " + KNN + " to be lower than " + (Integer.MAX_VALUE / (bucketcount - k + 1)) + ".");
+    }
 
-        BigDecimal bdk = BigDecimal.valueOf(k);
-        means[i] = sum.divide(bdk, BigDecimal.ROUND_HALF_UP).doubleValue();
-        double variance = sumsq.divide(bdk, BigDecimal.ROUND_HALF_UP).subtract(sum.multiply(sum).divide(bdk.multiply(bdk), BigDecimal.ROUND_HALF_UP)).doubleValue();
-        stds[i] = Math.sqrt(variance);
+    if (bucketcount > r.maxsize) {
+      throw new WarpScriptException("Max size limit for " + getName() + " reached. Consider lower the bucketcount. To raise this limit, use a capable token or contact an administrator.");
+    }
+
+    // each thread of the traversal keeps knn neighbors per vector, a custom macro being applied by a single one
+    if (null != knn) {
+      int vectors = bucketcount - (int) k + 1;
+      long heaps = null != distance ? 1L : Math.max(1L, StompEngine.workers(exclusionRadius, vectors, parallelism));
+      if ((long) vectors * knn * heaps > r.knnMaxsize) {
+        throw new WarpScriptException("Max size limit for " + getName() + " with " + KNN + " reached. Consider lower the bucketcount or " + KNN + ". To raise this limit, use a capable token or contact an administrator.");
       }
     }
 
+    // sorting and staging of the values
+    StagedSeries staged = StagedSeries.of(gts);
+    double[] values = staged.values();
+
+    // a custom macro receives the NaN values of a filled GTS as they are, but can not be applied across missing buckets
+    if (null != distance && !staged.isFilled()) {
+      throw new WarpScriptException(getName() + " can only apply a custom macro to a GTS that is bucketized and filled.");
+    }
+
+    // number of vectors
+    int p = bucketcount - (int) k + 1;
+
+    call.series(values.length);
+
+    //
+    // Lookup in the profile cache, if enabled. Random, knn and custom macro profiles are not cached, nor the profiles
+    // of a GTS with missing buckets, whose placeholders are not part of the key.
+    //
+
+    ProfileCache cache = MatrixProfileWarpScriptExtension.getProfileCache();
+    ProfileCache.Key cacheKey = null;
+    ProfileCache.Entry cached = null;
+
+    if (null != cache && null == distance && Precision.DOUBLE == precision && null == fraction && null == timeBudget && null == knn && !r.allDirections && !staged.hasGaps()) {
+      cacheKey = new ProfileCache.Key(staged, (int) k, exclusionRadius, direction, robust, distanceType);
+      cached = cache.get(cacheKey);
+    }
+
+    //
+    // Precompute Means and Std of each vectors
+    //
+
+    SlidingStats stats = null;
+    DistanceKernel kernel = null;
+
+    if (null == distance && null == cached && Precision.DOUBLE == precision) {
+      stats = staged.stats((int) k);
+      kernel = new DistanceKernel(distanceType, values, stats, values, stats);
+    }
+
     //
     // Matrix profile
     // We compute it by traversing each diagonal of the upper triangle
@@ -253,25 +494,8 @@ public class PROFILE extends NamedWarpScriptFunction implements WarpScriptStackF
     long lastbucket = GTSHelper.getLastBucket(gts) - bucketspan * (k - 1);
     GeoTimeSerie res = new GeoTimeSerie(lastbucket, p, bucketspan, p);
 
-    // data
-    long[] ticks = new long[p];
-    double[] rowMinValue = new double[p];
-    long[] rowMinIndex = new long[p];
-    for (int i = 0; i < p; i++) {
-      rowMinValue[i] = Double.MAX_VALUE;
-      ticks[i] = lastbucket - (p - 1 - i) * bucketspan;
-    }
-
-    // optional data (robust case)
-    double[] rowMin2Value = null;
-    long[] rowMin2Index = null;
-    if (robust) {
-      rowMin2Value = new double[p];
-      rowMin2Index = new long[p];
-      for (int i = 0; i < p; i++) {
-        rowMin2Value[i] = Double.MAX_VALUE;
-      }
-    }
+    // ticks
+    long[] ticks = staged.ticks(p);
 
     // meta
     res.setMetadata(gts.getMetadata());
@@ -284,6 +508,10 @@ public class PROFILE extends NamedWarpScriptFunction implements WarpScriptStackF
       res.getMetadata().getAttributes().put(".custom.macro", "true");
     }
 
+    if (DistanceKernel.Type.ZEUCLIDEAN != distanceType) {
+      res.getMetadata().getAttributes().put("." + DISTANCE, distanceType.name());
+    }
+
     if (robust) {
       res.getMetadata().getAttributes().put("." + ROBUSTNESS, "true");
     }
@@ -292,80 +520,162 @@ public class PROFILE extends NamedWarpScriptFunction implements WarpScriptStackF
       res.getMetadata().getAttributes().put("." + DIRECTION, direction.name());
     }
 
-    // loop
-    int firstDiagNotInExclusionZone = exclusionRadius;
-    for (int t = firstDiagNotInExclusionZone; t < p; t++) {
+    if (null != cached) {
+      mark = call.phase(FunctionStats.Phase.STATS, mark);
+      StagedSeries.reset(res, ticks, cached.indices, cached.values, p);
+      call.phase(FunctionStats.Phase.OUTPUT, mark);
+      return res;
+    }
+
+    if (Precision.FLOAT == precision) {
+      res.getMetadata().getAttributes().put("." + PRECISION, precision.name());
 
-      // dot product variable use for one diagonal traversal
-      double dot = 0.0D;
+      CompactStompEngine engine = new CompactStompEngine(values, (int) k, exclusionRadius, direction, robust);
+      if (staged.hasGaps()) {
+        engine.mask(staged);
+      }
+      engine.setWatchdog(r.watchdog);
+      mark = call.phase(FunctionStats.Phase.STATS, mark);
+
+      if (r.allDirections) {
+        CompactStompEngine.RowMins[] sides = engine.runDirections(parallelism);
+        checkCoverage(res, r, engine.getCoverage());
+        call.cells(Math.round(engine.getCoverage() * StompEngine.cells(exclusionRadius, p)));
+        mark = call.phase(FunctionStats.Phase.TRAVERSAL, mark);
+
+        long[][] indices = new long[sides.length][];
+        double[][] minima = new double[sides.length][];
+        for (int m = 0; m < sides.length; m++) {
+          indices[m] = CompactStompEngine.RowMins.widen(robust ? sides[m].index2 : sides[m].index);
+          minima[m] = CompactStompEngine.RowMins.widen(robust ? sides[m].value2 : sides[m].value);
+        }
 
-      for (int j = t; j < p; j++) {
+        List<Object> results = directions(res, lastbucket, bucketspan, staged, p, indices, minima);
+        call.phase(FunctionStats.Phase.OUTPUT, mark);
+        return results;
+      }
 
-        // distance
-        double d;
+      CompactStompEngine.RowMins mins = engine.run(parallelism);
+      checkCoverage(res, r, engine.getCoverage());
+      call.cells(Math.round(engine.getCoverage() * StompEngine.cells(exclusionRadius, p)));
+      mark = call.phase(FunctionStats.Phase.TRAVERSAL, mark);
+      StagedSeries.reset(res, ticks, CompactStompEngine.RowMins.widen(robust ? mins.index2 : mins.index),
+          CompactStompEngine.RowMins.widen(robust ? mins.value2 : mins.value), p);
+      call.phase(FunctionStats.Phase.OUTPUT, mark);
 
-        // working on row i and col j, both are incremented each iteration
-        int i = j - t;
+      return res;
+    }
 
-        if (null == distance) {
-          // first row of the matrix: we compute dot product fully
-          if (0 == i) {
-            for (int l = 0; l < k; l++) {
-              dot += getValue(gts, i + l) * getValue(gts, j + l);
-            }
+    StompEngine engine = new StompEngine(values, (int) k, exclusionRadius, stats, kernel, direction, robust);
+    engine.setWatchdog(r.watchdog);
+    StompEngine.RowMins mins;
 
-          } else {
-            // other rows: we use previous diagonal dot product
-            dot -= getValue(gts, i - 1) * getValue(gts, j - 1);
-            dot += getValue(gts, i + (int) k - 1) * getValue(gts, j + (int) k - 1);
-          }
+    MacroDistance macroDistance = null;
+    if (null != distance) {
+      macroDistance = new MacroDistance(stack, distance, gts, staged, gts, staged, (int) k, (int) r.batchSize);
+    }
 
-          // distance
-          d = 1.0D - (dot - k * means[i] * means[j]) / (k * stds[i] * stds[j]);
-          d = 2.0D * k * d;
-          d = Math.sqrt(d);
+    mark = call.phase(FunctionStats.Phase.STATS, mark);
+
+    if (null != knn) {
+      // one profile per rank of neighbor, from a single traversal
+      StompEngine.RowMins[] ranks = engine.runKnn(macroDistance, knn.intValue(), parallelism);
+      checkCoverage(res, r, engine.getCoverage());
+      call.cells(Math.round(engine.getCoverage() * StompEngine.cells(exclusionRadius, p)));
+      mark = call.phase(FunctionStats.Phase.TRAVERSAL, mark);
+      List<Object> results = new ArrayList<Object>(ranks.length);
+
+      for (int m = 0; m < ranks.length; m++) {
+        GeoTimeSerie rank = new GeoTimeSerie(lastbucket, p, bucketspan, p);
+        rank.setMetadata(res.getMetadata());
+        rank.getMetadata().getAttributes().put("." + KNN_RANK, String.valueOf(m + 1));
+        StagedSeries.reset(rank, 0 == m ? ticks : staged.ticks(p), ranks[m].index, ranks[m].value, p);
+        results.add(rank);
+      }
 
-        } else {
-          stack.push(ATBUCKETINDEX.subsequence(gts, (int) k ,i));
-          stack.push(ATBUCKETINDEX.subsequence(gts, (int) k ,j));
-          stack.exec(distance);
+      call.phase(FunctionStats.Phase.OUTPUT, mark);
+      return results;
+    }
 
-          d = ((Number) stack.pop()).doubleValue();
-        }
+    if (r.allDirections) {
+      // left and right profiles from a single traversal, the two-sided one being merged from them
+      StompEngine.RowMins[] sides = engine.runDirections(macroDistance, parallelism);
+      checkCoverage(res, r, engine.getCoverage());
+      call.cells(Math.round(engine.getCoverage() * StompEngine.cells(exclusionRadius, p)));
+      mark = call.phase(FunctionStats.Phase.TRAVERSAL, mark);
+
+      long[][] indices = new long[sides.length][];
+      double[][] minima = new double[sides.length][];
+      for (int m = 0; m < sides.length; m++) {
+        indices[m] = robust ? sides[m].index2 : sides[m].index;
+        minima[m] = robust ? sides[m].value2 : sides[m].value;
+      }
 
-        // compare and set
-        // in case of tie: closest index since we see lower diagonal first
-        if (direction.LEFT != direction) {
-          if (d < rowMinValue[i]) {
-            rowMinValue[i] = d;
-            rowMinIndex[i] = j;
-          } else if (robust && d < rowMin2Value[i]) {
-            rowMin2Value[i] = d;
-            rowMin2Index[i] = j;
-          }
-        }
+      List<Object> results = directions(res, lastbucket, bucketspan, staged, p, indices, minima);
+      call.phase(FunctionStats.Phase.OUTPUT, mark);
+      return results;
+    }
 
-        // symmetrical
-        if (direction.RIGHT != direction) {
-          if (d < rowMinValue[j]) {
-            rowMinValue[j] = d;
-            rowMinIndex[j] = i;
-          } else if (robust && d < rowMin2Value[j]) {
-            rowMin2Value[j] = d;
-            rowMin2Index[j] = i;
-          }
-        }
+    if (null != fraction || null != timeBudget) {
+      // anytime mode, diagonals in random order
+      Random random = null == r.seed ? new Random() : new Random(r.seed);
+      mins = engine.runAnytime(macroDistance, null == fraction ? 1.0D : fraction, null == timeBudget ? 0L : timeBudget * 1000000L, random);
+      res.getMetadata().getAttributes().put("." + COVERAGE, String.valueOf(engine.getCoverage()));
+
+    } else {
+      // loop, possibly split across several threads
+      mins = engine.run(macroDistance, parallelism);
+    }
+
+    checkCoverage(res, r, engine.getCoverage());
+
+    call.cells(Math.round(engine.getCoverage() * StompEngine.cells(exclusionRadius, p)));
+    mark = call.phase(FunctionStats.Phase.TRAVERSAL, mark);
+
+    StagedSeries.reset(res, ticks, robust ? mins.index2 : mins.index, robust ? mins.value2 : mins.value, p);
+
+    // a partial profile is not cached
+    if (null != cacheKey && !r.watchdog.isExpired()) {
+      cache.put(cacheKey, robust ? mins.value2 : mins.value, robust ? mins.index2 : mins.index, p);
+    }
+
+    call.phase(FunctionStats.Phase.OUTPUT, mark);
+    return res;
+  }
+
+  /**
+   * LIST of the left, right and two-sided profiles, with the metadata of res and the minima of runDirections
+   */
+  private List<Object> directions(GeoTimeSerie res, long lastbucket, long bucketspan, StagedSeries staged, int p, long[][] indices, double[][] minima) throws WarpScriptException {
+    Direction[] directions = { Direction.LEFT, Direction.RIGHT, Direction.BOTH };
+    List<Object> results = new ArrayList<Object>(directions.length);
+
+    for (int m = 0; m < directions.length; m++) {
+      GeoTimeSerie profile = new GeoTimeSerie(lastbucket, p, bucketspan, p);
+      profile.setMetadata(res.getMetadata());
+      if (Direction.BOTH != directions[m]) {
+        profile.getMetadata().getAttributes().put("." + DIRECTION, directions[m].name());
       }
+      StagedSeries.reset(profile, staged.ticks(p), indices[m], minima[m], p);
+      results.add(profile);
     }
 
-    try {
-      res.reset(ticks, null, robust ? rowMin2Index : rowMinIndex, robust ? rowMin2Value : rowMinValue, p);
-    } catch (IOException e) {
-      throw new WarpScriptException(e);
+    return results;
+  }
+
+  /**
+   * Fail if the time limit was reached during the traversal, unless a partial profile was asked for, in which case the
+   * profile is annotated with the fraction of the distance matrix that was evaluated
+   */
+  private void checkCoverage(GeoTimeSerie res, Request r, double coverage) throws WarpScriptException {
+    if (!r.watchdog.isExpired()) {
+      return;
     }
 
-    stack.push(res);
+    if (!r.partial) {
+      throw new WarpScriptException(getName() + " reached its time limit of " + r.watchdog.getTimeout() + " ms, with " + coverage + " of the distance matrix evaluated. Set parameter " + PARTIAL + " to output the partial profile.");
+    }
 
-    return stack;
+    res.getMetadata().getAttributes().put("." + COVERAGE, String.valueOf(coverage));
   }
 }
@@ -0,0 +1,53 @@
+//
+//   Copyright 2026  SenX S.A.S.
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+//
+
+package io.warp10.ext.matrixprofile;
+
+import io.warp10.script.NamedWarpScriptFunction;
+import io.warp10.script.WarpScriptException;
+import io.warp10.script.WarpScriptStack;
+import io.warp10.script.WarpScriptStackFunction;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Push a MAP with the counters and occupancy of the profile cache of MP.PROFILE
+ */
+public class PROFILECACHE extends NamedWarpScriptFunction implements WarpScriptStackFunction {
+
+  public static final String ENABLED = "enabled";
+
+  public PROFILECACHE(String name) {
+    super(name);
+  }
+
+  @Override
+  public Object apply(WarpScriptStack stack) throws WarpScriptException {
+
+    ProfileCache cache = MatrixProfileWarpScriptExtension.getProfileCache();
+
+    Map<String,Object> stats = new LinkedHashMap<String,Object>();
+    stats.put(ENABLED, null != cache);
+    if (null != cache) {
+      stats.putAll(cache.stats());
+    }
+
+    stack.push(stats);
+
+    return stack;
+  }
+}
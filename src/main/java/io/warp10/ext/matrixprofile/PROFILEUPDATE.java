@@ -0,0 +1,191 @@
+//
+//   Copyright 2026  SenX S.A.S.
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+//
+
+package io.warp10.ext.matrixprofile;
+
+import io.warp10.continuum.gts.GeoTimeSerie.TYPE;
+import io.warp10.continuum.gts.GeoTimeSerie;
+import io.warp10.continuum.gts.GTSHelper;
+import io.warp10.script.NamedWarpScriptFunction;
+import io.warp10.script.WarpScriptException;
+import io.warp10.script.WarpScriptStack;
+import io.warp10.script.WarpScriptStackFunction;
+
+import java.util.Map;
+
+/**
+ * Update a matrix profile computed by MP.PROFILE (or a previous update) with the buckets appended to its GTS (STAMPI)
+ * The profile GTS is the only state: its attributes give the subsequence length, exclusion radius, direction and distance,
+ * and the kernel states of its last subsequence are recomputed once by FFT.
+ */
+public class PROFILEUPDATE extends NamedWarpScriptFunction implements WarpScriptStackFunction {
+
+  public PROFILEUPDATE(String name) {
+    super(name);
+  }
+
+  @Override
+  public Object apply(WarpScriptStack stack) throws WarpScriptException {
+
+    Object o = stack.pop();
+
+    if (!(o instanceof GeoTimeSerie)) {
+      throw new WarpScriptException(getName() + " expects a GTS as second parameter.");
+    }
+
+    GeoTimeSerie gts = (GeoTimeSerie) o;
+
+    o = stack.pop();
+
+    if (!(o instanceof GeoTimeSerie)) {
+      throw new WarpScriptException(getName() + " expects a matrix profile GTS as first parameter.");
+    }
+
+    GeoTimeSerie profile = (GeoTimeSerie) o;
+
+    //
+    // Profile parameters, from its attributes
+    //
+
+    Map<String,String> attributes = profile.getMetadata().getAttributes();
+
+    if (null == attributes.get("." + PROFILE.SUBSEQUENCE_LENGTH) || null == attributes.get("." + PROFILE.EXCLUSION_RADIUS)) {
+      throw new WarpScriptException(getName() + " expects a matrix profile produced by MP.PROFILE.");
+    }
+
+    int k = Integer.parseInt(attributes.get("." + PROFILE.SUBSEQUENCE_LENGTH));
+    int exclusionRadius = Integer.parseInt(attributes.get("." + PROFILE.EXCLUSION_RADIUS));
+
+    PROFILE.Direction direction = PROFILE.Direction.BOTH;
+    if (null != attributes.get("." + PROFILE.DIRECTION)) {
+      direction = PROFILE.Direction.valueOf(attributes.get("." + PROFILE.DIRECTION));
+    }
+
+    DistanceKernel.Type distanceType = DistanceKernel.Type.ZEUCLIDEAN;
+    if (null != attributes.get("." + PROFILE.DISTANCE)) {
+      distanceType = PROFILE.distanceType(getName(), attributes.get("." + PROFILE.DISTANCE));
+    }
+
+    if (null != attributes.get(".custom.macro")) {
+      throw new WarpScriptException(getName() + " can not update a matrix profile computed with a custom macro.");
+    }
+
+    if (null != attributes.get("." + PANPROFILE.NORMALIZED)) {
+      throw new WarpScriptException(getName() + " can not update a normalized matrix profile.");
+    }
+
+    if (null != attributes.get("." + PROFILE.ROBUSTNESS)) {
+      throw new WarpScriptException(getName() + " can not update a robust matrix profile, since it does not hold the first minima.");
+    }
+
+    if (null != attributes.get("." + PROFILE.KNN_RANK) && !"1".equals(attributes.get("." + PROFILE.KNN_RANK))) {
+      throw new WarpScriptException(getName() + " can only update the first rank of a knn matrix profile.");
+    }
+
+    //
+    // Sanity checks
+    //
+
+    if (TYPE.DOUBLE != gts.getType() || TYPE.DOUBLE != profile.getType()) {
+      throw new WarpScriptException(getName() + " can only be applied to GTS with values of type DOUBLE.");
+    }
+
+    if (!GTSHelper.isBucketized(gts)) {
+      throw new WarpScriptException(getName() + " can only be applied to a GTS that is bucketized and filled.");
+    }
+
+    if (gts.size() != GTSHelper.getBucketCount(gts)) {
+      throw new WarpScriptException(getName() + " can only be applied to a GTS that is bucketized and filled.");
+    }
+
+    if (k >= gts.size()) {
+      throw new WarpScriptException(getName() + " requires the subsequence length to be lower than the bucketcount.");
+    }
+
+    // maxsize check
+    long maxsize = MatrixProfileWarpScriptExtension.getLongSetting(stack, MatrixProfileWarpScriptExtension.DEFAULT_VALUE_MP_PROFILE_MAXSIZE,
+        MatrixProfileWarpScriptExtension.CONFIG_MP_PROFILE_MAXSIZE, MatrixProfileWarpScriptExtension.CAPNAME_MP_PROFILE_MAXSIZE);
+
+    if (gts.size() > maxsize) {
+      throw new WarpScriptException("Max size limit for " + getName() + " reached. Consider lower the bucketcount. To raise this limit, use a capable token or contact an administrator.");
+    }
+
+    FunctionStats.Call call = FunctionStats.current(stack);
+    long mark = System.nanoTime();
+
+    // sorting and staging of the values
+    StagedSeries staged = StagedSeries.of(gts);
+    double[] values = staged.values();
+    GTSHelper.sort(profile);
+
+    // the rows of the last subsequence are computed from the means, which a masked subsequence would turn into NaN
+    if (staged.hasGaps()) {
+      throw new WarpScriptException(getName() + " can only be applied to a GTS without NaN values.");
+    }
+
+    int pOld = profile.size();
+    int p = values.length - k + 1;
+
+    call.series(values.length);
+
+    // the profile must cover a prefix of the subsequences of the GTS
+    if (0 == pOld || pOld > p || GTSHelper.getBucketSpan(gts) != GTSHelper.getBucketSpan(profile)
+        || GTSHelper.tickAtIndex(profile, 0) != staged.tickAtIndex(0) || GTSHelper.tickAtIndex(profile, pOld - 1) != staged.tickAtIndex(pOld - 1)) {
+      throw new WarpScriptException(getName() + " expects the GTS to start at the first tick of the profile and to extend it.");
+    }
+
+    //
+    // Update
+    //
+
+    double[] minValue = new double[p];
+    long[] minIndex = new long[p];
+
+    for (int i = 0; i < pOld; i++) {
+      minValue[i] = ((Number) GTSHelper.valueAtIndex(profile, i)).doubleValue();
+      minIndex[i] = GTSHelper.elevationAtIndex(profile, i);
+    }
+
+    SlidingStats stats = SlidingStats.compute(values, k);
+    DistanceKernel kernel = new DistanceKernel(distanceType, values, stats, values, stats);
+    StampiEngine engine = new StampiEngine(values, k, exclusionRadius, stats, kernel, direction);
+    mark = call.phase(FunctionStats.Phase.STATS, mark);
+
+    engine.append(minValue, minIndex, pOld);
+
+    // each appended subsequence is compared with the older ones out of the exclusion zone
+    for (int i = pOld; i < p; i++) {
+      call.cells(Math.max(0, i - exclusionRadius + 1));
+    }
+    mark = call.phase(FunctionStats.Phase.TRAVERSAL, mark);
+
+    // initialization
+    long bucketspan = staged.getBucketSpan();
+    long lastbucket = staged.getLastBucket() - bucketspan * (k - 1);
+    GeoTimeSerie res = new GeoTimeSerie(lastbucket, p, bucketspan, p);
+
+    // meta
+    res.setMetadata(profile.getMetadata());
+    res.getMetadata().getAttributes().put(".profile.function", getName());
+
+    StagedSeries.reset(res, staged.ticks(p), minIndex, minValue, p);
+    call.phase(FunctionStats.Phase.OUTPUT, mark);
+
+    stack.push(res);
+
+    return stack;
+  }
+}
@@ -0,0 +1,173 @@
+//
+//   Copyright 2026  SenX S.A.S.
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+//
+
+package io.warp10.ext.matrixprofile;
+
+import io.warp10.script.WarpScriptException;
+import io.warp10.script.WarpScriptStack;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pan matrix profile (SKIMP): the matrix profiles of a series for a range of subsequence lengths
+ *
+ * The lengths are visited in binary split order (middle length first, then the middles of each half, and so on) so that
+ * an interrupted run still covers the whole range coarsely. The prefix sums of the series are computed once and shared
+ * by the statistics of all the lengths. Workers pick the next length in that order until the time budget is exhausted.
+ * The traversal of each length is bounded by the time budget as well, a length interrupted by it being dropped.
+ */
+public class PanEngine {
+
+  private final double[] values;
+  private final int[] lengths;
+  private final SlidingStats.PrefixSums prefix;
+
+  /**
+   * @param lengths subsequence lengths, in ascending order
+   */
+  public PanEngine(double[] values, int[] lengths) {
+    this.values = values;
+    this.lengths = lengths;
+    this.prefix = new SlidingStats.PrefixSums(values);
+  }
+
+  /**
+   * Indices of n ordered items in binary split order
+   */
+  static int[] binarySplitOrder(int n) {
+    int[] order = new int[n];
+    int count = 0;
+
+    // queue of [lo, hi] ranges, breadth first
+    int[] lo = new int[n];
+    int[] hi = new int[n];
+    int head = 0;
+    int tail = 0;
+
+    if (n > 0) {
+      lo[tail] = 0;
+      hi[tail++] = n - 1;
+    }
+
+    while (head < tail) {
+      int l = lo[head];
+      int h = hi[head++];
+      int mid = (l + h) >>> 1;
+      order[count++] = mid;
+
+      if (l < mid) {
+        lo[tail] = l;
+        hi[tail++] = mid - 1;
+      }
+      if (mid < h) {
+        lo[tail] = mid + 1;
+        hi[tail++] = h;
+      }
+    }
+
+    return order;
+  }
+
+  /**
+   * Compute the profiles, normalized by 2 * sqrt(k) so that they lie in [0, 1] whatever the length.
+   * The cell of a length that could not be computed within the time budget is null.
+   *
+   * @param stack the stack whose signals are handled during the traversals, null for none
+   * @param deadline System.nanoTime() after which the traversals stop, 0 for none
+   */
+  public StompEngine.RowMins[] run(final WarpScriptStack stack, final long deadline, int parallelism) throws WarpScriptException {
+
+    final StompEngine.RowMins[] profiles = new StompEngine.RowMins[lengths.length];
+    final int[] order = binarySplitOrder(lengths.length);
+    final AtomicInteger next = new AtomicInteger();
+
+    int workers = Math.min(parallelism, lengths.length);
+
+    Callable<Void> worker = new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        int n;
+        while ((n = next.getAndIncrement()) < order.length) {
+          if (0L != deadline && System.nanoTime() - deadline > 0L) {
+            return null;
+          }
+          profiles[order[n]] = profile(lengths[order[n]], Watchdog.until(stack, deadline));
+        }
+        return null;
+      }
+    };
+
+    if (workers < 2) {
+      try {
+        worker.call();
+      } catch (WarpScriptException wse) {
+        throw wse;
+      } catch (Exception e) {
+        throw new WarpScriptException("Error while computing the pan matrix profile.", e);
+      }
+      return profiles;
+    }
+
+    ForkJoinPool pool = new ForkJoinPool(workers);
+
+    try {
+      List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(workers);
+      for (int i = 0; i < workers; i++) {
+        tasks.add(worker);
+      }
+      StompEngine.collect(pool.invokeAll(tasks));
+    } finally {
+      pool.shutdown();
+    }
+
+    return profiles;
+  }
+
+  /**
+   * Normalized profile for subsequence length k, with the default exclusion radius, null if the watchdog expired
+   * before its traversal ended
+   */
+  private StompEngine.RowMins profile(int k, Watchdog watchdog) throws WarpScriptException {
+    SlidingStats stats = SlidingStats.compute(prefix, k);
+    DistanceKernel kernel = new DistanceKernel(DistanceKernel.Type.ZEUCLIDEAN, values, stats, values, stats);
+    int exclusionRadius = exclusionRadius(k);
+
+    StompEngine engine = new StompEngine(values, k, exclusionRadius, stats, kernel, PROFILE.Direction.BOTH, false);
+    engine.setWatchdog(watchdog);
+    StompEngine.RowMins mins = engine.run(null, 1);
+
+    if (engine.getCoverage() < 1.0D) {
+      return null;
+    }
+
+    double norm = 2.0D * Math.sqrt(k);
+    for (int i = 0; i < mins.value.length; i++) {
+      if (Double.MAX_VALUE != mins.value[i]) {
+        mins.value[i] /= norm;
+      }
+    }
+
+    return mins;
+  }
+
+  static int exclusionRadius(int k) {
+    return ((Double) Math.ceil(k * 0.25)).intValue();
+  }
+}
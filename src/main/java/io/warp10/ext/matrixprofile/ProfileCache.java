@@ -0,0 +1,214 @@
+//
+//   Copyright 2026  SenX S.A.S.
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+//
+
+package io.warp10.ext.matrixprofile;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide LRU cache of matrix profiles, bounded by the total size in bytes of the cached profiles
+ *
+ * A profile is keyed by a fingerprint of the content of its input series (two 64-bit hashes of the values, plus the size,
+ * last bucket and bucket span) and by the parameters of the computation. Only the profile values and indices are cached,
+ * so the metadata of the result is always the one of the caller's GTS. Arrays are copied in and out of the cache.
+ */
+public class ProfileCache {
+
+  // estimated overhead of an entry: key, map node and array headers
+  private static final long ENTRY_OVERHEAD = 160L;
+
+  private final long maxSize;
+  private final long maxEntrySize;
+
+  // access ordered, the eldest entry is the least recently used one
+  private final LinkedHashMap<Key,Entry> entries = new LinkedHashMap<Key,Entry>(16, 0.75F, true);
+  private long size = 0L;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+
+  /**
+   * Parameters of a profile computation on a given series content
+   */
+  public static final class Key {
+    private final long hash1;
+    private final long hash2;
+    private final int size;
+    private final long lastbucket;
+    private final long bucketspan;
+    private final int k;
+    private final int exclusionRadius;
+    private final PROFILE.Direction direction;
+    private final boolean robust;
+    private final DistanceKernel.Type distance;
+
+    public Key(StagedSeries staged, int k, int exclusionRadius, PROFILE.Direction direction, boolean robust, DistanceKernel.Type distance) {
+      double[] values = staged.values();
+
+      long h1 = 0x9E3779B97F4A7C15L;
+      long h2 = 0xC2B2AE3D27D4EB4FL;
+      for (int i = 0; i < values.length; i++) {
+        long bits = Double.doubleToLongBits(values[i]);
+        h1 = Long.rotateLeft(h1 ^ bits, 31) * 0x87C37B91114253D5L;
+        h2 = Long.rotateLeft(h2 + bits, 27) * 0x4CF5AD432745937FL + i;
+      }
+
+      this.hash1 = mix(h1 ^ values.length);
+      this.hash2 = mix(h2 ^ values.length);
+      this.size = values.length;
+      this.lastbucket = staged.getLastBucket();
+      this.bucketspan = staged.getBucketSpan();
+      this.k = k;
+      this.exclusionRadius = exclusionRadius;
+      this.direction = direction;
+      this.robust = robust;
+      this.distance = distance;
+    }
+
+    /**
+     * Finalization step of MurmurHash3
+     */
+    private static long mix(long h) {
+      h ^= h >>> 33;
+      h *= 0xFF51AFD7ED558CCDL;
+      h ^= h >>> 33;
+      h *= 0xC4CEB9FE1A85EC53L;
+      h ^= h >>> 33;
+      return h;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return hash1 == other.hash1 && hash2 == other.hash2 && size == other.size && lastbucket == other.lastbucket
+          && bucketspan == other.bucketspan && k == other.k && exclusionRadius == other.exclusionRadius
+          && direction == other.direction && robust == other.robust && distance == other.distance;
+    }
+
+    @Override
+    public int hashCode() {
+      return (int) (hash1 ^ (hash1 >>> 32)) * 31 + k * 17 + exclusionRadius;
+    }
+  }
+
+  /**
+   * Cached profile
+   */
+  public static final class Entry {
+    public final double[] values;
+    public final long[] indices;
+
+    private Entry(double[] values, long[] indices) {
+      this.values = values;
+      this.indices = indices;
+    }
+
+    private Entry copy() {
+      return new Entry(values.clone(), indices.clone());
+    }
+
+    private long bytes() {
+      return ENTRY_OVERHEAD + 8L * values.length + 8L * indices.length;
+    }
+  }
+
+  /**
+   * @param maxSize maximum total size of the cached profiles in bytes
+   * @param maxEntrySize maximum size of a single cached profile in bytes
+   */
+  public ProfileCache(long maxSize, long maxEntrySize) {
+    this.maxSize = maxSize;
+    this.maxEntrySize = Math.min(maxSize, maxEntrySize);
+  }
+
+  /**
+   * Copy of the cached profile for key, or null
+   */
+  public Entry get(Key key) {
+    Entry entry;
+    synchronized (this) {
+      entry = entries.get(key);
+    }
+
+    if (null == entry) {
+      misses.incrementAndGet();
+      return null;
+    }
+
+    hits.incrementAndGet();
+    return entry.copy();
+  }
+
+  /**
+   * Cache a copy of a profile, evicting the least recently used ones to make room for it
+   */
+  public void put(Key key, double[] values, long[] indices, int p) {
+    double[] v = new double[p];
+    long[] idx = new long[p];
+    System.arraycopy(values, 0, v, 0, p);
+    System.arraycopy(indices, 0, idx, 0, p);
+    Entry entry = new Entry(v, idx);
+
+    long bytes = entry.bytes();
+    if (bytes > maxEntrySize) {
+      return;
+    }
+
+    synchronized (this) {
+      Entry previous = entries.put(key, entry);
+      if (null != previous) {
+        size -= previous.bytes();
+      }
+      size += bytes;
+
+      Iterator<Map.Entry<Key,Entry>> it = entries.entrySet().iterator();
+      while (size > maxSize && it.hasNext()) {
+        Map.Entry<Key,Entry> eldest = it.next();
+        size -= eldest.getValue().bytes();
+        it.remove();
+        evictions.incrementAndGet();
+      }
+    }
+  }
+
+  public synchronized void clear() {
+    entries.clear();
+    size = 0L;
+  }
+
+  /**
+   * Counters and occupancy of the cache
+   */
+  public Map<String,Object> stats() {
+    Map<String,Object> stats = new LinkedHashMap<String,Object>();
+    stats.put("hits", hits.get());
+    stats.put("misses", misses.get());
+    stats.put("evictions", evictions.get());
+    synchronized (this) {
+      stats.put("entries", (long) entries.size());
+      stats.put("bytes", size);
+    }
+    stats.put("maxsize", maxSize);
+    return stats;
+  }
+}
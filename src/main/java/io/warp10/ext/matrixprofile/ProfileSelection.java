@@ -0,0 +1,190 @@
+//
+//   Copyright 2026  SenX S.A.S.
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+//
+
+package io.warp10.ext.matrixprofile;
+
+import io.warp10.continuum.gts.GeoTimeSerie.TYPE;
+import io.warp10.continuum.gts.GeoTimeSerie;
+import io.warp10.continuum.gts.GTSHelper;
+import io.warp10.script.WarpScriptException;
+
+import java.util.Map;
+
+/**
+ * Selection of the best subsequences of a matrix profile GTS (motifs or discords), with exclusion zones
+ *
+ * The candidates are the count best profile values, picked by a bounded heap in O(p log count). They are accepted
+ * greedily, best first, unless they fall in the exclusion zone of an accepted subsequence. If too many candidates are
+ * rejected, the selection is run again with twice as many candidates.
+ */
+public class ProfileSelection {
+
+  private final GeoTimeSerie profile;
+  private final double[] values;
+  private final long[] neighbors;
+  private final int k;
+  private final int exclusionRadius;
+
+  // whether the neighbors are subsequences of the same GTS, false for an AB join
+  private final boolean selfJoin;
+
+  /**
+   * @param profile profile GTS, sorted by this constructor
+   * @param exclusionRadius exclusion radius, null to read it from the attributes of the profile
+   */
+  public ProfileSelection(String function, GeoTimeSerie profile, Integer exclusionRadius) throws WarpScriptException {
+
+    if (TYPE.DOUBLE != profile.getType() || !profile.hasElevations()) {
+      throw new WarpScriptException(function + " can only be applied to a matrix profile GTS.");
+    }
+
+    Map<String,String> attributes = profile.getMetadata().getAttributes();
+
+    if (null == attributes.get("." + PROFILE.SUBSEQUENCE_LENGTH)) {
+      throw new WarpScriptException(function + " expects a matrix profile GTS with a ." + PROFILE.SUBSEQUENCE_LENGTH + " attribute.");
+    }
+
+    this.k = Integer.parseInt(attributes.get("." + PROFILE.SUBSEQUENCE_LENGTH));
+
+    if (null != exclusionRadius) {
+      this.exclusionRadius = exclusionRadius;
+    } else if (null != attributes.get("." + PROFILE.EXCLUSION_RADIUS)) {
+      this.exclusionRadius = Integer.parseInt(attributes.get("." + PROFILE.EXCLUSION_RADIUS));
+    } else {
+      this.exclusionRadius = ((Double) Math.ceil(k * 0.25)).intValue();
+    }
+
+    if (this.exclusionRadius < 0) {
+      throw new WarpScriptException(function + " exclusion radius can not be negative.");
+    }
+
+    this.selfJoin = !"MP.ABPROFILE".equals(attributes.get(".profile.function"));
+
+    GTSHelper.sort(profile);
+    this.profile = profile;
+    this.values = GTSHelper.getValuesAsDouble(profile);
+    this.neighbors = new long[values.length];
+    for (int i = 0; i < values.length; i++) {
+      neighbors[i] = GTSHelper.elevationAtIndex(profile, i);
+    }
+  }
+
+  public int getSubsequenceLength() {
+    return k;
+  }
+
+  public int getExclusionRadius() {
+    return exclusionRadius;
+  }
+
+  public double value(int index) {
+    return values[index];
+  }
+
+  public long neighbor(int index) {
+    return neighbors[index];
+  }
+
+  public long tick(int index) {
+    return GTSHelper.tickAtIndex(profile, index);
+  }
+
+  public int size() {
+    return values.length;
+  }
+
+  public boolean isSelfJoin() {
+    return selfJoin;
+  }
+
+  /**
+   * Whether index has a neighbor within the profile
+   */
+  private boolean hasNeighbor(int index) {
+    double v = values[index];
+    return !Double.isNaN(v) && !Double.isInfinite(v) && Double.MAX_VALUE != v && neighbors[index] >= 0 && (!selfJoin || neighbors[index] < values.length);
+  }
+
+  /**
+   * Select up to count subsequences, best first
+   *
+   * @param largest whether the best values are the largest ones (discords) or the smallest ones (motifs)
+   * @param pairs whether the neighbor of a subsequence must be out of the exclusion zones too, and excludes its own zone.
+   *              Ignored for an AB join, whose neighbors are subsequences of another GTS.
+   * @return the selected indices
+   */
+  public int[] select(int count, boolean largest, boolean pairs) {
+
+    pairs = pairs && selfJoin;
+
+    int p = values.length;
+    int capacity = Math.max(1, Math.min(count, p));
+
+    while (true) {
+
+      TopK heap = new TopK(capacity, largest);
+      for (int i = 0; i < p; i++) {
+        if (hasNeighbor(i)) {
+          heap.offer(values[i], i);
+        }
+      }
+
+      double[] candidateValues = new double[heap.size()];
+      long[] candidates = new long[heap.size()];
+      int n = heap.drain(candidateValues, candidates);
+
+      boolean[] excluded = new boolean[p];
+      int[] selected = new int[Math.min(count, p)];
+      int size = 0;
+
+      for (int c = 0; c < n && size < count; c++) {
+        int i = (int) candidates[c];
+        int j = (int) neighbors[i];
+
+        if (excluded[i] || (pairs && excluded[j])) {
+          continue;
+        }
+
+        selected[size++] = i;
+        exclude(excluded, i);
+        if (pairs) {
+          exclude(excluded, j);
+        }
+      }
+
+      // done when enough subsequences are selected or when all the candidates were considered
+      if (size == count || n < capacity || capacity == p) {
+        int[] result = new int[size];
+        System.arraycopy(selected, 0, result, 0, size);
+        return result;
+      }
+
+      capacity = (int) Math.min(p, 2L * capacity);
+    }
+  }
+
+  /**
+   * Mark the exclusion zone of index
+   */
+  public void exclude(boolean[] excluded, int index) {
+    int from = Math.max(0, index - exclusionRadius + 1);
+    int to = Math.min(excluded.length - 1, index + exclusionRadius - 1);
+    for (int i = from; i <= to; i++) {
+      excluded[i] = true;
+    }
+    excluded[index] = true;
+  }
+}
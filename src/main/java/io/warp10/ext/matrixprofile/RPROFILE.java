@@ -25,11 +25,11 @@ import io.warp10.script.WarpScriptStack;
 import io.warp10.script.WarpScriptStack.Macro;
 import io.warp10.script.WarpScriptStackFunction;
 
-import java.math.BigDecimal;
 import java.util.Map;
 
 /**
  * Compute a Row of the matrix profile wrt a certain distance macro
+ * In MASS mode, the row is computed by FFT convolution in O(n log n)
  */
 public class RPROFILE extends NamedWarpScriptFunction implements WarpScriptStackFunction {
 
@@ -38,16 +38,15 @@ public class RPROFILE extends NamedWarpScriptFunction implements WarpScriptStack
   public static final String BUCKET_INDEX = "bucket.index";
   public static final String EXCLUSION_RADIUS = PROFILE.EXCLUSION_RADIUS;
   public static final String SIMILARITY_MEASURE_MACRO = PROFILE.SIMILARITY_MEASURE_MACRO;
+  public static final String MACRO_BATCH_SIZE = PROFILE.MACRO_BATCH_SIZE;
+  public static final String DISTANCE = PROFILE.DISTANCE;
   public static final String DIRECTION = PROFILE.DIRECTION;
+  public static final String MASS_MODE = "mass";
 
   public RPROFILE(String name) {
     super(name);
   }
 
-  private double getValue(GeoTimeSerie gts, int index) {
-    return ((Number) GTSHelper.valueAtIndex(gts, index)).doubleValue();
-  }
-
   private int defaultExclusionRadius(long k) {
     return ((Double) Math.ceil(k * 0.25)).intValue();
   }
@@ -65,6 +64,9 @@ public class RPROFILE extends NamedWarpScriptFunction implements WarpScriptStack
     int exclusionRadius;
     Macro macro = null;
     PROFILE.Direction direction = PROFILE.Direction.BOTH;
+    boolean mass = false;
+    long batchSize = 0L;
+    DistanceKernel.Type distanceType = DistanceKernel.Type.ZEUCLIDEAN;
 
     //
     // Two type of signature:
@@ -110,10 +112,23 @@ public class RPROFILE extends NamedWarpScriptFunction implements WarpScriptStack
       // nullable
       macro = (Macro) params.get(SIMILARITY_MEASURE_MACRO);
 
+      if (null != params.get(MACRO_BATCH_SIZE)) {
+        batchSize = ((Number) params.get(MACRO_BATCH_SIZE)).longValue();
+      }
+
+      if (null != params.get(DISTANCE)) {
+        distanceType = PROFILE.distanceType(getName(), params.get(DISTANCE));
+        if (null != macro) {
+          throw new WarpScriptException(getName() + " expects either parameter " + DISTANCE + " or parameter " + SIMILARITY_MEASURE_MACRO + ", not both.");
+        }
+      }
+
       if (null != params.get(DIRECTION)) {
         direction = PROFILE.Direction.valueOf((String) params.get(DIRECTION));
       }
 
+      mass = Boolean.TRUE.equals(params.get(MASS_MODE));
+
     } else {
 
       //
@@ -182,47 +197,48 @@ public class RPROFILE extends NamedWarpScriptFunction implements WarpScriptStack
       throw new WarpScriptException(getName() + " exclusion radios can not be negative.");
     }
 
-    // sorting
-    GTSHelper.sort(gts);
+    if (mass && (null != macro || DistanceKernel.Type.ZEUCLIDEAN != distanceType)) {
+      throw new WarpScriptException(getName() + " only supports parameter " + MASS_MODE + " for the z-normalized euclidean distance, without " + SIMILARITY_MEASURE_MACRO + ".");
+    }
+
+    if (batchSize < 0L || batchSize > Integer.MAX_VALUE) {
+      throw new WarpScriptException(getName() + " expects parameter " + MACRO_BATCH_SIZE + " to be a positive number of subsequences.");
+    }
+
+    FunctionStats.Call call = FunctionStats.current(stack);
+    long mark = System.nanoTime();
+
+    // sorting and staging of the values
+    StagedSeries staged = StagedSeries.of(gts);
+    double[] values = staged.values();
 
     // number of vectors
     int p = gts.size() - (int) k + 1;
 
+    call.series(values.length);
+
     if (bucketIndex >= p ){
       throw new WarpScriptException(getName() + " error: this bucket index can not start a subsequence of length " + k + ".");
     }
 
     //
-    // Means and Std of each vectors
+    // Means and Std of each vectors, used by the built-in distances
     //
 
-    // compute means and std of each vectors
-    double[] means = null;
-    double[] stds = null;
-
-    if (null == macro) {
-      means = new double[p];
-      stds = new double[p];
-
-      for (int i = 0; i < p; i++) {
-
-        // standard
-        BigDecimal sum = BigDecimal.ZERO;
-        BigDecimal sumsq = BigDecimal.ZERO;
+    DistanceKernel kernel = null;
 
-        // todo: this part can be optimised using running stats computation formulas
+    // distance profile computed at once by MASS
+    double[] profile = null;
 
-        for (int j = i; j < i + k; j++) {
-          BigDecimal bd;
-          bd = BigDecimal.valueOf(((Number) GTSHelper.valueAtIndex(gts, j)).doubleValue());
-          sum = sum.add(BigDecimal.valueOf(((Number) GTSHelper.valueAtIndex(gts, j)).doubleValue()));
-          sumsq = sumsq.add(bd.multiply(bd));
-        }
-
-        BigDecimal bdk = BigDecimal.valueOf(k);
-        means[i] = sum.divide(bdk, BigDecimal.ROUND_HALF_UP).doubleValue();
-        double variance = sumsq.divide(bdk, BigDecimal.ROUND_HALF_UP).subtract(sum.multiply(sum).divide(bdk.multiply(bdk), BigDecimal.ROUND_HALF_UP)).doubleValue();
-        stds[i] = Math.sqrt(variance);
+    if (null == macro) {
+      SlidingStats stats = staged.stats((int) k);
+      kernel = new DistanceKernel(distanceType, values, stats, values, stats);
+      mark = call.phase(FunctionStats.Phase.STATS, mark);
+
+      if (mass) {
+        double[] query = new double[(int) k];
+        System.arraycopy(values, bucketIndex, query, 0, (int) k);
+        profile = MASS.distanceProfile(query, values, stats);
       }
     }
 
@@ -242,51 +258,84 @@ public class RPROFILE extends NamedWarpScriptFunction implements WarpScriptStack
       res.getMetadata().getAttributes().put(".custom.macro", "true");
     }
 
+    if (DistanceKernel.Type.ZEUCLIDEAN != distanceType) {
+      res.getMetadata().getAttributes().put("." + DISTANCE, distanceType.name());
+    }
+
     if (PROFILE.Direction.BOTH != direction) {
       res.getMetadata().getAttributes().put("." + DIRECTION, direction.name());
     }
 
+    if (null != profile) {
+      res.getMetadata().getAttributes().put("." + MASS_MODE, "true");
+    }
 
     //
-    // Fill res
+    // Custom macro: the whole row at once, out of the exclusion zone
     //
 
     int start = PROFILE.Direction.RIGHT == direction ? bucketIndex : 0;
     int end = PROFILE.Direction.LEFT == direction ? bucketIndex + 1 : p;
 
+    double[] macroProfile = null;
+
+    if (null != macro) {
+      mark = call.phase(FunctionStats.Phase.STATS, mark);
+      MacroDistance macroDistance = new MacroDistance(stack, macro, gts, staged, gts, staged, (int) k, (int) batchSize);
+      macroProfile = new double[p];
+
+      int leftEnd = Math.max(start, Math.min(end, bucketIndex - exclusionRadius + 1));
+      int rightStart = Math.max(leftEnd, Math.max(start, bucketIndex + exclusionRadius));
+
+      macroDistance.distances(bucketIndex, start, leftEnd, macroProfile, start);
+      if (rightStart < end) {
+        macroDistance.distances(bucketIndex, rightStart, end, macroProfile, rightStart);
+      }
+    }
+
+
+    //
+    // Fill res
+    //
+
+    long[] ticks = new long[end - start];
+    long[] indices = new long[end - start];
+    double[] distances = new double[end - start];
+    int size = 0;
+
     for (int i = start; i < end; i++) {
       if (Math.abs(bucketIndex - i) < exclusionRadius) {
         continue;
       }
 
-      if (null == macro) {
+      if (null != profile) {
 
-        //
-        // Dot product
-        //
+        distances[size] = profile[i];
 
-        double dot = 0.0D;
-        for (int j = 0; j < k; j++) {
-          dot += getValue(gts, bucketIndex + j) * getValue(gts, i + j);
-        }
+      } else if (null == macro) {
 
-        // distance
-        double d = 1.0D - (dot - k * means[bucketIndex] * means[i]) / (k * stds[bucketIndex] * stds[i]);
-        d = 2.0D * k * d;
-        d = Math.sqrt(d);
+        //
+        // State (dot product for instance) computed fully, then distance
+        //
 
-        GTSHelper.setValue(res, GTSHelper.tickAtIndex(gts, i), GeoTimeSerie.NO_LOCATION, i, d, false);
+        distances[size] = kernel.distance(kernel.init(bucketIndex, i), bucketIndex, i);
 
       } else {
 
-        stack.push(ATBUCKETINDEX.subsequence(gts, (int) k ,bucketIndex));
-        stack.push(ATBUCKETINDEX.subsequence(gts, (int) k ,i));
-        stack.exec(macro);
-        Object d = stack.pop();
-        GTSHelper.setValue(res, GTSHelper.tickAtIndex(gts, i), GeoTimeSerie.NO_LOCATION, i, d, false);
+        distances[size] = macroProfile[i];
       }
+
+      ticks[size] = staged.tickAtIndex(i);
+      indices[size] = i;
+      size++;
     }
 
+    call.cells(size);
+    mark = call.phase(FunctionStats.Phase.TRAVERSAL, mark);
+
+    StagedSeries.reset(res, ticks, indices, distances, size);
+    call.phase(FunctionStats.Phase.OUTPUT, mark);
+
     stack.push(res);
 
     return stack;
@@ -0,0 +1,155 @@
+//
+//   Copyright 2026  SenX S.A.S.
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+//
+
+package io.warp10.ext.matrixprofile;
+
+/**
+ * The knn nearest neighbors of each row of a distance matrix, kept in bounded binary heaps packed in primitive arrays
+ *
+ * Row r owns the slots [r * knn, (r + 1) * knn) of the arrays, allocated once. The root of each heap is the worst
+ * neighbor kept, so an offer costs O(log knn) and no boxing. Neighbors are ordered by distance, then as in the diagonal
+ * order of STOMP: nearest subsequence first, then the older one. As this order is total, the heaps do not depend on the
+ * order of the offers, and the heaps of several ranges of diagonals can be merged in any order.
+ */
+class RowHeaps {
+
+  private final int p;
+  private final int knn;
+  private final double[] values;
+  private final int[] indices;
+  private final int[] sizes;
+
+  RowHeaps(int p, int knn) {
+    this.p = p;
+    this.knn = knn;
+    this.values = new double[p * knn];
+    this.indices = new int[p * knn];
+    this.sizes = new int[p];
+  }
+
+  int getNeighbors() {
+    return knn;
+  }
+
+  /**
+   * Whether candidate c1 at distance d1 is a worse neighbor of row r than candidate c2 at distance d2
+   */
+  private static boolean worse(int r, double d1, int c1, double d2, int c2) {
+    if (d1 != d2) {
+      return d1 > d2;
+    }
+    int t1 = Math.abs(r - c1);
+    int t2 = Math.abs(r - c2);
+    if (t1 != t2) {
+      return t1 > t2;
+    }
+    return c1 > c2;
+  }
+
+  /**
+   * Offer candidate c at distance d to row r. As for the row minima, NaN and values not below Double.MAX_VALUE are ignored.
+   */
+  void offer(int r, int c, double d) {
+    if (!(d < Double.MAX_VALUE)) {
+      return;
+    }
+
+    int base = r * knn;
+    int size = sizes[r];
+
+    if (size < knn) {
+      // sift up
+      int n = size;
+      sizes[r] = size + 1;
+      while (n > 0) {
+        int parent = (n - 1) >>> 1;
+        if (!worse(r, d, c, values[base + parent], indices[base + parent])) {
+          break;
+        }
+        values[base + n] = values[base + parent];
+        indices[base + n] = indices[base + parent];
+        n = parent;
+      }
+      values[base + n] = d;
+      indices[base + n] = c;
+
+    } else if (worse(r, values[base], indices[base], d, c)) {
+      siftDown(r, size, d, c);
+    }
+  }
+
+  /**
+   * Replace the root of the heap of row r, holding size neighbors, by candidate c at distance d
+   */
+  private void siftDown(int r, int size, double d, int c) {
+    int base = r * knn;
+    int n = 0;
+    int half = size >>> 1;
+    while (n < half) {
+      int child = 2 * n + 1;
+      int right = child + 1;
+      if (right < size && worse(r, values[base + right], indices[base + right], values[base + child], indices[base + child])) {
+        child = right;
+      }
+      if (!worse(r, values[base + child], indices[base + child], d, c)) {
+        break;
+      }
+      values[base + n] = values[base + child];
+      indices[base + n] = indices[base + child];
+      n = child;
+    }
+    values[base + n] = d;
+    indices[base + n] = c;
+  }
+
+  /**
+   * Offer all the neighbors kept by other, for another range of diagonals
+   */
+  void merge(RowHeaps other) {
+    for (int r = 0; r < p; r++) {
+      int base = r * knn;
+      for (int n = 0; n < other.sizes[r]; n++) {
+        offer(r, other.indices[base + n], other.values[base + n]);
+      }
+    }
+  }
+
+  /**
+   * Empty the heaps into one profile per rank, nearest neighbor first. Rows with fewer neighbors than a rank
+   * get Double.MAX_VALUE and index 0 for that rank, as rows without any neighbor in a matrix profile.
+   */
+  StompEngine.RowMins[] drain() {
+    StompEngine.RowMins[] ranks = new StompEngine.RowMins[knn];
+    for (int m = 0; m < knn; m++) {
+      ranks[m] = new StompEngine.RowMins(p, false);
+    }
+
+    for (int r = 0; r < p; r++) {
+      int base = r * knn;
+      for (int size = sizes[r]; size > 0; size--) {
+        // the root is the worst neighbor left, its rank is the current size
+        ranks[size - 1].value[r] = values[base];
+        ranks[size - 1].index[r] = indices[base];
+        if (size > 1) {
+          siftDown(r, size - 1, values[base + size - 1], indices[base + size - 1]);
+        }
+      }
+      sizes[r] = 0;
+    }
+
+    return ranks;
+  }
+}
@@ -0,0 +1,147 @@
+//
+//   Copyright 2026  SenX S.A.S.
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+//
+
+package io.warp10.ext.matrixprofile;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Bucketized series stored in a local file of raw doubles, read chunk by chunk into a reused direct buffer so that it
+ * is never held in heap as a whole. It is the out-of-core B side of MP.ABPROFILE, see AbJoinEngine.runFile.
+ *
+ * The file starts with a header of HEADER_SIZE bytes: MAGIC, the format VERSION, the lastbucket, the bucketspan and
+ * the bucketcount (int, int, long, long, long). The values of the buckets follow, oldest first. All are big endian.
+ * A NaN value marks a missing bucket, masked as in StagedSeries. The extension only reads such files, which are
+ * produced out of Warp 10 in this format, see MP.ABPROFILE.
+ */
+public class SeriesFile {
+
+  // "MPAB"
+  public static final int MAGIC = 0x4d504142;
+  public static final int VERSION = 1;
+  public static final int HEADER_SIZE = 32;
+
+  private final Path path;
+  private final long lastbucket;
+  private final long bucketspan;
+  private final long bucketcount;
+
+  private SeriesFile(Path path, long lastbucket, long bucketspan, long bucketcount) {
+    this.path = path;
+    this.lastbucket = lastbucket;
+    this.bucketspan = bucketspan;
+    this.bucketcount = bucketcount;
+  }
+
+  /**
+   * Read and check the header of a file
+   */
+  public static SeriesFile open(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.BIG_ENDIAN);
+      while (header.hasRemaining()) {
+        if (channel.read(header) < 0) {
+          break;
+        }
+      }
+
+      if (header.hasRemaining() || MAGIC != header.getInt(0)) {
+        throw new IOException("Not a series file.");
+      }
+
+      if (VERSION != header.getInt(4)) {
+        throw new IOException("Unsupported series file version " + header.getInt(4) + ".");
+      }
+
+      long lastbucket = header.getLong(8);
+      long bucketspan = header.getLong(16);
+      long bucketcount = header.getLong(24);
+
+      if (bucketspan <= 0L || bucketcount <= 0L || channel.size() != HEADER_SIZE + bucketcount * 8L) {
+        throw new IOException("Invalid series file header.");
+      }
+
+      return new SeriesFile(path, lastbucket, bucketspan, bucketcount);
+    }
+  }
+
+  /**
+   * Allocate the direct buffer read by chunk, for chunks of up to length buckets
+   */
+  public static ByteBuffer buffer(int length) {
+    return ByteBuffer.allocateDirect(length * 8).order(ByteOrder.BIG_ENDIAN);
+  }
+
+  /**
+   * Stage the buckets [from, from + length) read from channel, opened on the file, into values
+   *
+   * @param buffer buffer of at least length buckets, see buffer(int), reused from chunk to chunk
+   * @param values array of the chunk, reused if its length is length
+   */
+  public StagedSeries chunk(FileChannel channel, ByteBuffer buffer, long from, int length, double[] values) throws IOException {
+    if (null == values || values.length != length) {
+      values = new double[length];
+    }
+
+    buffer.clear().limit(length * 8);
+    long position = HEADER_SIZE + from * 8L;
+    while (buffer.hasRemaining()) {
+      int read = channel.read(buffer, position);
+      if (read < 0) {
+        throw new IOException("Truncated series file.");
+      }
+      position += read;
+    }
+    buffer.flip();
+    buffer.asDoubleBuffer().get(values);
+
+    return StagedSeries.masked(values, tickAtIndex(from + length - 1), bucketspan);
+  }
+
+  public Path getPath() {
+    return path;
+  }
+
+  /**
+   * Name of the file, without its extension
+   */
+  public String getName() {
+    String name = path.getFileName().toString();
+    int dot = name.lastIndexOf('.');
+    return dot > 0 ? name.substring(0, dot) : name;
+  }
+
+  public long getLastBucket() {
+    return lastbucket;
+  }
+
+  public long getBucketSpan() {
+    return bucketspan;
+  }
+
+  public long getBucketCount() {
+    return bucketcount;
+  }
+
+  public long tickAtIndex(long index) {
+    return lastbucket - (bucketcount - 1 - index) * bucketspan;
+  }
+}
@@ -0,0 +1,250 @@
+//
+//   Copyright 2026  SenX S.A.S.
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+//
+
+package io.warp10.ext.matrixprofile;
+
+/**
+ * Means and (population) standard deviations of all the subsequences of length k of a series, computed in O(n)
+ *
+ * The sums of the values and of their squares over the window are slid in double-double arithmetic
+ * (error-free transformations of Knuth and Dekker), so the variance E[x^2] - E[x]^2 does not suffer
+ * from catastrophic cancellation even when the values have a large offset.
+ */
+public class SlidingStats {
+
+  // 2^27 + 1, used to split a double in two halves of 26 bits
+  private static final double SPLITTER = 134217729.0D;
+
+  private final int k;
+  private final double[] means;
+  private final double[] stds;
+  // whether some subsequences are masked, see mask
+  private boolean masked = false;
+
+  private SlidingStats(int k, double[] means, double[] stds) {
+    this.k = k;
+    this.means = means;
+    this.stds = stds;
+  }
+
+  /**
+   * Compute the statistics of the subsequences of length k of values
+   */
+  public static SlidingStats compute(double[] values, int k) {
+    return compute(values, 0, values.length, k);
+  }
+
+  /**
+   * Compute the statistics of the subsequences of length k of values[from, from + length)
+   */
+  public static SlidingStats compute(double[] values, int from, int length, int k) {
+
+    int p = length - k + 1;
+    double[] means = new double[p];
+    double[] stds = new double[p];
+
+    // double-double accumulators (hi, lo) and scratch space
+    double[] sum = new double[2];
+    double[] sumsq = new double[2];
+    double[] tmp = new double[2];
+    double[] var = new double[2];
+
+    for (int j = from; j < from + k - 1; j++) {
+      add(sum, values[j], 0.0D);
+      product(values[j], values[j], tmp);
+      add(sumsq, tmp[0], tmp[1]);
+    }
+
+    for (int i = 0; i < p; i++) {
+      int start = from + i;
+
+      // slide the window: add the newest value, remove the oldest one
+      double in = values[start + k - 1];
+      add(sum, in, 0.0D);
+      product(in, in, tmp);
+      add(sumsq, tmp[0], tmp[1]);
+
+      if (i > 0) {
+        double out = values[start - 1];
+        add(sum, -out, 0.0D);
+        product(out, out, tmp);
+        add(sumsq, -tmp[0], -tmp[1]);
+      }
+
+      means[i] = (sum[0] + sum[1]) / k;
+
+      // k^2 * variance = k * sumsq - sum^2
+      product(sumsq[0], k, var);
+      var[1] += sumsq[1] * k;
+      product(sum[0], sum[0], tmp);
+      tmp[1] += 2.0D * sum[0] * sum[1];
+      add(var, -tmp[0], -tmp[1]);
+
+      stds[i] = Math.sqrt(Math.max(0.0D, (var[0] + var[1]) / k / k));
+    }
+
+    return new SlidingStats(k, means, stds);
+  }
+
+  /**
+   * Double-double prefix sums of the values and of their squares, shared by the statistics of several subsequence
+   * lengths: the sums over [i, i + k) are the differences of two prefix sums.
+   */
+  public static class PrefixSums {
+    private final double[] sumHi;
+    private final double[] sumLo;
+    private final double[] sumsqHi;
+    private final double[] sumsqLo;
+
+    public PrefixSums(double[] values) {
+      int n = values.length;
+      sumHi = new double[n + 1];
+      sumLo = new double[n + 1];
+      sumsqHi = new double[n + 1];
+      sumsqLo = new double[n + 1];
+
+      double[] sum = new double[2];
+      double[] sumsq = new double[2];
+      double[] tmp = new double[2];
+
+      for (int j = 0; j < n; j++) {
+        add(sum, values[j], 0.0D);
+        product(values[j], values[j], tmp);
+        add(sumsq, tmp[0], tmp[1]);
+        sumHi[j + 1] = sum[0];
+        sumLo[j + 1] = sum[1];
+        sumsqHi[j + 1] = sumsq[0];
+        sumsqLo[j + 1] = sumsq[1];
+      }
+    }
+
+    public int size() {
+      return sumHi.length - 1;
+    }
+  }
+
+  /**
+   * Compute the statistics of the subsequences of length k from prefix sums
+   */
+  public static SlidingStats compute(PrefixSums prefix, int k) {
+
+    int p = prefix.size() - k + 1;
+    double[] means = new double[p];
+    double[] stds = new double[p];
+
+    double[] sum = new double[2];
+    double[] sumsq = new double[2];
+    double[] tmp = new double[2];
+    double[] var = new double[2];
+
+    for (int i = 0; i < p; i++) {
+      sum[0] = prefix.sumHi[i + k];
+      sum[1] = prefix.sumLo[i + k];
+      add(sum, -prefix.sumHi[i], -prefix.sumLo[i]);
+      sumsq[0] = prefix.sumsqHi[i + k];
+      sumsq[1] = prefix.sumsqLo[i + k];
+      add(sumsq, -prefix.sumsqHi[i], -prefix.sumsqLo[i]);
+
+      means[i] = (sum[0] + sum[1]) / k;
+
+      // k^2 * variance = k * sumsq - sum^2
+      product(sumsq[0], k, var);
+      var[1] += sumsq[1] * k;
+      product(sum[0], sum[0], tmp);
+      tmp[1] += 2.0D * sum[0] * sum[1];
+      add(var, -tmp[0], -tmp[1]);
+
+      stds[i] = Math.sqrt(Math.max(0.0D, (var[0] + var[1]) / k / k));
+    }
+
+    return new SlidingStats(k, means, stds);
+  }
+
+  /**
+   * acc += (hi, lo)
+   */
+  private static void add(double[] acc, double hi, double lo) {
+    double s = acc[0] + hi;
+    double bb = s - acc[0];
+    double e = (acc[0] - (s - bb)) + (hi - bb);
+    e += acc[1] + lo;
+    acc[0] = s + e;
+    acc[1] = e - (acc[0] - s);
+  }
+
+  /**
+   * Exact product a * b as a double-double
+   */
+  private static void product(double a, double b, double[] out) {
+    double p = a * b;
+    double c = SPLITTER * a;
+    double ah = c - (c - a);
+    double al = a - ah;
+    c = SPLITTER * b;
+    double bh = c - (c - b);
+    double bl = b - bh;
+    out[0] = p;
+    out[1] = ((ah * bh - p) + ah * bl + al * bh) + al * bl;
+  }
+
+  /**
+   * Set the mean and standard deviation of the subsequences of staged containing a missing bucket to NaN, so that
+   * every distance involving them is NaN, which the traversals ignore
+   */
+  void mask(StagedSeries staged) {
+    for (int i = 0; i < means.length; i++) {
+      if (!staged.isValid(i, k)) {
+        means[i] = Double.NaN;
+        stds[i] = Double.NaN;
+        masked = true;
+      }
+    }
+  }
+
+  /**
+   * Whether some subsequences are masked
+   */
+  public boolean isMasked() {
+    return masked;
+  }
+
+  public int getSubsequenceLength() {
+    return k;
+  }
+
+  /**
+   * Number of subsequences
+   */
+  public int size() {
+    return means.length;
+  }
+
+  public double[] means() {
+    return means;
+  }
+
+  public double[] stds() {
+    return stds;
+  }
+
+  public double mean(int index) {
+    return means[index];
+  }
+
+  public double std(int index) {
+    return stds[index];
+  }
+}
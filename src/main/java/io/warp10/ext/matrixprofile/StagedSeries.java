@@ -0,0 +1,266 @@
+//
+//   Copyright 2026  SenX S.A.S.
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+//
+
+package io.warp10.ext.matrixprofile;
+
+import io.warp10.continuum.gts.GTSHelper;
+import io.warp10.continuum.gts.GeoTimeSerie;
+import io.warp10.script.WarpScriptException;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Values of a bucketized DOUBLE GTS staged once in a contiguous array, one per bucket,
+ * so that the profile kernels work on primitives instead of boxed values
+ *
+ * The buckets of a GTS which is not filled, and its NaN values, are staged with a placeholder, the mean of the values,
+ * and flagged in a validity bitmap. The prefix counts of the missing buckets tell in O(1) whether a subsequence contains one, and the
+ * statistics of such subsequences are masked with NaN, see stats.
+ */
+public class StagedSeries {
+
+  private final double[] values;
+  private final long lastbucket;
+  private final long bucketspan;
+
+  // bit i is set if bucket i holds a value, null if the series is filled
+  private final long[] valid;
+  // number of missing buckets in [0, i), null if the series is filled
+  private final int[] gaps;
+  // whether every bucket holds a value of the GTS, the masked buckets being NaN values rather than missing ones
+  private final boolean filled;
+
+  public StagedSeries(double[] values, long lastbucket, long bucketspan) {
+    this(values, lastbucket, bucketspan, null);
+  }
+
+  /**
+   * @param valid validity bitmap of the values, null if they are all valid
+   */
+  public StagedSeries(double[] values, long lastbucket, long bucketspan, long[] valid) {
+    this(values, lastbucket, bucketspan, valid, true);
+  }
+
+  private StagedSeries(double[] values, long lastbucket, long bucketspan, long[] valid, boolean filled) {
+    this.values = values;
+    this.filled = filled;
+    this.lastbucket = lastbucket;
+    this.bucketspan = bucketspan;
+    this.valid = valid;
+
+    if (null == valid) {
+      this.gaps = null;
+    } else {
+      this.gaps = new int[values.length + 1];
+      for (int i = 0; i < values.length; i++) {
+        gaps[i + 1] = gaps[i] + (int) (~valid[i >>> 6] >>> i & 1L);
+      }
+    }
+  }
+
+  /**
+   * Stage the values of a bucketized GTS, which is sorted beforehand.
+   * GeoTimeSerie does not expose its backing array, so the values are copied once per call.
+   *
+   * @throws WarpScriptException if the GTS is not filled and one of its ticks is out of its buckets or repeated
+   */
+  public static StagedSeries of(GeoTimeSerie gts) throws WarpScriptException {
+    GTSHelper.sort(gts);
+
+    long lastbucket = GTSHelper.getLastBucket(gts);
+    long bucketspan = GTSHelper.getBucketSpan(gts);
+    int bucketcount = GTSHelper.getBucketCount(gts);
+
+    // a filled GTS may still hold NaN values, masked as missing buckets
+    if (gts.size() == bucketcount && onBuckets(gts, lastbucket, bucketspan)) {
+      return masked(GTSHelper.getValuesAsDouble(gts), lastbucket, bucketspan);
+    }
+
+    // missing buckets: values at their bucket index, NaN elsewhere. A GTS holding bucketcount values which are not on
+    // its buckets fails below.
+    double[] present = GTSHelper.getValuesAsDouble(gts);
+    long[] ticks = GTSHelper.getTicks(gts);
+
+    double[] values = new double[bucketcount];
+    Arrays.fill(values, Double.NaN);
+
+    // the ticks are sorted, so a repeated tick follows its first occurrence
+    for (int i = 0; i < present.length; i++) {
+      long offset = lastbucket - ticks[i];
+      if (offset < 0L || offset % bucketspan != 0L || offset / bucketspan >= bucketcount) {
+        throw new WarpScriptException("Tick " + ticks[i] + " of " + gts.getName() + " is not one of its buckets.");
+      }
+      if (i > 0 && ticks[i] == ticks[i - 1]) {
+        throw new WarpScriptException("Tick " + ticks[i] + " of " + gts.getName() + " holds several values.");
+      }
+      values[bucketcount - 1 - (int) (offset / bucketspan)] = present[i];
+    }
+
+    return masked(values, lastbucket, bucketspan, false);
+  }
+
+  /**
+   * Whether the sorted ticks of a GTS holding bucketcount values are its buckets, i.e. none is repeated or out of them
+   */
+  private static boolean onBuckets(GeoTimeSerie gts, long lastbucket, long bucketspan) {
+    int n = gts.size();
+    for (int i = 0; i < n; i++) {
+      if (GTSHelper.tickAtIndex(gts, i) != lastbucket - (n - 1 - i) * bucketspan) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Stage values where NaN marks a missing bucket. The NaN are replaced in place by a placeholder, the mean of the
+   * other values: it is finite so that the sliding states stay finite across the gaps, and close to the values so that
+   * they do not lose precision.
+   */
+  public static StagedSeries masked(double[] values, long lastbucket, long bucketspan) {
+    return masked(values, lastbucket, bucketspan, true);
+  }
+
+  private static StagedSeries masked(double[] values, long lastbucket, long bucketspan, boolean filled) {
+    long[] valid = new long[(values.length + 63) >>> 6];
+
+    double mean = 0.0D;
+    int count = 0;
+    for (int i = 0; i < values.length; i++) {
+      if (!Double.isNaN(values[i])) {
+        mean += values[i];
+        count++;
+        valid[i >>> 6] |= 1L << i;
+      }
+    }
+    mean = 0 == count ? 0.0D : mean / count;
+
+    if (count == values.length) {
+      return new StagedSeries(values, lastbucket, bucketspan);
+    }
+
+    for (int i = 0; i < values.length; i++) {
+      if (Double.isNaN(values[i])) {
+        values[i] = mean;
+      }
+    }
+
+    return new StagedSeries(values, lastbucket, bucketspan, valid, filled);
+  }
+
+  public double[] values() {
+    return values;
+  }
+
+  public int size() {
+    return values.length;
+  }
+
+  public long getLastBucket() {
+    return lastbucket;
+  }
+
+  public long getBucketSpan() {
+    return bucketspan;
+  }
+
+  /**
+   * Whether some buckets are missing
+   */
+  public boolean hasGaps() {
+    return null != gaps && 0 != gaps[values.length];
+  }
+
+  /**
+   * Whether every bucket holds a value, possibly NaN. Only the buckets of a GTS which is not filled are missing.
+   */
+  public boolean isFilled() {
+    return filled;
+  }
+
+  /**
+   * Number of masked buckets
+   */
+  public int gapCount() {
+    return null == gaps ? 0 : gaps[values.length];
+  }
+
+  /**
+   * Whether bucket i holds a value
+   */
+  public boolean isValid(int i) {
+    return null == valid || 0L != (valid[i >>> 6] & 1L << i);
+  }
+
+  /**
+   * Value of bucket i as held by the GTS, NaN instead of the placeholder of a masked bucket
+   */
+  public double value(int i) {
+    return isValid(i) ? values[i] : Double.NaN;
+  }
+
+  /**
+   * Whether the subsequence of length k starting at bucket i holds no missing bucket, in O(1)
+   */
+  public boolean isValid(int i, int k) {
+    return null == gaps || gaps[i + k] == gaps[i];
+  }
+
+  /**
+   * Statistics of the subsequences of length k, those containing a missing bucket being masked with NaN
+   */
+  public SlidingStats stats(int k) {
+    SlidingStats stats = SlidingStats.compute(values, k);
+    if (hasGaps()) {
+      stats.mask(this);
+    }
+    return stats;
+  }
+
+  public long tickAtIndex(int index) {
+    return lastbucket - (values.length - 1 - index) * bucketspan;
+  }
+
+  /**
+   * Ticks of the first count buckets
+   */
+  public long[] ticks(int count) {
+    long[] ticks = new long[count];
+    for (int i = 0; i < count; i++) {
+      ticks[i] = tickAtIndex(i);
+    }
+    return ticks;
+  }
+
+  /**
+   * Fill a GTS from primitive arrays in one go
+   */
+  public static void reset(GeoTimeSerie gts, long[] ticks, long[] elevations, double[] values, int size) throws WarpScriptException {
+    reset(gts, ticks, null, elevations, values, size);
+  }
+
+  /**
+   * Fill a GTS from primitive arrays in one go, with locations
+   */
+  public static void reset(GeoTimeSerie gts, long[] ticks, long[] locations, long[] elevations, double[] values, int size) throws WarpScriptException {
+    try {
+      gts.reset(ticks, locations, elevations, values, size);
+    } catch (IOException e) {
+      throw new WarpScriptException(e);
+    }
+  }
+}
@@ -0,0 +1,140 @@
+//
+//   Copyright 2026  SenX S.A.S.
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+//
+
+package io.warp10.ext.matrixprofile;
+
+/**
+ * STAMPI: extend a matrix profile with the subsequences of newly appended values.
+ *
+ * Each new subsequence i gets the row of kernel states (dot products QT[j] = T[i, i + k) . T[j, j + k) for the
+ * z-normalized distance) for j <= i from the row of subsequence i - 1 in O(n), then its distances update both its own
+ * minimum and the minima of the older rows.
+ *
+ * The rows keep a strictly lower distance only, so on an exact tie a row keeps the neighbor it saw first: an existing
+ * row keeps its neighbor, and a new row its left neighbor over a right one appended later. With a single direction
+ * this is the nearest neighbor first, as the diagonal traversal of StompEngine keeps.
+ */
+public class StampiEngine {
+
+  private final double[] values;
+  private final int k;
+  private final int exclusionRadius;
+  private final double[] means;
+  private final DistanceKernel kernel;
+  private final PROFILE.Direction direction;
+
+  /**
+   * @param kernel self join kernel of the values
+   */
+  public StampiEngine(double[] values, int k, int exclusionRadius, SlidingStats stats, DistanceKernel kernel, PROFILE.Direction direction) {
+    this.values = values;
+    this.k = k;
+    this.exclusionRadius = exclusionRadius;
+    this.means = stats.means();
+    this.kernel = kernel;
+    this.direction = direction;
+  }
+
+  /**
+   * Extend the minima of the first pOld subsequences to all the subsequences of the series.
+   * The arrays hold one cell per subsequence, those of index pOld and above are overwritten.
+   */
+  public void append(double[] minValue, long[] minIndex, int pOld) {
+
+    int p = values.length - k + 1;
+
+    for (int i = pOld; i < p; i++) {
+      minValue[i] = Double.MAX_VALUE;
+      minIndex[i] = 0L;
+    }
+
+    if (pOld >= p) {
+      return;
+    }
+
+    double[] qt = lastRow(pOld - 1, p);
+
+    for (int i = pOld; i < p; i++) {
+
+      // row i from row i - 1, in place from the end
+      for (int j = i; j > 0; j--) {
+        qt[j] = kernel.slide(qt[j - 1], i, j);
+      }
+      qt[0] = kernel.init(i, 0);
+
+      // closest subsequences first, so ties keep the nearest one as the diagonal traversal does
+      for (int j = i - exclusionRadius; j >= 0; j--) {
+
+        double d = kernel.distance(qt[j], i, j);
+
+        if (PROFILE.Direction.LEFT != direction && d < minValue[j]) {
+          minValue[j] = d;
+          minIndex[j] = i;
+        }
+
+        if (PROFILE.Direction.RIGHT != direction && d < minValue[i]) {
+          minValue[i] = d;
+          minIndex[i] = j;
+        }
+      }
+    }
+  }
+
+  /**
+   * Kernel states of subsequence i with the subsequences [0, i], in an array sized for p subsequences.
+   * Dot products come from the FFT of the centered series, then the offset is added back:
+   * sum(q * t) = sum((q - c) * (t - c)) + c * (sum(q) + sum(t)) - k * c^2
+   * Other states are computed directly.
+   */
+  private double[] lastRow(int i, int p) {
+
+    double[] qt = new double[p];
+
+    if (i < 0) {
+      return qt;
+    }
+
+    if (!kernel.getType().isDotProduct()) {
+      for (int j = 0; j <= i; j++) {
+        qt[j] = kernel.init(i, j);
+      }
+      return qt;
+    }
+
+    int length = i + k;
+    double c = 0.0D;
+    for (int l = 0; l < length; l++) {
+      c += values[l];
+    }
+    c /= length;
+
+    double[] centered = new double[length];
+    for (int l = 0; l < length; l++) {
+      centered[l] = values[l] - c;
+    }
+
+    double[] query = new double[k];
+    System.arraycopy(centered, i, query, 0, k);
+
+    double[] dots = FFT.slidingDotProducts(query, centered);
+
+    for (int j = 0; j <= i; j++) {
+      qt[j] = dots[j] + c * k * (means[i] + means[j]) - k * c * c;
+    }
+
+    return qt;
+  }
+}
@@ -0,0 +1,867 @@
+//
+//   Copyright 2026  SenX S.A.S.
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+//
+
+package io.warp10.ext.matrixprofile;
+
+import io.warp10.script.WarpScriptATCException;
+import io.warp10.script.WarpScriptException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * STOMP traversal of the upper triangle of the distance matrix of a GTS, diagonal by diagonal
+ *
+ * With a built-in kernel, the upper triangle is traversed in tiles: bands of TILE_SIZE diagonals are cut in blocks of
+ * TILE_SIZE rows, and the state of each diagonal is carried from one block to the next. The row and column minima
+ * updated by a tile stay in cache, whereas a full diagonal touches two locations drifting apart. The bands are the units
+ * of work of a fork-join pool, each worker keeping its own row minima. Ties are resolved by subsequence (nearest first,
+ * then the older one) rather than by visit order, so the result is the same as the diagonal by diagonal traversal
+ * whatever the tiling and the number of workers.
+ */
+public class StompEngine {
+
+  //
+  // Below this number of cells, the parallel traversal is not worth the thread handoff
+  //
+
+  private static final long MIN_CELLS_PER_WORKER = 1L << 18;
+
+  //
+  // Side of the square tiles of the distance matrix in the tiled traversal. A tile touches TILE_SIZE row minima and
+  // 2 * TILE_SIZE column minima and values, which fit in a L2 cache.
+  //
+
+  static final int TILE_SIZE = 1024;
+
+  private final double[] values;
+  private final int k;
+  private final int p;
+  private final int exclusionRadius;
+  private final SlidingStats stats;
+  private final DistanceKernel kernel;
+  private final double[] means;
+  private final double[] stds;
+  private final PROFILE.Direction direction;
+  private final boolean robust;
+
+  // fraction of the cells evaluated by the last run, below 1 in anytime mode or once the watchdog expired
+  private double coverage = 1.0D;
+
+  private Watchdog watchdog = new Watchdog(null, 0L);
+
+  /**
+   * Row minima (and robust second minima) with their argmin
+   */
+  static class RowMins {
+    final double[] value;
+    final long[] index;
+    final double[] value2;
+    final long[] index2;
+
+    RowMins(int p, boolean robust) {
+      value = new double[p];
+      index = new long[p];
+      for (int i = 0; i < p; i++) {
+        value[i] = Double.MAX_VALUE;
+      }
+
+      if (robust) {
+        value2 = new double[p];
+        index2 = new long[p];
+        for (int i = 0; i < p; i++) {
+          value2[i] = Double.MAX_VALUE;
+        }
+      } else {
+        value2 = null;
+        index2 = null;
+      }
+    }
+
+    /**
+     * Offer candidate c at distance d to row r. The previous minimum is demoted to the second one when robust.
+     * Ties are resolved as in the diagonal order: nearest subsequence first, then the older one. The minima do not
+     * depend on the order of the offers.
+     */
+    void update(int r, int c, double d, boolean robust) {
+      if (d < value[r] || (d == value[r] && before(r, c, index[r]))) {
+        if (robust) {
+          value2[r] = value[r];
+          index2[r] = index[r];
+        }
+        value[r] = d;
+        index[r] = c;
+      } else if (robust && (d < value2[r] || (d == value2[r] && before(r, c, index2[r])))) {
+        value2[r] = d;
+        index2[r] = c;
+      }
+    }
+
+    /**
+     * Merge the minima of another set of diagonals, in any order
+     */
+    void merge(RowMins next) {
+      boolean robust = null != value2;
+      for (int i = 0; i < value.length; i++) {
+        update(i, (int) next.index[i], next.value[i], robust);
+        if (robust) {
+          update(i, (int) next.index2[i], next.value2[i], true);
+        }
+      }
+    }
+  }
+
+  /**
+   * @param values the staged values of the input GTS
+   * @param stats statistics of the subsequences, null when a custom macro is used
+   * @param kernel built-in distance, null when a custom macro is used
+   */
+  public StompEngine(double[] values, int k, int exclusionRadius, SlidingStats stats, DistanceKernel kernel, PROFILE.Direction direction, boolean robust) {
+    this.values = values;
+    this.k = k;
+    this.p = values.length - k + 1;
+    this.exclusionRadius = exclusionRadius;
+    this.stats = stats;
+    this.kernel = kernel;
+    this.means = null == stats ? null : stats.means();
+    this.stds = null == stats ? null : stats.stds();
+    this.direction = direction;
+    this.robust = robust;
+  }
+
+  /**
+   * Watchdog checked during the traversals, which stop with the minima found so far once it expires
+   */
+  public void setWatchdog(Watchdog watchdog) {
+    this.watchdog = watchdog;
+  }
+
+  /**
+   * Compute the row minima, possibly using a custom distance macro (in which case the traversal is sequential)
+   *
+   * @param distance custom distance, null for the z-normalized euclidean distance
+   */
+  public RowMins run(MacroDistance distance, int parallelism) throws WarpScriptException {
+    return run(distance, parallelism, false)[0];
+  }
+
+  /**
+   * Compute the left, right and two-sided row minima in a single traversal, whatever the direction of the engine.
+   * Each cell updates the right minima of its row and the left minima of its column, as the two-sided traversal updates
+   * both with the same comparisons. The two-sided minima are merged from the others in O(p), with the same result as
+   * a BOTH traversal since the ties do not depend on the order of the offers.
+   *
+   * @return the left, right and two-sided minima, in that order
+   */
+  public RowMins[] runDirections(MacroDistance distance, int parallelism) throws WarpScriptException {
+    RowMins[] mins = run(distance, parallelism, true);
+
+    RowMins both = new RowMins(p, robust);
+    both.merge(mins[0]);
+    both.merge(mins[1]);
+
+    return new RowMins[] { mins[0], mins[1], both };
+  }
+
+  /**
+   * @param split whether to keep the left and right minima apart
+   * @return the minima, or the left and right minima if split
+   */
+  private RowMins[] run(MacroDistance distance, int parallelism, final boolean split) throws WarpScriptException {
+
+    int firstDiagNotInExclusionZone = exclusionRadius;
+
+    int workers = workers(firstDiagNotInExclusionZone, p, parallelism);
+
+    long cells = cells(firstDiagNotInExclusionZone, p);
+
+    if (null != distance && distance.isBatch()) {
+      RowMins[] mins = allocate(split);
+      coverage(traverseRows(newer(mins), older(mins), null, distance), cells);
+      return mins;
+    }
+
+    if (null != distance) {
+      RowMins[] mins = allocate(split);
+      coverage(traverse(firstDiagNotInExclusionZone, p, newer(mins), older(mins), distance), cells);
+      return mins;
+    }
+
+    final int first = firstDiagNotInExclusionZone;
+    final int bands = (Math.max(0, p - first) + TILE_SIZE - 1) / TILE_SIZE;
+
+    if (workers < 2) {
+      RowMins[] mins = allocate(split);
+      double[] states = new double[TILE_SIZE];
+      long done = 0L;
+      for (int band = 0; band < bands && !watchdog.isExpired(); band++) {
+        done += traverseBand(first + band * TILE_SIZE, Math.min(p, first + (band + 1) * TILE_SIZE), newer(mins), older(mins), states);
+      }
+      coverage(done, cells);
+      return mins;
+    }
+
+    ForkJoinPool pool = new ForkJoinPool(workers);
+
+    try {
+
+      //
+      // The workers pick the bands of diagonals one at a time, the first ones holding the most cells.
+      // Their minima do not depend on the order of the cells, so they are merged in any order.
+      //
+
+      final AtomicInteger next = new AtomicInteger();
+      final AtomicLong done = new AtomicLong();
+
+      List<Callable<RowMins[]>> tasks = new ArrayList<Callable<RowMins[]>>(workers);
+      for (int i = 0; i < workers; i++) {
+        tasks.add(new Callable<RowMins[]>() {
+          @Override
+          public RowMins[] call() throws Exception {
+            RowMins[] local = allocate(split);
+            double[] states = new double[TILE_SIZE];
+            int band;
+            while (!watchdog.isExpired() && (band = next.getAndIncrement()) < bands) {
+              done.addAndGet(traverseBand(first + band * TILE_SIZE, Math.min(p, first + (band + 1) * TILE_SIZE), newer(local), older(local), states));
+            }
+            return local;
+          }
+        });
+      }
+
+      RowMins[] mins = allocate(split);
+      for (RowMins[] partial: collect(pool.invokeAll(tasks))) {
+        for (int m = 0; m < mins.length; m++) {
+          mins[m].merge(partial[m]);
+        }
+      }
+
+      coverage(done.get(), cells);
+      return mins;
+
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  private RowMins[] allocate(boolean split) {
+    return split ? new RowMins[] { new RowMins(p, robust), new RowMins(p, robust) } : new RowMins[] { new RowMins(p, robust) };
+  }
+
+  /**
+   * Minima updated with the more recent neighbors of the rows (right), null if the direction excludes them
+   */
+  private RowMins newer(RowMins[] mins) {
+    if (2 == mins.length) {
+      return mins[1];
+    }
+    return PROFILE.Direction.LEFT != direction ? mins[0] : null;
+  }
+
+  /**
+   * Minima updated with the older neighbors of the rows (left), null if the direction excludes them
+   */
+  private RowMins older(RowMins[] mins) {
+    if (2 == mins.length) {
+      return mins[0];
+    }
+    return PROFILE.Direction.RIGHT != direction ? mins[0] : null;
+  }
+
+  /**
+   * Compute the knn nearest neighbors of each row in a single traversal, as one set of row minima per rank.
+   * The heaps of the ranges of diagonals are merged once the workers are done.
+   *
+   * @param distance custom distance, null for the built-in kernel
+   */
+  public RowMins[] runKnn(MacroDistance distance, int knn, int parallelism) throws WarpScriptException {
+
+    int firstDiagNotInExclusionZone = exclusionRadius;
+
+    int workers = workers(firstDiagNotInExclusionZone, p, parallelism);
+
+    long cells = cells(firstDiagNotInExclusionZone, p);
+
+    if (null != distance && distance.isBatch()) {
+      RowHeaps heaps = new RowHeaps(p, knn);
+      coverage(traverseRows(null, null, heaps, distance), cells);
+      return heaps.drain();
+    }
+
+    if (null != distance || workers < 2) {
+      RowHeaps heaps = new RowHeaps(p, knn);
+      coverage(traverseKnn(firstDiagNotInExclusionZone, p, heaps, distance), cells);
+      return heaps.drain();
+    }
+
+    final AtomicLong done = new AtomicLong();
+
+    int[] bounds = split(firstDiagNotInExclusionZone, p, workers);
+
+    ForkJoinPool pool = new ForkJoinPool(workers);
+
+    try {
+      List<Callable<RowHeaps>> tasks = new ArrayList<Callable<RowHeaps>>(workers);
+      for (int i = 0; i < workers; i++) {
+        final int start = bounds[i];
+        final int end = bounds[i + 1];
+        final int neighbors = knn;
+        tasks.add(new Callable<RowHeaps>() {
+          @Override
+          public RowHeaps call() throws Exception {
+            RowHeaps local = new RowHeaps(p, neighbors);
+            done.addAndGet(traverseKnn(start, end, local, null));
+            return local;
+          }
+        });
+      }
+
+      List<RowHeaps> partials = collect(pool.invokeAll(tasks));
+      RowHeaps heaps = partials.get(0);
+      for (int i = 1; i < partials.size(); i++) {
+        heaps.merge(partials.get(i));
+      }
+
+      coverage(done.get(), cells);
+      return heaps.drain();
+
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  /**
+   * Anytime traversal (SCRIMP++): a PreSCRIMP approximation, then the diagonals in random order until either
+   * the given fraction of them is evaluated or the time budget is exhausted. The result is the best-so-far profile.
+   *
+   * @param fraction fraction of the diagonals to evaluate
+   * @param budget time budget in nanoseconds, 0 for none
+   */
+  public RowMins runAnytime(MacroDistance distance, double fraction, long budget, Random random) throws WarpScriptException {
+
+    long start = System.nanoTime();
+    RowMins mins = new RowMins(p, robust);
+
+    int firstDiagNotInExclusionZone = exclusionRadius;
+    int diagonals = Math.max(0, p - firstDiagNotInExclusionZone);
+    int todo = (int) Math.min(diagonals, Math.ceil(fraction * diagonals));
+
+    //
+    // PreSCRIMP, on the z-normalized euclidean distance only, as it relies on MASS. It samples one subsequence every k/4,
+    // gets its whole distance profile with MASS and refines the neighborhood of its nearest neighbor.
+    // In budget mode it can use half of the budget, otherwise it samples the same fraction of subsequences.
+    // Samples are processed two by two, as the searcher packs two queries in each transform.
+    //
+
+    if (null == distance && DistanceKernel.Type.ZEUCLIDEAN == kernel.getType() && diagonals > 0) {
+      int step = Math.max(1, k / 4);
+      int[] samples = shuffle(0, (p - 1) / step + 1, random);
+      int maxSamples = 0 == budget ? (int) Math.ceil(fraction * samples.length) : samples.length;
+      MASS.Searcher searcher = new MASS.Searcher(values, stats);
+
+      for (int s = 0; s < maxSamples; s += 2) {
+        if ((0 != budget && System.nanoTime() - start > budget / 2) || watchdog.expired()) {
+          break;
+        }
+
+        int i1 = samples[s] * step;
+        int i2 = s + 1 < maxSamples ? samples[s + 1] * step : -1;
+        double[][] profiles = searcher.distanceProfiles(subsequence(i1), -1 == i2 ? null : subsequence(i2));
+
+        preScrimp(i1, profiles[0], step, mins);
+        if (-1 != i2) {
+          preScrimp(i2, profiles[1], step, mins);
+        }
+      }
+    }
+
+    //
+    // SCRIMP, diagonals in random order
+    //
+
+    int[] order = shuffle(firstDiagNotInExclusionZone, p, random);
+
+    long cells = cells(firstDiagNotInExclusionZone, p);
+    long done = 0L;
+
+    for (int d = 0; d < todo && !watchdog.isExpired(); d++) {
+      if (0 != budget && System.nanoTime() - start > budget) {
+        break;
+      }
+      done += traverse(order[d], order[d] + 1, PROFILE.Direction.LEFT != direction ? mins : null,
+          PROFILE.Direction.RIGHT != direction ? mins : null, distance);
+    }
+
+    coverage(done, cells);
+
+    return mins;
+  }
+
+  /**
+   * Fraction of the cells evaluated by the last run
+   */
+  public double getCoverage() {
+    return coverage;
+  }
+
+  private void coverage(long done, long cells) {
+    coverage = 0L == cells ? 1.0D : (double) done / cells;
+  }
+
+  /**
+   * Random permutation of [from, to)
+   */
+  private static int[] shuffle(int from, int to, Random random) {
+    int[] order = new int[Math.max(0, to - from)];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = from + i;
+    }
+    for (int i = order.length - 1; i > 0; i--) {
+      int j = random.nextInt(i + 1);
+      int tmp = order[i];
+      order[i] = order[j];
+      order[j] = tmp;
+    }
+    return order;
+  }
+
+  private double[] subsequence(int i) {
+    double[] subsequence = new double[k];
+    System.arraycopy(values, i, subsequence, 0, k);
+    return subsequence;
+  }
+
+  /**
+   * Update with the distance profile of subsequence i, then refine the step cells around (i, nn) on their diagonal
+   */
+  private void preScrimp(int i, double[] profile, int step, RowMins mins) {
+
+    // a masked subsequence, the searcher does not know about the mask of the statistics
+    if (Double.isNaN(means[i])) {
+      return;
+    }
+
+    int nn = -1;
+    for (int j = 0; j < p; j++) {
+      if (Math.abs(i - j) < exclusionRadius) {
+        continue;
+      }
+      update(mins, Math.min(i, j), Math.max(i, j), profile[j]);
+      // NaN distances, of masked subsequences, are skipped
+      if (profile[j] < Double.MAX_VALUE && (-1 == nn || profile[j] < profile[nn])) {
+        nn = j;
+      }
+    }
+
+    if (-1 == nn) {
+      return;
+    }
+
+    double dot0 = 0.0D;
+    for (int l = 0; l < k; l++) {
+      dot0 += values[i + l] * values[nn + l];
+    }
+
+    // forward along the diagonal
+    double dot = dot0;
+    for (int q = 1; q < step && i + q < p && nn + q < p; q++) {
+      int a = i + q;
+      int b = nn + q;
+      dot -= values[a - 1] * values[b - 1];
+      dot += values[a + k - 1] * values[b + k - 1];
+      update(mins, Math.min(a, b), Math.max(a, b), distance(dot, a, b));
+    }
+
+    // backward along the diagonal
+    dot = dot0;
+    for (int q = 1; q < step && i - q >= 0 && nn - q >= 0; q++) {
+      int a = i - q;
+      int b = nn - q;
+      dot -= values[a + k] * values[b + k];
+      dot += values[a] * values[b];
+      update(mins, Math.min(a, b), Math.max(a, b), distance(dot, a, b));
+    }
+  }
+
+  private double distance(double dot, int i, int j) {
+    double d = 1.0D - (dot - k * means[i] * means[j]) / (k * stds[i] * stds[j]);
+    d = 2.0D * k * d;
+    return Math.sqrt(d);
+  }
+
+  /**
+   * Update the minima with the distance d between subsequences i < j
+   */
+  private void update(RowMins mins, int i, int j, double d) {
+    if (PROFILE.Direction.LEFT != direction) {
+      mins.update(i, j, d, robust);
+    }
+
+    if (PROFILE.Direction.RIGHT != direction) {
+      mins.update(j, i, d, robust);
+    }
+  }
+
+  /**
+   * Number of workers worth using to traverse the diagonals [first, p) of a p x p matrix
+   */
+  static int workers(int first, int p, long parallelism) {
+    return (int) Math.min(parallelism, cells(first, p) / MIN_CELLS_PER_WORKER);
+  }
+
+  /**
+   * Number of cells of the diagonals [first, p) of a p x p matrix
+   */
+  static long cells(int first, int p) {
+    long diagonals = Math.max(0L, p - first);
+    return diagonals * (diagonals + 1L) / 2L;
+  }
+
+  /**
+   * Split the diagonals [first, p) in contiguous ranges holding about the same number of cells.
+   * Range w is [bounds[w], bounds[w + 1]).
+   */
+  static int[] split(int first, int p, int workers) {
+    long cells = cells(first, p);
+
+    int[] bounds = new int[workers + 1];
+    bounds[0] = first;
+    bounds[workers] = p;
+    long acc = 0L;
+    int w = 1;
+    for (int t = first; t < p && w < workers; t++) {
+      acc += p - t;
+      if (acc >= cells * w / workers) {
+        bounds[w++] = t + 1;
+      }
+    }
+    while (w < workers) {
+      bounds[w++] = p;
+    }
+    return bounds;
+  }
+
+  static <T> List<T> collect(List<Future<T>> futures) throws WarpScriptException {
+    List<T> results = new ArrayList<T>(futures.size());
+    try {
+      for (Future<T> future: futures) {
+        results.add(future.get());
+      }
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      throw new WarpScriptException("Interrupted while computing the matrix profile.", ie);
+    } catch (ExecutionException ee) {
+      // a signal of the stack, handled by a worker through the watchdog, is rethrown as is
+      for (Throwable cause = ee.getCause(); null != cause; cause = cause.getCause()) {
+        if (cause instanceof WarpScriptATCException) {
+          throw (WarpScriptATCException) cause;
+        }
+      }
+      // so is the error of a task, e.g. a limit reached by an item of a batch, whose message tells the reason
+      if (ee.getCause() instanceof WarpScriptException) {
+        throw (WarpScriptException) ee.getCause();
+      }
+      throw new WarpScriptException("Error while computing the matrix profile.", ee.getCause());
+    }
+    return results;
+  }
+
+  /**
+   * Traverse the upper triangle row by row, for a custom macro in batch mode, updating either the minima or heaps.
+   * Ties on the first minimum are resolved as in the diagonal order: nearest subsequence first, then the older one.
+   *
+   * @param newer minima of the rows updated with their more recent neighbors, null for none
+   * @param older minima of the rows updated with their older neighbors, null for none
+   */
+  private long traverseRows(RowMins newer, RowMins older, RowHeaps heaps, MacroDistance distance) throws WarpScriptException {
+
+    double[] row = new double[p];
+    long done = 0L;
+
+    for (int i = 0; i + exclusionRadius < p; i++) {
+      if (watchdog.expired()) {
+        break;
+      }
+
+      int from = i + exclusionRadius;
+      distance.distances(i, from, p, row, 0);
+      done += p - from;
+
+      for (int j = from; j < p; j++) {
+        double d = row[j - from];
+
+        if (null != heaps) {
+          if (PROFILE.Direction.LEFT != direction) {
+            heaps.offer(i, j, d);
+          }
+          if (PROFILE.Direction.RIGHT != direction) {
+            heaps.offer(j, i, d);
+          }
+          continue;
+        }
+
+        if (null != newer) {
+          newer.update(i, j, d, robust);
+        }
+
+        if (null != older) {
+          older.update(j, i, d, robust);
+        }
+      }
+    }
+
+    return done;
+  }
+
+  /**
+   * Whether candidate c is seen before candidate m by row r in the diagonal order: nearest subsequence first, then the older one
+   */
+  static boolean before(int r, long c, long m) {
+    return Math.abs(r - c) < Math.abs(r - m) || (Math.abs(r - c) == Math.abs(r - m) && c < m);
+  }
+
+  /**
+   * Traverse the band of diagonals [tStart, tEnd), with tEnd - tStart <= TILE_SIZE, tile by tile.
+   * states holds the state of each diagonal of the band at the end of the previous tile.
+   * Cell (i, j) updates row i of newerMins and row j of olderMins, which are the same minima unless they are split.
+   *
+   * @return the number of cells evaluated, lower than the cells of the band if the watchdog expired
+   */
+  private long traverseBand(int tStart, int tEnd, RowMins newerMins, RowMins olderMins, double[] states) throws WarpScriptException {
+
+    DistanceKernel kernel = this.kernel;
+    boolean second = robust;
+    boolean newer = null != newerMins;
+    boolean older = null != olderMins;
+    double[] newerValue = newer ? newerMins.value : null;
+    long[] newerIndex = newer ? newerMins.index : null;
+    double[] olderValue = older ? olderMins.value : null;
+    long[] olderIndex = older ? olderMins.index : null;
+
+    // rows of diagonal tStart, the longest one of the band
+    int rows = p - tStart;
+    long done = 0L;
+
+    for (int i0 = 0; i0 < rows; i0 += TILE_SIZE) {
+      if (watchdog.expired()) {
+        break;
+      }
+
+      int i1 = Math.min(rows, i0 + TILE_SIZE);
+
+      for (int t = tStart; t < tEnd; t++) {
+        // last row of diagonal t in this tile
+        int end = Math.min(i1, p - t);
+        if (end <= i0) {
+          break;
+        }
+
+        double state = states[t - tStart];
+
+        for (int i = i0; i < end; i++) {
+          int j = i + t;
+
+          state = 0 == i ? kernel.init(i, j) : kernel.slide(state, i, j);
+          double d = kernel.distance(state, i, j);
+
+          // the common case of a strictly greater distance costs a single comparison
+          if (newer) {
+            if (!second) {
+              if (d <= newerValue[i] && (d < newerValue[i] || before(i, j, newerIndex[i]))) {
+                newerValue[i] = d;
+                newerIndex[i] = j;
+              }
+            } else {
+              newerMins.update(i, j, d, true);
+            }
+          }
+
+          if (older) {
+            if (!second) {
+              if (d <= olderValue[j] && (d < olderValue[j] || before(j, i, olderIndex[j]))) {
+                olderValue[j] = d;
+                olderIndex[j] = i;
+              }
+            } else {
+              olderMins.update(j, i, d, true);
+            }
+          }
+        }
+
+        states[t - tStart] = state;
+        done += end - i0;
+      }
+    }
+
+    return done;
+  }
+
+  /**
+   * Traverse the diagonals in [tStart, tEnd), cell (i, j) updating row i of newerMins and row j of olderMins
+   *
+   * @return the number of cells evaluated, lower than the cells of the diagonals if the watchdog expired
+   */
+  private long traverse(int tStart, int tEnd, RowMins newerMins, RowMins olderMins, MacroDistance distance) throws WarpScriptException {
+
+    DistanceKernel kernel = this.kernel;
+    boolean second = robust;
+    boolean newer = null != newerMins;
+    boolean older = null != olderMins;
+    double[] newerValue = newer ? newerMins.value : null;
+    long[] newerIndex = newer ? newerMins.index : null;
+    double[] newer2Value = newer ? newerMins.value2 : null;
+    long[] newer2Index = newer ? newerMins.index2 : null;
+    double[] olderValue = older ? olderMins.value : null;
+    long[] olderIndex = older ? olderMins.index : null;
+    double[] older2Value = older ? olderMins.value2 : null;
+    long[] older2Index = older ? olderMins.index2 : null;
+    long done = 0L;
+
+    for (int t = tStart; t < tEnd; t++) {
+
+      if (watchdog.expired()) {
+        return done;
+      }
+
+      // state (dot product for instance) used for one diagonal traversal
+      double dot = 0.0D;
+
+      for (int j = t; j < p; j++) {
+
+        // a custom macro may be slow enough to check the watchdog at each cell
+        if (null != distance && j > t && watchdog.expired()) {
+          return done + j - t;
+        }
+
+        // distance
+        double d;
+
+        // working on row i and col j, both are incremented each iteration
+        int i = j - t;
+
+        if (null == distance) {
+          // first row of the matrix: we compute the state (dot product for instance) fully
+          if (0 == i) {
+            dot = kernel.init(i, j);
+
+          } else {
+            // other rows: we use previous diagonal state
+            dot = kernel.slide(dot, i, j);
+          }
+
+          // distance
+          d = kernel.distance(dot, i, j);
+
+        } else {
+          d = distance.distance(i, j);
+        }
+
+        // compare and set
+        // in case of tie: closest index since we see lower diagonal first
+        if (newer) {
+          if (d < newerValue[i]) {
+            if (second) {
+              // the previous minimum becomes the second one
+              newer2Value[i] = newerValue[i];
+              newer2Index[i] = newerIndex[i];
+            }
+            newerValue[i] = d;
+            newerIndex[i] = j;
+          } else if (second && d < newer2Value[i]) {
+            newer2Value[i] = d;
+            newer2Index[i] = j;
+          }
+        }
+
+        // symmetrical
+        if (older) {
+          if (d < olderValue[j]) {
+            if (second) {
+              older2Value[j] = olderValue[j];
+              older2Index[j] = olderIndex[j];
+            }
+            olderValue[j] = d;
+            olderIndex[j] = i;
+          } else if (second && d < older2Value[j]) {
+            older2Value[j] = d;
+            older2Index[j] = i;
+          }
+        }
+      }
+
+      done += p - t;
+    }
+
+    return done;
+  }
+
+  /**
+   * Traverse the diagonals in [tStart, tEnd), offering every cell to the heaps of its row and of its column
+   */
+  private long traverseKnn(int tStart, int tEnd, RowHeaps heaps, MacroDistance distance) throws WarpScriptException {
+
+    DistanceKernel kernel = this.kernel;
+    // whether rows get their more recent neighbors, and their older ones
+    boolean newer = PROFILE.Direction.LEFT != direction;
+    boolean older = PROFILE.Direction.RIGHT != direction;
+    long done = 0L;
+
+    for (int t = tStart; t < tEnd; t++) {
+
+      if (watchdog.expired()) {
+        return done;
+      }
+
+      double dot = 0.0D;
+
+      for (int j = t; j < p; j++) {
+
+        if (null != distance && j > t && watchdog.expired()) {
+          return done + j - t;
+        }
+
+        double d;
+        int i = j - t;
+
+        if (null == distance) {
+          dot = 0 == i ? kernel.init(i, j) : kernel.slide(dot, i, j);
+          d = kernel.distance(dot, i, j);
+        } else {
+          d = distance.distance(i, j);
+        }
+
+        if (newer) {
+          heaps.offer(i, j, d);
+        }
+
+        if (older) {
+          heaps.offer(j, i, d);
+        }
+      }
+
+      done += p - t;
+    }
+
+    return done;
+  }
+}
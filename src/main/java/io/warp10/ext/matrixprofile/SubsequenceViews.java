@@ -0,0 +1,129 @@
+//
+//   Copyright 2026  SenX S.A.S.
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+//
+
+package io.warp10.ext.matrixprofile;
+
+import io.warp10.continuum.gts.GTSHelper;
+import io.warp10.continuum.gts.GeoTimeSerie;
+import io.warp10.continuum.store.thrift.data.Metadata;
+import io.warp10.script.WarpScriptException;
+
+/**
+ * Fixed pool of subsequence GTS handed to custom distance macros
+ * Each slot is a GTS allocated once, whose tick and value buffers are refilled from the staged series,
+ * instead of materializing a new GTS for every cell of the distance matrix. A view holds what ATBUCKETINDEX.subsequence
+ * would output: the name name::subsequence::index, and the locations and elevations of the GTS if it has some.
+ * A view is only valid until its slot is refilled, so macros must not retain the subsequences they receive. Its
+ * metadata is restored at each refill, so that a macro renaming or relabeling a view does not affect the next calls.
+ */
+public class SubsequenceViews {
+
+  private final StagedSeries staged;
+  private final int k;
+  private final GeoTimeSerie[] views;
+  private final long[][] ticks;
+  private final double[][] values;
+  private final Metadata metadata;
+  private final String name;
+
+  // locations and elevations of the GTS, by bucket, and the buffers of the slots, null if it has none
+  private final long[] sourceLocations;
+  private final long[] sourceElevations;
+  private final long[][] locations;
+  private final long[][] elevations;
+
+  /**
+   * @param size number of slots
+   */
+  public SubsequenceViews(GeoTimeSerie gts, StagedSeries staged, int k, int size) {
+    this.staged = staged;
+    this.k = k;
+    this.views = new GeoTimeSerie[size];
+    this.ticks = new long[size][k];
+    this.values = new double[size][k];
+
+    this.metadata = new Metadata(gts.getMetadata());
+    this.name = gts.getName() + "::subsequence::";
+
+    // the GTS handed to a custom macro is filled, its sorted values being the buckets
+    boolean filled = gts.size() == staged.size();
+    this.sourceLocations = filled && gts.hasLocations() ? new long[gts.size()] : null;
+    this.sourceElevations = filled && gts.hasElevations() ? new long[gts.size()] : null;
+    for (int i = 0; i < gts.size() && (null != sourceLocations || null != sourceElevations); i++) {
+      if (null != sourceLocations) {
+        sourceLocations[i] = GTSHelper.locationAtIndex(gts, i);
+      }
+      if (null != sourceElevations) {
+        sourceElevations[i] = GTSHelper.elevationAtIndex(gts, i);
+      }
+    }
+    this.locations = null == sourceLocations ? null : new long[size][k];
+    this.elevations = null == sourceElevations ? null : new long[size][k];
+
+    long bucketspan = staged.getBucketSpan();
+
+    for (int i = 0; i < size; i++) {
+      views[i] = new GeoTimeSerie(staged.tickAtIndex(k - 1), k, bucketspan, k);
+    }
+  }
+
+  public int size() {
+    return views.length;
+  }
+
+  /**
+   * Fill a slot with the subsequence starting at index
+   */
+  public GeoTimeSerie view(int slot, int index) throws WarpScriptException {
+    GeoTimeSerie view = views[slot];
+    long[] t = ticks[slot];
+    double[] v = values[slot];
+
+    for (int l = 0; l < k; l++) {
+      t[l] = staged.tickAtIndex(index + l);
+    }
+    // a NaN value of the GTS is handed as is, not as the placeholder used by the built-in kernels
+    if (staged.isValid(index, k)) {
+      System.arraycopy(staged.values(), index, v, 0, k);
+    } else {
+      for (int l = 0; l < k; l++) {
+        v[l] = staged.value(index + l);
+      }
+    }
+
+    long[] l = null;
+    if (null != locations) {
+      l = locations[slot];
+      System.arraycopy(sourceLocations, index, l, 0, k);
+    }
+
+    long[] e = null;
+    if (null != elevations) {
+      e = elevations[slot];
+      System.arraycopy(sourceElevations, index, e, 0, k);
+    }
+
+    GTSHelper.setLastBucket(view, t[k - 1]);
+
+    // the buffers and the metadata (copied by setMetadata) are reset every time, as the macro may have modified the
+    // previous view
+    StagedSeries.reset(view, t, l, e, v, k);
+    view.setMetadata(metadata);
+    GTSHelper.rename(view, name + index);
+
+    return view;
+  }
+}
@@ -0,0 +1,131 @@
+//
+//   Copyright 2026  SenX S.A.S.
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+//
+
+package io.warp10.ext.matrixprofile;
+
+/**
+ * Bounded binary heap of (value, index) pairs on primitive arrays, keeping the capacity best pairs offered so far
+ *
+ * The best pairs are the smallest values, or the largest ones if largest is set. Ties are resolved towards the lowest
+ * index, so the selection does not depend on the order of the offers. The root is the worst pair kept, so an offer
+ * costs O(log capacity) and no boxing.
+ */
+public class TopK {
+
+  private final boolean largest;
+  private final double[] values;
+  private final long[] indices;
+  private int size;
+
+  public TopK(int capacity, boolean largest) {
+    this.largest = largest;
+    this.values = new double[capacity];
+    this.indices = new long[capacity];
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public int capacity() {
+    return values.length;
+  }
+
+  public void clear() {
+    size = 0;
+  }
+
+  /**
+   * Whether (v1, i1) is worse than (v2, i2)
+   */
+  private boolean worse(double v1, long i1, double v2, long i2) {
+    if (v1 != v2) {
+      return largest ? v1 < v2 : v1 > v2;
+    }
+    return i1 > i2;
+  }
+
+  /**
+   * Worst value kept, which an offer must beat once the heap is full
+   */
+  public double worstValue() {
+    return values[0];
+  }
+
+  public boolean isFull() {
+    return size == values.length;
+  }
+
+  public void offer(double value, long index) {
+    if (size < values.length) {
+      // sift up
+      int c = size++;
+      while (c > 0) {
+        int parent = (c - 1) >>> 1;
+        if (!worse(value, index, values[parent], indices[parent])) {
+          break;
+        }
+        values[c] = values[parent];
+        indices[c] = indices[parent];
+        c = parent;
+      }
+      values[c] = value;
+      indices[c] = index;
+
+    } else if (size > 0 && worse(values[0], indices[0], value, index)) {
+      siftDown(value, index);
+    }
+  }
+
+  /**
+   * Replace the root by (value, index)
+   */
+  private void siftDown(double value, long index) {
+    int c = 0;
+    int half = size >>> 1;
+    while (c < half) {
+      int child = 2 * c + 1;
+      int right = child + 1;
+      if (right < size && worse(values[right], indices[right], values[child], indices[child])) {
+        child = right;
+      }
+      if (!worse(values[child], indices[child], value, index)) {
+        break;
+      }
+      values[c] = values[child];
+      indices[c] = indices[child];
+      c = child;
+    }
+    values[c] = value;
+    indices[c] = index;
+  }
+
+  /**
+   * Empty the heap into values and indices, best pair first. Return the number of pairs.
+   */
+  public int drain(double[] outValues, long[] outIndices) {
+    int n = size;
+    for (int i = n - 1; i >= 0; i--) {
+      outValues[i] = values[0];
+      outIndices[i] = indices[0];
+      size--;
+      if (size > 0) {
+        siftDown(values[size], indices[size]);
+      }
+    }
+    return n;
+  }
+}
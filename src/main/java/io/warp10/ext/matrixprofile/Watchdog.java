@@ -0,0 +1,93 @@
+//
+//   Copyright 2026  SenX S.A.S.
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+//
+
+package io.warp10.ext.matrixprofile;
+
+import io.warp10.script.WarpScriptException;
+import io.warp10.script.WarpScriptStack;
+
+/**
+ * Time limit of a traversal, checked by the engines between two units of work (a band of diagonals, a diagonal, or a
+ * single cell with a custom macro)
+ *
+ * Each check also handles the signals of the stack, so that a script stopped by its timebox or killed does not keep
+ * its thread busy until the end of the traversal. Once the time limit is reached, the engines stop and return the
+ * minima found so far, the caller deciding whether to fail or to output a partial profile.
+ */
+public class Watchdog {
+
+  private final WarpScriptStack stack;
+  private final long timeout;
+  // System.nanoTime() after which the traversal stops, 0 for none
+  private final long deadline;
+  private volatile boolean expired = false;
+
+  /**
+   * @param stack the stack whose signals are handled, null for none
+   * @param timeout time limit in milliseconds, 0 for none
+   */
+  public Watchdog(WarpScriptStack stack, long timeout) {
+    this(stack, timeout, timeout <= 0L ? 0L : System.nanoTime() + timeout * 1000000L);
+  }
+
+  private Watchdog(WarpScriptStack stack, long timeout, long deadline) {
+    this.stack = stack;
+    this.timeout = timeout;
+    this.deadline = deadline;
+  }
+
+  /**
+   * Watchdog of a traversal which is a part of a longer computation, expiring with the time budget of the latter
+   *
+   * @param deadline System.nanoTime() after which the traversal stops, 0 for none
+   */
+  public static Watchdog until(WarpScriptStack stack, long deadline) {
+    long timeout = 0L == deadline ? 0L : Math.max(1L, (deadline - System.nanoTime()) / 1000000L);
+    return new Watchdog(stack, timeout, deadline);
+  }
+
+  /**
+   * Whether the traversal must stop
+   *
+   * @throws WarpScriptException if the stack was signaled
+   */
+  public boolean expired() throws WarpScriptException {
+    if (expired) {
+      return true;
+    }
+
+    if (null != stack) {
+      stack.handleSignal();
+    }
+
+    if (0L != deadline && System.nanoTime() - deadline > 0L) {
+      expired = true;
+    }
+
+    return expired;
+  }
+
+  /**
+   * Whether the time limit was reached during the traversal
+   */
+  public boolean isExpired() {
+    return expired;
+  }
+
+  public long getTimeout() {
+    return timeout;
+  }
+}
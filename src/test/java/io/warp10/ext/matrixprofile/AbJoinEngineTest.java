@@ -0,0 +1,142 @@
+//
+//   Copyright 2026  SenX S.A.S.
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+//
+
+package io.warp10.ext.matrixprofile;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static io.warp10.ext.matrixprofile.TestSeries.K;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class AbJoinEngineTest {
+
+  private static final long BUCKETSPAN = 1000L;
+
+  /**
+   * Write the staged values of a series to a file in the format read by SeriesFile, missing buckets as NaN
+   */
+  private static void write(Path path, StagedSeries staged) throws IOException {
+    double[] values = staged.values();
+
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+      ByteBuffer header = ByteBuffer.allocate(SeriesFile.HEADER_SIZE).order(ByteOrder.BIG_ENDIAN);
+      header.putInt(SeriesFile.MAGIC).putInt(SeriesFile.VERSION).putLong(staged.getLastBucket()).putLong(staged.getBucketSpan()).putLong(values.length);
+      header.flip();
+      while (header.hasRemaining()) {
+        channel.write(header);
+      }
+
+      ByteBuffer buffer = ByteBuffer.allocate(8 * 1024).order(ByteOrder.BIG_ENDIAN);
+      for (int i = 0; i < values.length; i++) {
+        buffer.putDouble(staged.isValid(i) ? values[i] : Double.NaN);
+        if (!buffer.hasRemaining() || i == values.length - 1) {
+          buffer.flip();
+          while (buffer.hasRemaining()) {
+            channel.write(buffer);
+          }
+          buffer.clear();
+        }
+      }
+    }
+  }
+
+  /**
+   * B side holding copies of the pattern of A, so that several subsequences of B, in distinct chunks, tie
+   */
+  private static double[] side(double[] a, long seed, int n) {
+    double[] b = TestSeries.withTies(seed, n);
+    for (int at = 0; at + K <= n; at += 487) {
+      System.arraycopy(a, K, b, at, K);
+    }
+    return b;
+  }
+
+  /**
+   * @param exact whether the minima are expected bit for bit, else within rounding with an argmin at the same distance
+   */
+  private static void assertFileEqualsInMemory(double[] a, double[] b, boolean exact) throws Exception {
+    SlidingStats statsA = SlidingStats.compute(a, K);
+    StagedSeries staged = StagedSeries.masked(b.clone(), BUCKETSPAN * b.length, BUCKETSPAN);
+    int p1 = a.length - K + 1;
+
+    Path path = Files.createTempFile("abjoin", ".mp");
+    try {
+      write(path, staged);
+      SeriesFile file = SeriesFile.open(path);
+      assertEquals(b.length, file.getBucketCount());
+
+      for (DistanceKernel.Type type : DistanceKernel.Type.values()) {
+        double[] value = new double[p1];
+        long[] index = new long[p1];
+        DistanceKernel kernel = new DistanceKernel(type, a, statsA, staged.values(), staged.stats(K));
+        long cells = new AbJoinEngine(a, staged.values(), K, kernel).run(value, index, null, null);
+
+        // chunks raised to 2 * K, chunks ending on a copy of the pattern, and a single chunk
+        for (int chunkSize : new int[] { 1, 487 + K, AbJoinEngine.CHUNK_SIZE }) {
+          String message = type + " " + chunkSize;
+          double[] chunkedValue = new double[p1];
+          long[] chunkedIndex = new long[p1];
+          long done = AbJoinEngine.runFile(a, statsA, file, K, type, chunkSize, new Watchdog(null, 0L), chunkedValue, chunkedIndex);
+
+          if (exact) {
+            assertArrayEquals(message, value, chunkedValue, 0.0D);
+            assertArrayEquals(message, index, chunkedIndex);
+          } else {
+            assertArrayEquals(message, value, chunkedValue, 1e-9);
+            for (int i = 0; i < p1; i++) {
+              int j = (int) chunkedIndex[i];
+              assertEquals(message + " [" + i + "]", value[i], kernel.distance(kernel.init(i, j), i, j), 1e-9);
+            }
+          }
+          if (AbJoinEngine.CHUNK_SIZE == chunkSize) {
+            assertEquals(message, cells, done);
+          }
+        }
+      }
+    } finally {
+      Files.delete(path);
+    }
+  }
+
+  @Test
+  public void testFileEqualsInMemory() throws Exception {
+    double[] a = TestSeries.withTies(5L, 600);
+    assertFileEqualsInMemory(a, side(a, 6L, 5000), true);
+  }
+
+  /**
+   * The placeholders of the missing buckets are the mean of each chunk, which rounds the states of the diagonals
+   * crossing them differently
+   */
+  @Test
+  public void testFileWithMissingBucketsEqualsInMemory() throws Exception {
+    double[] a = TestSeries.withTies(7L, 600);
+    double[] b = side(a, 8L, 5000);
+    for (int i = 100; i < b.length; i += 731) {
+      b[i] = Double.NaN;
+    }
+    assertFileEqualsInMemory(a, b, false);
+  }
+}
@@ -0,0 +1,109 @@
+//
+//   Copyright 2026  SenX S.A.S.
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+//
+
+package io.warp10.ext.matrixprofile;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertTrue;
+
+public class CompactStompEngineTest {
+
+  private static final int N = 20000;
+  private static final int K = 100;
+  private static final int EXCLUSION_RADIUS = 25;
+
+  //
+  // Bounds of the accuracy of the single precision profiles, with a margin over the table of the README which was
+  // measured on the same series: max relative error, and fractions of the argmins which are the same or within the
+  // exclusion zone
+  //
+
+  private static final String[] SERIES = { "random walk", "noisy sine", "random walk + 1e6 offset", "trend + noise" };
+
+  private static final double MAX_RELATIVE_ERROR = 5e-3D;
+  private static final double MIN_SAME_ARGMIN = 0.98D;
+  private static final double MIN_NEAR_ARGMIN = 0.99D;
+
+  /**
+   * The series of the table, drawn one after the other from the same generator
+   */
+  private static double[][] series() {
+    Random random = new Random(7L);
+    double[][] series = new double[SERIES.length][N];
+
+    for (int s = 0; s < SERIES.length; s++) {
+      double walk = 0.0D;
+      for (int i = 0; i < N; i++) {
+        walk += random.nextGaussian();
+        switch (s) {
+          case 0:
+            series[s][i] = walk;
+            break;
+          case 1:
+            series[s][i] = Math.sin(i * 2.0D * Math.PI / 157.0D) + 0.1D * random.nextGaussian();
+            break;
+          case 2:
+            series[s][i] = 1e6D + walk;
+            break;
+          default:
+            series[s][i] = 0.01D * i + random.nextGaussian();
+        }
+      }
+    }
+
+    return series;
+  }
+
+  @Test
+  public void testAccuracyBounds() throws Exception {
+    double[][] series = series();
+
+    for (int s = 0; s < SERIES.length; s++) {
+      double[] values = series[s];
+      SlidingStats stats = SlidingStats.compute(values, K);
+      DistanceKernel kernel = new DistanceKernel(DistanceKernel.Type.ZEUCLIDEAN, values, stats, values, stats);
+      StompEngine.RowMins expected = new StompEngine(values, K, EXCLUSION_RADIUS, stats, kernel, PROFILE.Direction.BOTH, false).run(null, 1);
+      CompactStompEngine.RowMins actual = new CompactStompEngine(values, K, EXCLUSION_RADIUS, PROFILE.Direction.BOTH, false).run(1);
+
+      double maxRel = 0.0D;
+      int same = 0;
+      int near = 0;
+      int p = expected.value.length;
+
+      for (int i = 0; i < p; i++) {
+        double e = Math.abs(expected.value[i] - actual.value[i]);
+        if (expected.value[i] > 1e-3D) {
+          maxRel = Math.max(maxRel, e / expected.value[i]);
+        }
+        if (expected.index[i] == actual.index[i]) {
+          same++;
+        }
+        if (Math.abs(expected.index[i] - actual.index[i]) < EXCLUSION_RADIUS) {
+          near++;
+        }
+      }
+
+      String message = SERIES[s] + ": max rel. error " + maxRel + ", same argmin " + same + "/" + p + ", near argmin " + near + "/" + p;
+
+      assertTrue(message, maxRel <= MAX_RELATIVE_ERROR);
+      assertTrue(message, same >= MIN_SAME_ARGMIN * p);
+      assertTrue(message, near >= MIN_NEAR_ARGMIN * p);
+    }
+  }
+}
@@ -0,0 +1,129 @@
+//
+//   Copyright 2026  SenX S.A.S.
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+//
+
+package io.warp10.ext.matrixprofile;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static io.warp10.ext.matrixprofile.TestSeries.K;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class FlossStreamTest {
+
+  private static final int N = 3000;
+  private static final int WINDOW = 300;
+  private static final int EXCLUSION_RADIUS = 4;
+  private static final int TAIL = 2 * K;
+  private static final long BUCKETSPAN = 1000L;
+
+  /**
+   * Random walk, whose neighbors are not at nearly the same distance so that they do not depend on rounding
+   */
+  private static double[] walk(long seed, int n) {
+    Random random = new Random(seed);
+    double[] values = new double[n];
+    double walk = 0.0D;
+    for (int i = 0; i < n; i++) {
+      walk += random.nextGaussian();
+      values[i] = walk;
+    }
+    return values;
+  }
+
+  /**
+   * Right nearest neighbors of the subsequences of a window, from the profile of MP.PROFILE with direction RIGHT
+   */
+  private static long[] rightNeighbors(double[] window) throws Exception {
+    SlidingStats stats = SlidingStats.compute(window, K);
+    DistanceKernel kernel = TestSeries.kernel(DistanceKernel.Type.ZEUCLIDEAN, window, stats);
+    StompEngine.RowMins right = new StompEngine(window, K, EXCLUSION_RADIUS, stats, kernel, PROFILE.Direction.RIGHT, false).run(null, 1);
+
+    long[] neighbors = new long[window.length];
+    for (int i = 0; i < neighbors.length; i++) {
+      neighbors[i] = i < right.value.length && Double.MAX_VALUE != right.value[i] ? right.index[i] : -1L;
+    }
+    return neighbors;
+  }
+
+  private static FlossStream resume(FlossStream stream, double[] window, long[] neighbors) {
+    return FlossStream.resume(K, WINDOW, EXCLUSION_RADIUS, TAIL, BUCKETSPAN, window, neighbors, stream.getLastTick());
+  }
+
+  /**
+   * Appends in batches of varying sizes, with compactions of the buffers every WINDOW values, subsequences leaving the
+   * window, and a batch longer than the window
+   */
+  private static int[] batches() {
+    Random random = new Random(11L);
+    int[] ends = new int[N];
+    int count = 0;
+    int to = 0;
+    while (to < N) {
+      to = Math.min(N, to + (count == 40 ? WINDOW + 17 : 1 + random.nextInt(37)));
+      ends[count++] = to;
+    }
+    int[] batches = new int[count];
+    System.arraycopy(ends, 0, batches, 0, count);
+    return batches;
+  }
+
+  @Test
+  public void testIncrementalEqualsRightProfile() throws Exception {
+    double[] values = walk(1L, N);
+    FlossStream stream = new FlossStream(K, WINDOW, EXCLUSION_RADIUS, TAIL, BUCKETSPAN);
+
+    int from = 0;
+    for (int to : batches()) {
+      stream.append(values, from, to, to * BUCKETSPAN);
+      from = to;
+
+      double[] window = stream.window();
+      long[] neighbors = rightNeighbors(window);
+      String message = "after " + to;
+
+      assertEquals(message, Math.min(to, WINDOW), window.length);
+      assertArrayEquals(message, neighbors, stream.neighbors());
+      // the curve of the arcs of the right profile of the window
+      assertArrayEquals(message, resume(stream, window, neighbors).curve(), stream.curve(), 0.0D);
+    }
+
+    assertEquals(N, stream.getCount());
+  }
+
+  @Test
+  public void testResumedEqualsKept() throws Exception {
+    double[] values = walk(2L, N);
+    FlossStream kept = new FlossStream(K, WINDOW, EXCLUSION_RADIUS, TAIL, BUCKETSPAN);
+    FlossStream resumed = new FlossStream(K, WINDOW, EXCLUSION_RADIUS, TAIL, BUCKETSPAN);
+
+    int from = 0;
+    for (int to : batches()) {
+      kept.append(values, from, to, to * BUCKETSPAN);
+      resumed = resume(resumed, resumed.window(), resumed.neighbors());
+      resumed.append(values, from, to, to * BUCKETSPAN);
+      from = to;
+
+      String message = "after " + to;
+      assertArrayEquals(message, kept.window(), resumed.window(), 0.0D);
+      assertArrayEquals(message, kept.neighbors(), resumed.neighbors());
+      assertArrayEquals(message, kept.ticks(), resumed.ticks());
+      assertArrayEquals(message, kept.curve(), resumed.curve(), 0.0D);
+    }
+  }
+}
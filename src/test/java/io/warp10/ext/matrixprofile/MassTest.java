@@ -0,0 +1,125 @@
+//
+//   Copyright 2026  SenX S.A.S.
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+//
+
+package io.warp10.ext.matrixprofile;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+
+public class MassTest {
+
+  // series and subsequence lengths which are not powers of two, so that the FFT pads them
+  private static final int[] LENGTHS = { 1000, 1237, 3001 };
+  private static final int[] SUBSEQUENCE_LENGTHS = { 37, 100 };
+  private static final double[] OFFSETS = { 0.0D, 1e6D };
+
+  // relative to the maximum squared distance 4 * k, on the squared distances since the square root turns the rounding
+  // of an exact match into a distance of the order of its square root. The offset of 1e6 leaves about 10 significant
+  // digits to the values.
+  private static final double TOLERANCE = 1e-8D;
+
+  private static double[] walk(long seed, int n, double offset) {
+    Random random = new Random(seed);
+    double[] values = new double[n];
+    double walk = 0.0D;
+    for (int i = 0; i < n; i++) {
+      walk += random.nextGaussian();
+      values[i] = offset + walk;
+    }
+    return values;
+  }
+
+  /**
+   * Naive row of the squared z-normalized euclidean distances of the subsequence at q, each one from its own centered
+   * values
+   */
+  private static double[] naive(double[] values, int k, int q) {
+    int p = values.length - k + 1;
+    double[] means = new double[p];
+    double[] stds = new double[p];
+
+    for (int i = 0; i < p; i++) {
+      double mean = 0.0D;
+      for (int l = 0; l < k; l++) {
+        mean += values[i + l];
+      }
+      mean /= k;
+
+      double var = 0.0D;
+      for (int l = 0; l < k; l++) {
+        var += (values[i + l] - mean) * (values[i + l] - mean);
+      }
+
+      means[i] = mean;
+      stds[i] = Math.sqrt(var / k);
+    }
+
+    double[] row = new double[p];
+    for (int j = 0; j < p; j++) {
+      double dot = 0.0D;
+      for (int l = 0; l < k; l++) {
+        dot += (values[q + l] - means[q]) * (values[j + l] - means[j]);
+      }
+      row[j] = 2.0D * k * (1.0D - dot / (k * stds[q] * stds[j]));
+    }
+
+    return row;
+  }
+
+  private static double[] squared(double[] distances) {
+    double[] squared = new double[distances.length];
+    for (int i = 0; i < distances.length; i++) {
+      squared[i] = distances[i] * distances[i];
+    }
+    return squared;
+  }
+
+  @Test
+  public void testDistanceProfileEqualsNaiveRow() throws Exception {
+    long seed = 0L;
+
+    for (int n : LENGTHS) {
+      for (int k : SUBSEQUENCE_LENGTHS) {
+        for (double offset : OFFSETS) {
+          double[] values = walk(seed++, n, offset);
+          SlidingStats stats = SlidingStats.compute(values, k);
+          MASS.Searcher searcher = new MASS.Searcher(values, stats);
+
+          for (int q : new int[] { 0, n / 3, n - k }) {
+            String message = n + " " + k + " " + offset + " [" + q + "]";
+            double delta = TOLERANCE * 4.0D * k;
+            double[] query = new double[k];
+            System.arraycopy(values, q, query, 0, k);
+            double[] expected = naive(values, k, q);
+
+            // as computed by MP.RPROFILE with mass, and by MP.MASS
+            assertArrayEquals(message, expected, squared(MASS.distanceProfile(query, values, stats)), delta);
+
+            // two queries packed in a single transform
+            double[] other = new double[k];
+            System.arraycopy(values, n / 2, other, 0, k);
+            double[][] profiles = searcher.distanceProfiles(query, other);
+            assertArrayEquals(message, expected, squared(profiles[0]), delta);
+            assertArrayEquals(message, naive(values, k, n / 2), squared(profiles[1]), delta);
+          }
+        }
+      }
+    }
+  }
+}
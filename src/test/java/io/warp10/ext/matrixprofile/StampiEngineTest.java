@@ -0,0 +1,130 @@
+//
+//   Copyright 2026  SenX S.A.S.
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+//
+
+package io.warp10.ext.matrixprofile;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static io.warp10.ext.matrixprofile.TestSeries.K;
+import static io.warp10.ext.matrixprofile.TestSeries.assertSame;
+import static org.junit.Assert.assertEquals;
+
+public class StampiEngineTest {
+
+  private static final int N = 1500;
+  private static final int EXCLUSION_RADIUS = 4;
+
+  // number of values of the series when the profile is computed, then each time it is updated, the copies of the
+  // pattern around N / 2 being appended by the last update
+  private static final int[] LENGTHS = { 300, 301, 700, N };
+
+  // rounding of the last row of the kernel states, computed by FFT for the dot product kernels
+  private static final double TOLERANCE = 1e-5D;
+
+  private static StompEngine.RowMins profile(double[] values, DistanceKernel.Type type, PROFILE.Direction direction) throws Exception {
+    SlidingStats stats = SlidingStats.compute(values, K);
+    return new StompEngine(values, K, EXCLUSION_RADIUS, stats, TestSeries.kernel(type, values, stats), direction, false).run(null, 1);
+  }
+
+  /**
+   * Profile of the first values of the series, updated as the next ones are appended, as MP.PROFILE.UPDATE does
+   */
+  private static StompEngine.RowMins updated(double[] series, DistanceKernel.Type type, PROFILE.Direction direction) throws Exception {
+    StompEngine.RowMins mins = profile(Arrays.copyOf(series, LENGTHS[0]), type, direction);
+
+    for (int u = 1; u < LENGTHS.length; u++) {
+      double[] values = Arrays.copyOf(series, LENGTHS[u]);
+      int pOld = mins.value.length;
+      int p = values.length - K + 1;
+
+      StompEngine.RowMins extended = new StompEngine.RowMins(p, false);
+      System.arraycopy(mins.value, 0, extended.value, 0, pOld);
+      System.arraycopy(mins.index, 0, extended.index, 0, pOld);
+
+      SlidingStats stats = SlidingStats.compute(values, K);
+      new StampiEngine(values, K, EXCLUSION_RADIUS, stats, TestSeries.kernel(type, values, stats), direction).append(extended.value, extended.index, pOld);
+      mins = extended;
+    }
+
+    return mins;
+  }
+
+  @Test
+  public void testUpdatedEqualsProfile() throws Exception {
+    double[] values = TestSeries.withTies(9L, N);
+    SlidingStats stats = SlidingStats.compute(values, K);
+
+    for (DistanceKernel.Type type : DistanceKernel.Type.values()) {
+      DistanceKernel kernel = TestSeries.kernel(type, values, stats);
+
+      for (PROFILE.Direction direction : PROFILE.Direction.values()) {
+        String message = type + " " + direction;
+        StompEngine.RowMins expected = profile(values, type, direction);
+        StompEngine.RowMins actual = updated(values, type, direction);
+
+        // with one direction, the candidates of each row are seen nearest first as by the diagonal traversal, and the
+        // states of the other kernels are exact on this series
+        if (PROFILE.Direction.BOTH != direction && !type.isDotProduct()) {
+          assertSame(message, expected, actual);
+          continue;
+        }
+
+        // otherwise the argmins may differ between neighbors at the same distance, up to rounding
+        for (int i = 0; i < expected.value.length; i++) {
+          String row = message + " [" + i + "]";
+          assertEquals(row, expected.value[i], actual.value[i], TOLERANCE);
+
+          int j = (int) actual.index[i];
+          if (Double.MAX_VALUE != expected.value[i] && j != expected.index[i]) {
+            assertEquals(row, expected.value[i], kernel.distance(i < j ? kernel.init(i, j) : kernel.init(j, i), i, j), TOLERANCE);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * On an exact tie, an existing row keeps its neighbor, and a new row keeps its left neighbor over a right one
+   * appended later. The diagonal traversal of MP.PROFILE keeps the nearest one first, then the older one.
+   */
+  @Test
+  public void testTiesKeepTheNeighborSeenFirst() throws Exception {
+    double[] values = TestSeries.withTies(10L, N);
+    int center = N / 2;
+    int offset = 3 * K;
+
+    StompEngine.RowMins expected = profile(values, DistanceKernel.Type.EUCLIDEAN, PROFILE.Direction.BOTH);
+    StompEngine.RowMins actual = updated(values, DistanceKernel.Type.EUCLIDEAN, PROFILE.Direction.BOTH);
+
+    // the copy at center is nearer to the one at center + offset than the copy at K, both at distance 0
+    assertEquals(0.0D, expected.value[center + offset], 0.0D);
+    assertEquals(0.0D, actual.value[center + offset], 0.0D);
+    assertEquals(center, expected.index[center + offset]);
+    assertEquals(center, actual.index[center + offset]);
+
+    // the existing row of the copy at K keeps the first copy appended at distance 0, also the nearest one
+    assertEquals(0.0D, actual.value[K], 0.0D);
+    assertEquals(center - offset, expected.index[K]);
+    assertEquals(center - offset, actual.index[K]);
+
+    // the copy at center - offset keeps the one at K on its left, over the nearer one at center appended on its right
+    assertEquals(0.0D, actual.value[center - offset], 0.0D);
+    assertEquals(center, expected.index[center - offset]);
+    assertEquals(K, actual.index[center - offset]);
+  }
+}
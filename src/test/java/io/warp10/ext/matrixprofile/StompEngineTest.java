@@ -0,0 +1,143 @@
+//
+//   Copyright 2026  SenX S.A.S.
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+//
+
+package io.warp10.ext.matrixprofile;
+
+import org.junit.Test;
+
+import static io.warp10.ext.matrixprofile.TestSeries.K;
+import static io.warp10.ext.matrixprofile.TestSeries.assertSame;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class StompEngineTest {
+
+  // enough diagonals for 4 workers and for several bands of tiles
+  private static final int N = 3000;
+  private static final int EXCLUSION_RADIUS = 4;
+
+  private static StompEngine engine(double[] values, DistanceKernel.Type type, PROFILE.Direction direction, boolean robust) {
+    SlidingStats stats = SlidingStats.compute(values, K);
+    return new StompEngine(values, K, EXCLUSION_RADIUS, stats, TestSeries.kernel(type, values, stats), direction, robust);
+  }
+
+  private static StompEngine.RowMins baseline(double[] values, DistanceKernel.Type type, PROFILE.Direction direction) {
+    SlidingStats stats = SlidingStats.compute(values, K);
+    return TestSeries.baseline(values, TestSeries.kernel(type, values, stats), EXCLUSION_RADIUS, direction);
+  }
+
+  @Test
+  public void testParallelEqualsSequential() throws Exception {
+    double[] values = TestSeries.withTies(1L, N);
+    int p = N - K + 1;
+    assertTrue(StompEngine.workers(EXCLUSION_RADIUS, p, 4) >= 4);
+
+    for (DistanceKernel.Type type : DistanceKernel.Type.values()) {
+      for (PROFILE.Direction direction : PROFILE.Direction.values()) {
+        for (boolean robust : new boolean[] { false, true }) {
+          String message = type + " " + direction + (robust ? " robust" : "");
+          StompEngine.RowMins sequential = engine(values, type, direction, robust).run(null, 1);
+          StompEngine.RowMins parallel = engine(values, type, direction, robust).run(null, 4);
+          assertSame(message, sequential, parallel);
+          if (!robust) {
+            assertSame(message, baseline(values, type, direction), parallel);
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testKnnFirstRankEqualsProfile() throws Exception {
+    double[] values = TestSeries.withTies(2L, N);
+
+    for (DistanceKernel.Type type : DistanceKernel.Type.values()) {
+      for (PROFILE.Direction direction : PROFILE.Direction.values()) {
+        String message = type + " " + direction;
+        StompEngine.RowMins profile = engine(values, type, direction, false).run(null, 1);
+        StompEngine.RowMins robust = engine(values, type, direction, true).run(null, 1);
+
+        for (int parallelism : new int[] { 1, 4 }) {
+          StompEngine.RowMins[] ranks = engine(values, type, direction, false).runKnn(null, 3, parallelism);
+          assertEquals(message, 3, ranks.length);
+          assertSame(message + " rank 1", profile, ranks[0]);
+
+          // the second nearest neighbor is the one of the robust profile
+          assertArrayEquals(message + " rank 2", robust.value2, ranks[1].value, 0.0D);
+          assertArrayEquals(message + " rank 2", robust.index2, ranks[1].index);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testTiledEqualsUntiled() throws Exception {
+    // a single partial tile, bands ending exactly on a tile, and several bands of several tiles
+    int[] lengths = new int[] { StompEngine.TILE_SIZE / 2, StompEngine.TILE_SIZE + EXCLUSION_RADIUS + K - 1, 2 * StompEngine.TILE_SIZE + 37 };
+
+    for (int n : lengths) {
+      double[] values = TestSeries.withTies(n, n);
+
+      for (DistanceKernel.Type type : DistanceKernel.Type.values()) {
+        for (PROFILE.Direction direction : PROFILE.Direction.values()) {
+          String message = n + " " + type + " " + direction;
+          assertSame(message, baseline(values, type, direction), engine(values, type, direction, false).run(null, 1));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testAllDirectionsEqualSeparateRuns() throws Exception {
+    double[] values = TestSeries.withTies(3L, N);
+
+    for (DistanceKernel.Type type : DistanceKernel.Type.values()) {
+      for (boolean robust : new boolean[] { false, true }) {
+        for (int parallelism : new int[] { 1, 4 }) {
+          String message = type + (robust ? " robust" : "") + " " + parallelism;
+          StompEngine.RowMins[] all = engine(values, type, PROFILE.Direction.BOTH, robust).runDirections(null, parallelism);
+
+          assertSame(message + " LEFT", engine(values, type, PROFILE.Direction.LEFT, robust).run(null, parallelism), all[0]);
+          assertSame(message + " RIGHT", engine(values, type, PROFILE.Direction.RIGHT, robust).run(null, parallelism), all[1]);
+          assertSame(message + " BOTH", engine(values, type, PROFILE.Direction.BOTH, robust).run(null, parallelism), all[2]);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testTiesGoToTheNearestThenTheOlder() throws Exception {
+    double[] values = TestSeries.withTies(4L, N);
+    int center = N / 2;
+    int offset = 3 * K;
+
+    for (int parallelism : new int[] { 1, 4 }) {
+      StompEngine.RowMins[] all = engine(values, DistanceKernel.Type.EUCLIDEAN, PROFILE.Direction.BOTH, false).runDirections(null, parallelism);
+
+      // the copies of the pattern at center - offset and center + offset are both at distance 0 of the one at center
+      assertEquals(0.0D, all[0].value[center], 0.0D);
+      assertEquals(0.0D, all[1].value[center], 0.0D);
+      assertEquals(center - offset, all[0].index[center]);
+      assertEquals(center + offset, all[1].index[center]);
+      assertEquals(center - offset, all[2].index[center]);
+
+      // the nearest copy wins over the farther ones on each side
+      assertEquals(center, all[0].index[center + offset]);
+      assertEquals(center, all[1].index[center - offset]);
+    }
+  }
+}
@@ -0,0 +1,102 @@
+//
+//   Copyright 2026  SenX S.A.S.
+//
+//   Licensed under the Apache License, Version 2.0 (the "License");
+//   you may not use this file except in compliance with the License.
+//   You may obtain a copy of the License at
+//
+//     http://www.apache.org/licenses/LICENSE-2.0
+//
+//   Unless required by applicable law or agreed to in writing, software
+//   distributed under the License is distributed on an "AS IS" BASIS,
+//   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+//   See the License for the specific language governing permissions and
+//   limitations under the License.
+//
+
+package io.warp10.ext.matrixprofile;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * Inputs and reference traversal shared by the tests of the engines
+ */
+public class TestSeries {
+
+  public static final int K = 16;
+
+  /**
+   * Random series of small integers, whose sliding sums and dot products are exact, with copies of a pattern so that
+   * several neighbors are at the same distance. The copies at center - offset and center + offset tie for the
+   * subsequence at center, at the same distance on both sides.
+   */
+  public static double[] withTies(long seed, int n) {
+    Random random = new Random(seed);
+    double[] values = new double[n];
+    for (int i = 0; i < n; i++) {
+      values[i] = random.nextInt(8);
+    }
+
+    double[] pattern = new double[K];
+    for (int l = 0; l < K; l++) {
+      pattern[l] = random.nextInt(8);
+    }
+
+    int center = n / 2;
+    int offset = 3 * K;
+    for (int at : new int[] { K, center - offset, center, center + offset, n - 2 * K }) {
+      System.arraycopy(pattern, 0, values, at, K);
+    }
+
+    return values;
+  }
+
+  public static DistanceKernel kernel(DistanceKernel.Type type, double[] values, SlidingStats stats) {
+    return new DistanceKernel(type, values, stats, values, stats);
+  }
+
+  /**
+   * Reference profile, as traversed before the engines: the diagonals one after the other, each cell keeping a strictly
+   * lower distance only. Ties thus go to the nearest subsequence first, seen on a lower diagonal, then to the older one,
+   * seen on a lower row of the same diagonal.
+   */
+  public static StompEngine.RowMins baseline(double[] values, DistanceKernel kernel, int exclusionRadius, PROFILE.Direction direction) {
+    int p = values.length - K + 1;
+    StompEngine.RowMins mins = new StompEngine.RowMins(p, false);
+
+    for (int t = exclusionRadius; t < p; t++) {
+      double state = 0.0D;
+      for (int j = t; j < p; j++) {
+        int i = j - t;
+        state = 0 == i ? kernel.init(i, j) : kernel.slide(state, i, j);
+        double d = kernel.distance(state, i, j);
+
+        if (PROFILE.Direction.LEFT != direction && d < mins.value[i]) {
+          mins.value[i] = d;
+          mins.index[i] = j;
+        }
+
+        if (PROFILE.Direction.RIGHT != direction && d < mins.value[j]) {
+          mins.value[j] = d;
+          mins.index[j] = i;
+        }
+      }
+    }
+
+    return mins;
+  }
+
+  /**
+   * Bit for bit equality of two profiles and of their argmin
+   */
+  public static void assertSame(String message, StompEngine.RowMins expected, StompEngine.RowMins actual) {
+    assertArrayEquals(message, expected.value, actual.value, 0.0D);
+    assertArrayEquals(message, expected.index, actual.index);
+    if (null != expected.value2) {
+      assertArrayEquals(message, expected.value2, actual.value2, 0.0D);
+      assertArrayEquals(message, expected.index2, actual.index2);
+    }
+  }
+}